@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+import com.google.zxing.BarcodeFormat;
+
+/**
+ * Synthetic NV21 preview frames for benchmarks
+ */
+final class BenchmarkFrames {
+
+    public static final String CONTENT = "https://github.com/yuriy-budiyev/code-scanner";
+
+    private BenchmarkFrames() {
+    }
+
+    /**
+     * Create NV21 frame with QR code in the center, code side is a half of the smaller frame side
+     */
+    @NonNull
+    public static byte[] createNv21(final int width, final int height) {
+        return SyntheticFrameSource.createFrame(CONTENT, BarcodeFormat.QR_CODE, width, height);
+    }
+
+    /**
+     * Create NV21 frame with code of the specified format in the center, code side is a half
+     * of the smaller frame side
+     */
+    @NonNull
+    public static byte[] createNv21(@NonNull final BarcodeFormat format, final int width,
+            final int height) {
+        return SyntheticFrameSource.createFrame(getContent(format), format, width, height);
+    }
+
+    /**
+     * Content, which can be encoded in the specified format
+     */
+    @NonNull
+    public static String getContent(@NonNull final BarcodeFormat format) {
+        switch (format) {
+            case EAN_13:
+                return "5901234123457";
+            case EAN_8:
+                return "96385074";
+            case UPC_A:
+                return "036000291452";
+            case ITF:
+                return "00012345678905";
+            case CODE_39:
+            case CODE_93:
+                return "CODE-SCANNER";
+            case CODABAR:
+                return "A40156B";
+            default:
+                return CONTENT;
+        }
+    }
+
+    /**
+     * Parse frame size in {@code <width>x<height>} format
+     */
+    @NonNull
+    public static Point parseSize(@NonNull final String size) {
+        final int separator = size.indexOf('x');
+        return new Point(Integer.parseInt(size.substring(0, separator)),
+                Integer.parseInt(size.substring(separator + 1)));
+    }
+
+    /**
+     * Viewfinder frame with the default {@link CodeScannerView} size, in the center of the view
+     */
+    @NonNull
+    public static Rect getViewFrameRect(final int viewWidth, final int viewHeight) {
+        final int frameSize = Math.round(Math.min(viewWidth, viewHeight) * 0.75f);
+        final int left = (viewWidth - frameSize) / 2;
+        final int top = (viewHeight - frameSize) / 2;
+        return new Rect(left, top, left + frameSize, top + frameSize);
+    }
+}
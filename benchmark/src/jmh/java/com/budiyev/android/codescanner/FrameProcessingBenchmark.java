@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+
+/**
+ * Frame processing hot path: frame rect mapping, rotation, luma preparation and decoding
+ */
+@State(Scope.Thread)
+public class FrameProcessingBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String size;
+
+    @Param({"0", "90", "180", "270"})
+    public int rotation;
+
+    @Param({"false", "true"})
+    public boolean reverseHorizontal;
+
+    private Map<DecodeHintType, ?> mHints;
+    private FormatReader mReader;
+    private BinarizerChain mHybridChain;
+    private BinarizerChain mGlobalHistogramChain;
+    private byte[] mImage;
+    private byte[] mLuma;
+    private Point mViewSize;
+    private Rect mViewFrameRect;
+    private Rect mFrameRect;
+    private int mWidth;
+    private int mHeight;
+    private int mRotatedWidth;
+    private int mRotatedHeight;
+
+    @Setup
+    public void setUp() {
+        final Point imageSize = BenchmarkFrames.parseSize(size);
+        mWidth = imageSize.getX();
+        mHeight = imageSize.getY();
+        final boolean portrait = Utils.isPortrait(rotation);
+        mRotatedWidth = portrait ? mHeight : mWidth;
+        mRotatedHeight = portrait ? mWidth : mHeight;
+        mImage = BenchmarkFrames.createNv21(mWidth, mHeight);
+        mViewSize = new Point(mRotatedWidth, mRotatedHeight);
+        mViewFrameRect = BenchmarkFrames.getViewFrameRect(mRotatedWidth, mRotatedHeight);
+        mFrameRect = getImageFrameRect();
+        mLuma = new byte[mFrameRect.getWidth() * mFrameRect.getHeight()];
+        Utils.cropRotateLuma(mImage, mWidth, mHeight, rotation, mFrameRect, reverseHorizontal,
+                mLuma);
+        mHints = Collections.singletonMap(DecodeHintType.POSSIBLE_FORMATS,
+                Arrays.asList(BarcodeFormat.values()));
+        mReader = new FormatReader();
+        mReader.setHints(mHints);
+        mHybridChain = BinarizerChain.createDefault();
+        mGlobalHistogramChain =
+                new BinarizerChain(BinarizerChain.GLOBAL_HISTOGRAM, BinarizerChain.HYBRID);
+    }
+
+    @Benchmark
+    public byte[] rotateYuv() {
+        return Utils.rotateYuv(mImage, mWidth, mHeight, rotation);
+    }
+
+    @Benchmark
+    public Rect getImageFrameRect() {
+        return Utils.getImageFrameRect(mRotatedWidth, mRotatedHeight, mViewFrameRect, mViewSize,
+                mViewSize);
+    }
+
+    @Benchmark
+    public byte[] cropRotateLuma() {
+        final byte[] luma = mLuma;
+        Utils.cropRotateLuma(mImage, mWidth, mHeight, rotation, mFrameRect, reverseHorizontal,
+                luma);
+        return luma;
+    }
+
+    @Benchmark
+    public Result decodeLuminanceSource() throws ReaderException {
+        return decodeLuma(mHybridChain);
+    }
+
+    @Benchmark
+    public Result decodeLuminanceSourceGlobalHistogram() throws ReaderException {
+        return decodeLuma(mGlobalHistogramChain);
+    }
+
+    @Benchmark
+    public Result decodeYuv() {
+        return BarcodeUtils.decodeYuv(mImage, mWidth, mHeight, rotation, reverseHorizontal,
+                mHints);
+    }
+
+    private Result decodeLuma(final BinarizerChain binarizerChain) throws ReaderException {
+        final int frameWidth = mFrameRect.getWidth();
+        final int frameHeight = mFrameRect.getHeight();
+        return mReader.decode(
+                new PlanarYUVLuminanceSource(mLuma, frameWidth, frameHeight, 0, 0, frameWidth,
+                        frameHeight, false), binarizerChain, null, null);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import androidx.annotation.NonNull;
+import com.google.zxing.BarcodeFormat;
+
+/**
+ * Replays recorded frames through {@link Decoder}, doesn't depend on Android framework,
+ * so it can be used on a plain JVM; decoder is configured with its own setters.
+ * <br>
+ * Frames are fed to the decoder the way {@link CodeScanner} feeds camera frames:
+ * in real time mode with recorded intervals, frames which arrive while the decoder
+ * isn't idle are dropped; otherwise each frame is fed as soon as the decoder becomes idle,
+ * so that all frames are decoded as fast as possible. Decoder doesn't stop on results,
+ * like in {@link ScanMode#CONTINUOUS} mode. Frames can be replayed once.
+ *
+ * @see FrameRecorder
+ * @see FrameRecording
+ */
+final class FrameReplay {
+
+    private static final long WAIT_NANOS = 100000L;
+
+    private final Decoder mDecoder;
+    private final ScannerMetrics mMetrics = new ScannerMetrics();
+    private final AtomicReference<Throwable> mError = new AtomicReference<>();
+
+    /**
+     * @param threadsCount Number of decoder threads
+     * @param pipelined    Whether to prepare the next frame on a separate thread,
+     *                     while the previous one is being decoded
+     */
+    public FrameReplay(@NonNull final List<BarcodeFormat> formats, final int threadsCount,
+            final boolean pipelined) {
+        mDecoder = new Decoder(new StateListener(), new ExceptionHandler(), formats, null,
+                threadsCount, pipelined);
+        mDecoder.setMetrics(mMetrics);
+    }
+
+    /**
+     * Decoder to configure before replay
+     */
+    @NonNull
+    public Decoder getDecoder() {
+        return mDecoder;
+    }
+
+    /**
+     * Feed all recorded frames to the decoder and wait until they are decoded or dropped
+     *
+     * @param realTime Whether to feed frames with recorded intervals
+     * @throws IllegalStateException if frames were already replayed or decoder failed
+     */
+    @NonNull
+    public ScannerMetrics.Snapshot replay(@NonNull final FrameRecording recording,
+            final boolean realTime) throws InterruptedException {
+        final Decoder decoder = mDecoder;
+        final ScannerMetrics metrics = mMetrics;
+        decoder.start();
+        try {
+            final FrameRecording.Reader reader = recording.reader();
+            FrameRecording.Frame frame = reader.next();
+            final long firstTimestamp = frame != null ? frame.getTimestamp() : 0L;
+            final long start = System.nanoTime();
+            long submittedCount = 0L;
+            for (; frame != null; frame = reader.next()) {
+                if (realTime) {
+                    final long delay =
+                            frame.getTimestamp() - firstTimestamp - (System.nanoTime() - start);
+                    if (delay > 0L) {
+                        Thread.sleep(delay / 1000000L, (int) (delay % 1000000L));
+                    }
+                    metrics.increment(ScannerMetrics.Counter.FRAMES_RECEIVED);
+                    checkError();
+                    if (decoder.getState() != Decoder.State.IDLE) {
+                        metrics.increment(ScannerMetrics.Counter.FRAMES_DROPPED);
+                        continue;
+                    }
+                } else {
+                    metrics.increment(ScannerMetrics.Counter.FRAMES_RECEIVED);
+                    while (decoder.getState() != Decoder.State.IDLE) {
+                        checkError();
+                        waitForDecoder();
+                    }
+                }
+                decoder.decode(frame.createDecodeTask());
+                submittedCount++;
+            }
+            while (decoder.getFinishedTasksCount() < submittedCount) {
+                checkError();
+                waitForDecoder();
+            }
+        } finally {
+            decoder.shutdown();
+        }
+        checkError();
+        return metrics.snapshot();
+    }
+
+    private void checkError() {
+        final Throwable error = mError.get();
+        if (error != null) {
+            throw new IllegalStateException("Decoder failed", error);
+        }
+    }
+
+    private static void waitForDecoder() throws InterruptedException {
+        LockSupport.parkNanos(WAIT_NANOS);
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private static final class StateListener implements Decoder.StateListener {
+        @Override
+        public boolean onStateChanged(@NonNull final Decoder.State state) {
+            return true;
+        }
+    }
+
+    private final class ExceptionHandler implements Thread.UncaughtExceptionHandler {
+        @Override
+        public void uncaughtException(@NonNull final Thread thread,
+                @NonNull final Throwable throwable) {
+            mError.compareAndSet(null, throwable);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+/**
+ * Replays frame recording through {@link Decoder} and prints decoding metrics
+ * <br>
+ * Arguments: {@code <recording file> [realtime|max] [gate] [diff] [pyramid] [adaptive]
+ * [global] [dedup] [multi] [track] [budget=<ms>] [pipeline] [harder] [race] [tiles]
+ * [localize] [threads=<n>]},
+ * {@code gate} enables {@link FrameQualityGate}, {@code diff} enables
+ * {@link FrameDifferenceFilter}, both with default settings, {@code pyramid} enables
+ * downsampled decoding, {@code adaptive} enables adaptive order of decoding attempts,
+ * {@code global} tries {@link BinarizerChain#GLOBAL_HISTOGRAM} before
+ * {@link BinarizerChain#HYBRID}, {@code dedup} enables {@link ResultDeduplicator}
+ * with default settings, {@code multi} decodes up to 8 codes per frame,
+ * {@code track} enables region of interest tracking,
+ * {@code budget} sets frame time budget, {@code pipeline} prepares the next frame
+ * while the previous one is being decoded, {@code harder} enables
+ * {@link TryHarderPolicy} with default settings, {@code race} enables decode racing,
+ * {@code tiles} enables tiled search of small codes, {@code localize} enables
+ * {@link CodeLocalizer} with default settings, {@code threads} sets the number of
+ * decoder threads, {@code 1} by default
+ *
+ * @see CodeScanner#startFrameRecording(File, long)
+ */
+public final class FrameReplayRunner {
+
+    private FrameReplayRunner() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: <recording file> [realtime|max] [gate] [diff] [pyramid] [adaptive] [global] [dedup] [multi] [track] [budget=<ms>] [pipeline] [harder] [race] [tiles] [localize] [threads=<n>]");
+            System.exit(1);
+            return;
+        }
+        final boolean realTime = args.length < 2 || "realtime".equals(args[1]);
+        final FrameRecording recording = FrameRecording.open(new File(args[0]));
+        final List<String> options = Arrays.asList(args).subList(Math.min(args.length, 2),
+                args.length);
+        int threadsCount = 1;
+        long timeBudgetMillis = 0L;
+        for (final String option : options) {
+            if (option.startsWith("threads=")) {
+                threadsCount = Integer.parseInt(option.substring(8));
+            } else if (option.startsWith("budget=")) {
+                timeBudgetMillis = Long.parseLong(option.substring(7));
+            }
+        }
+        final FrameReplay replay = new FrameReplay(Arrays.asList(BarcodeFormat.values()),
+                threadsCount, options.contains("pipeline"));
+        final Decoder decoder = replay.getDecoder();
+        final FrameQualityGate qualityGate =
+                options.contains("gate") ? new FrameQualityGate() : null;
+        decoder.setQualityGate(qualityGate);
+        final FrameDifferenceFilter differenceFilter =
+                options.contains("diff") ? new FrameDifferenceFilter() : null;
+        decoder.setDifferenceFilter(differenceFilter);
+        decoder.setDownsamplingEnabled(options.contains("pyramid"));
+        decoder.setAdaptiveDecodingEnabled(options.contains("adaptive"));
+        final BinarizerChain binarizerChain = options.contains("global") ?
+                new BinarizerChain(BinarizerChain.GLOBAL_HISTOGRAM, BinarizerChain.HYBRID) :
+                BinarizerChain.createDefault();
+        decoder.setBinarizerChain(binarizerChain);
+        decoder.setRoiTrackingEnabled(options.contains("track"));
+        decoder.setTimeBudgetNanos(timeBudgetMillis * 1000000L);
+        final TryHarderPolicy tryHarderPolicy =
+                options.contains("harder") ? new TryHarderPolicy() : null;
+        decoder.setTryHarderPolicy(tryHarderPolicy);
+        decoder.setRacingEnabled(options.contains("race"));
+        decoder.setTiledSearchEnabled(options.contains("tiles"));
+        decoder.setCodeLocalizer(options.contains("localize") ? new CodeLocalizer() : null);
+        final ResultCounter resultCounter = new ResultCounter();
+        if (options.contains("multi")) {
+            decoder.setMultiCallback(resultCounter);
+            decoder.setMaxResults(8);
+        } else {
+            decoder.setCallback(resultCounter);
+        }
+        decoder.setResultDeduplicator(
+                options.contains("dedup") ? new ResultDeduplicator() : null);
+        final long start = System.nanoTime();
+        final ScannerMetrics.Snapshot snapshot = replay.replay(recording, realTime);
+        final long elapsed = System.nanoTime() - start;
+        System.out.println("Mode: " + (realTime ? "realtime" : "max"));
+        System.out.println("Elapsed: " + elapsed / 1000000L + " ms");
+        System.out.println("Delivered results: " + resultCounter.getCount());
+        for (final ScannerMetrics.Counter counter : ScannerMetrics.Counter.values()) {
+            System.out.println(counter + ": " + snapshot.getCount(counter));
+        }
+        if (qualityGate != null) {
+            for (final FrameQualityGate.Rejection rejection : FrameQualityGate.Rejection.values()) {
+                System.out.println("Rejected " + rejection + ": " +
+                        qualityGate.getRejectedFramesCount(rejection));
+            }
+        }
+        for (int i = 0; i < binarizerChain.size(); i++) {
+            final long attempts = binarizerChain.getAttemptsCount(i);
+            System.out.println("Binarizer " + i + ": attempts " + attempts + ", successes " +
+                    binarizerChain.getSuccessesCount(i) + ", avg " +
+                    (attempts > 0L ? binarizerChain.getElapsedNanos(i) / attempts / 1000L : 0L) +
+                    " us");
+        }
+        if (tryHarderPolicy != null) {
+            System.out.println("Escalated: " + tryHarderPolicy.getEscalatedFramesCount());
+        }
+        if (differenceFilter != null) {
+            System.out.println("Skipped unchanged: " + differenceFilter.getSkippedFramesCount());
+        }
+        final long decoded = snapshot.getCount(ScannerMetrics.Counter.FRAMES_DECODED);
+        if (elapsed > 0L) {
+            System.out.println("Throughput: " + decoded * 1000000000L / elapsed + " frames/s");
+        }
+        for (final ScannerMetrics.Stage stage : ScannerMetrics.Stage.values()) {
+            final ScannerMetrics.StageSnapshot stageSnapshot = snapshot.getStage(stage);
+            System.out.println(stage + ": count " + stageSnapshot.getCount() + ", avg " +
+                    stageSnapshot.getAverageNanos() / 1000L + " us, p50 " +
+                    stageSnapshot.getPercentileNanos(0.5) / 1000L + " us, p99 " +
+                    stageSnapshot.getPercentileNanos(0.99) / 1000L + " us, max " +
+                    stageSnapshot.getMaxNanos() / 1000L + " us");
+        }
+    }
+
+    private static final class ResultCounter implements DecodeCallback, MultiDecodeCallback {
+        private final AtomicLong mCount = new AtomicLong();
+
+        @Override
+        public void onDecoded(@NonNull final Result result) {
+            mCount.incrementAndGet();
+        }
+
+        @Override
+        public void onDecoded(@NonNull final List<Result> results) {
+            mCount.addAndGet(results.size());
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+    }
+}
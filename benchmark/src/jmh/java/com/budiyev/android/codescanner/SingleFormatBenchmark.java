@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * Decoding of a frame with a single requested format: generic {@link MultiFormatReader}
+ * dispatch against the dedicated reader, which {@link FormatReader} uses for it;
+ * frames without a code, which are the most of preview frames, go through all reader paths
+ */
+@State(Scope.Thread)
+public class SingleFormatBenchmark {
+
+    @Param({"QR_CODE", "EAN_13", "CODE_128"})
+    public String format;
+
+    @Param({"1280x720"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean empty;
+
+    private Map<DecodeHintType, Object> mHints;
+    private MultiFormatReader mMultiFormatReader;
+    private Reader mFormatReader;
+    private byte[] mLuma;
+    private int mWidth;
+    private int mHeight;
+
+    @Setup
+    public void setUp() {
+        final BarcodeFormat barcodeFormat = BarcodeFormat.valueOf(format);
+        final Point imageSize = BenchmarkFrames.parseSize(size);
+        mWidth = imageSize.getX();
+        mHeight = imageSize.getY();
+        if (empty) {
+            mLuma = new byte[mWidth * mHeight];
+            Arrays.fill(mLuma, (byte) 0xc0);
+        } else {
+            mLuma = BenchmarkFrames.createNv21(barcodeFormat, mWidth, mHeight);
+        }
+        final List<BarcodeFormat> formats = Collections.singletonList(barcodeFormat);
+        final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        mHints = hints;
+        mMultiFormatReader = new MultiFormatReader();
+        mMultiFormatReader.setHints(hints);
+        mFormatReader = FormatReader.createFormatReader(barcodeFormat, hints);
+    }
+
+    @Benchmark
+    public Result decodeMultiFormatReader() {
+        try {
+            return mMultiFormatReader.decodeWithState(createBitmap());
+        } catch (final ReaderException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Result decodeFormatReader() {
+        final Reader reader = mFormatReader;
+        try {
+            return reader.decode(createBitmap(), mHints);
+        } catch (final ReaderException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private BinaryBitmap createBitmap() {
+        return new BinaryBitmap(new HybridBinarizer(
+                new PlanarYUVLuminanceSource(mLuma, mWidth, mHeight, 0, 0, mWidth, mHeight,
+                        false)));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.List;
+
+import com.google.zxing.BarcodeFormat;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class CodeLocalizerTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Test
+    public void findsQrCodesLargestFirst() {
+        final byte[] luma = createLuma();
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "large", BarcodeFormat.QR_CODE, 60,
+                60, 200);
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "small", BarcodeFormat.QR_CODE, 450,
+                320, 100);
+        final CodeLocalizer localizer = new CodeLocalizer();
+        final List<Rect> regions = localizer.localize(luma, WIDTH, HEIGHT);
+        assertEquals(2, regions.size());
+        assertContains(regions.get(0), new Rect(80, 80, 240, 240));
+        assertContains(regions.get(1), new Rect(460, 330, 540, 410));
+        assertEquals(1L, localizer.getLocalizedFramesCount());
+        assertEquals(0L, localizer.getEmptyFramesCount());
+    }
+
+    @Test
+    public void findsLinearCode() {
+        final byte[] luma = createLuma();
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "5901234123457", BarcodeFormat.EAN_13,
+                200, 150, 240);
+        final List<Rect> regions = new CodeLocalizer().localize(luma, WIDTH, HEIGHT);
+        assertEquals(1, regions.size());
+        // Bars and guards, quiet zones aren't needed
+        assertContains(regions.get(0), new Rect(220, 150, 420, 390));
+    }
+
+    @Test
+    public void limitsRegionsCount() {
+        final byte[] luma = createLuma();
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "large", BarcodeFormat.QR_CODE, 60,
+                60, 200);
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "small", BarcodeFormat.QR_CODE, 450,
+                320, 100);
+        final CodeLocalizer localizer = new CodeLocalizer();
+        localizer.setMaxRegions(1);
+        final List<Rect> regions = localizer.localize(luma, WIDTH, HEIGHT);
+        assertEquals(1, regions.size());
+        assertContains(regions.get(0), new Rect(80, 80, 240, 240));
+    }
+
+    @Test
+    public void findsNothingInEmptyFrame() {
+        final CodeLocalizer localizer = new CodeLocalizer();
+        assertTrue(localizer.localize(createLuma(), WIDTH, HEIGHT).isEmpty());
+        assertEquals(1L, localizer.getEmptyFramesCount());
+    }
+
+    @Test
+    public void skipsTooSmallFrames() {
+        final CodeLocalizer localizer = new CodeLocalizer();
+        assertNull(localizer.localize(new byte[36], 6, 6));
+        assertEquals(0L, localizer.getLocalizedFramesCount());
+    }
+
+    @Test
+    public void decodesFullyWithoutGating() {
+        final CodeLocalizer localizer = new CodeLocalizer();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(localizer.shouldDecodeFully());
+        }
+    }
+
+    @Test
+    public void gatingForcesFullDecodePeriodically() {
+        final CodeLocalizer localizer = new CodeLocalizer();
+        localizer.setGatingEnabled(true);
+        localizer.setForcedDecodeInterval(2);
+        for (int i = 0; i < 2; i++) {
+            assertFalse(localizer.shouldDecodeFully());
+            assertFalse(localizer.shouldDecodeFully());
+            assertTrue(localizer.shouldDecodeFully());
+        }
+    }
+
+    private static void assertContains(final Rect region, final Rect code) {
+        assertTrue(region + " doesn't contain " + code,
+                region.getLeft() <= code.getLeft() && region.getTop() <= code.getTop() &&
+                        region.getRight() >= code.getRight() &&
+                        region.getBottom() >= code.getBottom());
+    }
+
+    /**
+     * Light background with a smooth gradient
+     */
+    private static byte[] createLuma() {
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                luma[y * WIDTH + x] = (byte) (160 + (x + y) / 32);
+            }
+        }
+        return luma;
+    }
+}
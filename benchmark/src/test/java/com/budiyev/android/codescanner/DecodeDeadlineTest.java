@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class DecodeDeadlineTest {
+
+    @Test
+    public void childStartedAfterCancellationIsCancelled() {
+        final DecodeDeadline parent = new DecodeDeadline();
+        parent.start(0L);
+        // Decoder was cancelled before the helper has been prepared
+        parent.cancel();
+        final DecodeDeadline child = new DecodeDeadline();
+        child.start(parent);
+        assertTrue(child.isCancelled());
+        assertTrue(child.isExpired());
+    }
+
+    @Test
+    public void childIsCancelledWithParent() {
+        final DecodeDeadline parent = new DecodeDeadline();
+        parent.start(0L);
+        final DecodeDeadline child = new DecodeDeadline();
+        child.start(parent);
+        assertFalse(child.isExpired());
+        parent.cancel();
+        assertTrue(child.isCancelled());
+        assertTrue(child.isExpired());
+        // Own budget doesn't depend on the previous parent
+        child.start(0L);
+        assertFalse(child.isExpired());
+    }
+}
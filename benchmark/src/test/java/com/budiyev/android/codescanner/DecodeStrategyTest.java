@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class DecodeStrategyTest {
+
+    private static final int ATTEMPTS_COUNT = 4;
+    private static final int FAMILIES_COUNT = 3;
+
+    @Test
+    public void keepsDefaultOrderWithoutSuccesses() {
+        final DecodeStrategy strategy = new DecodeStrategy(FAMILIES_COUNT);
+        final int[] attempts = new int[ATTEMPTS_COUNT];
+        final int[] families = new int[FAMILIES_COUNT];
+        assertFalse(strategy.order(attempts, families));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, attempts);
+        assertArrayEquals(new int[] {0, 1, 2}, families);
+    }
+
+    @Test
+    public void triesSuccessfulEntriesFirst() {
+        final DecodeStrategy strategy = new DecodeStrategy(FAMILIES_COUNT);
+        final int[] attempts = new int[ATTEMPTS_COUNT];
+        final int[] families = new int[FAMILIES_COUNT];
+        strategy.order(attempts, families);
+        strategy.onDecoded(2, 1);
+        strategy.order(attempts, families);
+        assertArrayEquals(new int[] {2, 0, 1, 3}, attempts);
+        assertArrayEquals(new int[] {1, 0, 2}, families);
+    }
+
+    @Test
+    public void followsRecentSuccesses() {
+        final DecodeStrategy strategy = new DecodeStrategy(FAMILIES_COUNT);
+        final int[] attempts = new int[ATTEMPTS_COUNT];
+        final int[] families = new int[FAMILIES_COUNT];
+        strategy.order(attempts, families);
+        for (int i = 0; i < 3; i++) {
+            strategy.onDecoded(3, 2);
+        }
+        for (int i = 0; i < 5; i++) {
+            strategy.onDecoded(1, 0);
+        }
+        strategy.order(attempts, families);
+        assertArrayEquals(new int[] {1, 3, 0, 2}, attempts);
+        assertArrayEquals(new int[] {0, 2, 1}, families);
+    }
+
+    @Test
+    public void reversesOrderPeriodically() {
+        final DecodeStrategy strategy = new DecodeStrategy(FAMILIES_COUNT);
+        final int[] attempts = new int[ATTEMPTS_COUNT];
+        final int[] families = new int[FAMILIES_COUNT];
+        strategy.order(attempts, families);
+        strategy.onDecoded(2, 1);
+        for (int i = 1; i < 31; i++) {
+            assertFalse(strategy.order(attempts, families));
+        }
+        // The least successful entries are tried first
+        assertTrue(strategy.order(attempts, families));
+        assertArrayEquals(new int[] {3, 1, 0, 2}, attempts);
+        assertArrayEquals(new int[] {2, 0, 1}, families);
+        assertFalse(strategy.order(attempts, families));
+        assertArrayEquals(new int[] {2, 0, 1, 3}, attempts);
+    }
+
+    @Test
+    public void resetsAttemptScoresWhenAttemptsCountChanges() {
+        final DecodeStrategy strategy = new DecodeStrategy(FAMILIES_COUNT);
+        final int[] families = new int[FAMILIES_COUNT];
+        strategy.order(new int[ATTEMPTS_COUNT], families);
+        strategy.onDecoded(3, 2);
+        final int[] attempts = new int[ATTEMPTS_COUNT + 2];
+        strategy.order(attempts, families);
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5}, attempts);
+        assertArrayEquals(new int[] {2, 0, 1}, families);
+    }
+}
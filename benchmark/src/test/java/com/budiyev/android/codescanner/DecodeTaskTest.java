@@ -0,0 +1,257 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class DecodeTaskTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final String CONTENT = "decode-task-test";
+
+    @Test
+    public void failedFrameIsRememberedAsUnreadable() {
+        final DecodeContext context = createContext();
+        final FrameDifferenceFilter differenceFilter = new FrameDifferenceFilter();
+        context.setDifferenceFilter(differenceFilter);
+        final PreparedFrame frame = createBlankFrame();
+        assertNotDecoded(context, frame);
+        assertTrue(differenceFilter.shouldSkip(frame.getSignature()));
+    }
+
+    @Test
+    public void abandonedFrameIsNotRememberedAsUnreadable() {
+        final DecodeContext context = createContext();
+        final FrameDifferenceFilter differenceFilter = new FrameDifferenceFilter();
+        context.setDifferenceFilter(differenceFilter);
+        // Budget expires before decoding starts
+        context.setTimeBudgetNanos(1L);
+        final PreparedFrame frame = createBlankFrame();
+        assertNotDecoded(context, frame);
+        assertFalse(differenceFilter.shouldSkip(frame.getSignature()));
+    }
+
+    @Test
+    public void abandonedFramesAreNotCountedAsFailures() {
+        final DecodeContext context = createContext();
+        final TryHarderPolicy policy = new TryHarderPolicy();
+        policy.setInterval(0);
+        policy.setFailuresThreshold(2);
+        policy.setStabilityThreshold(0);
+        context.setTryHarderPolicy(policy);
+        context.setTimeBudgetNanos(1L);
+        for (int i = 0; i < 3; i++) {
+            assertNotDecoded(context, createBlankFrame());
+        }
+        assertEquals(0L, policy.getEscalatedFramesCount());
+        context.setTimeBudgetNanos(0L);
+        for (int i = 0; i < 3; i++) {
+            assertNotDecoded(context, createBlankFrame());
+        }
+        assertEquals(1L, policy.getEscalatedFramesCount());
+    }
+
+    @Test
+    public void abandonedEscalationIsRepeated() {
+        final DecodeContext context = createContext();
+        final TryHarderPolicy policy = new TryHarderPolicy();
+        policy.setInterval(2);
+        policy.setFailuresThreshold(0);
+        policy.setStabilityThreshold(0);
+        context.setTryHarderPolicy(policy);
+        assertNotDecoded(context, createBlankFrame());
+        context.setTimeBudgetNanos(1L);
+        // Escalated by the interval, but abandoned
+        assertNotDecoded(context, createBlankFrame());
+        assertEquals(1L, policy.getEscalatedFramesCount());
+        context.setTimeBudgetNanos(0L);
+        assertNotDecoded(context, createBlankFrame());
+        assertEquals(2L, policy.getEscalatedFramesCount());
+    }
+
+    @Test
+    public void downsampledMissIsReportedToEstimator() {
+        final DecodeContext context = createContext();
+        final DownsampleEstimator estimator = createLargeCodeEstimator();
+        context.setDownsampleEstimator(estimator);
+        assertEquals(2, estimator.getFactor(WIDTH, HEIGHT));
+        assertNotDecoded(context, createBlankFrame());
+        assertEquals(1, estimator.getFactor(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void abandonedDownsampledPassIsNotReportedToEstimator() {
+        final DecodeContext context = createContext();
+        final DownsampleEstimator estimator = createLargeCodeEstimator();
+        context.setDownsampleEstimator(estimator);
+        context.setTimeBudgetNanos(1L);
+        assertNotDecoded(context, createBlankFrame());
+        assertEquals(2, estimator.getFactor(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void decodesPreparedFrame() throws ReaderException {
+        final DecodeContext context = createContext();
+        final Result result = DecodeTask.decodePrepared(context, createCodeFrame());
+        assertEquals(CONTENT, result.getText());
+    }
+
+    @Test
+    public void decodesFullFrameIfLocalizerMissedCode() throws ReaderException {
+        final DecodeContext context = createContext();
+        final CodeLocalizer localizer = new CodeLocalizer();
+        // No cell is a candidate
+        localizer.setMinGradient(255);
+        context.setCodeLocalizer(localizer);
+        assertEquals(CONTENT, DecodeTask.decodePrepared(context, createCodeFrame()).getText());
+        assertEquals(1L, localizer.getEmptyFramesCount());
+    }
+
+    @Test
+    public void gatedLocalizerForcesFullDecodePeriodically() throws ReaderException {
+        final DecodeContext context = createContext();
+        final CodeLocalizer localizer = new CodeLocalizer();
+        localizer.setMinGradient(255);
+        localizer.setGatingEnabled(true);
+        localizer.setForcedDecodeInterval(3);
+        context.setCodeLocalizer(localizer);
+        for (int i = 0; i < 3; i++) {
+            assertNotDecoded(context, createCodeFrame());
+        }
+        assertEquals(CONTENT, DecodeTask.decodePrepared(context, createCodeFrame()).getText());
+        assertNotDecoded(context, createCodeFrame());
+    }
+
+    @Test
+    public void cropIsRecordedForWindowCopiesOnly() throws ReaderException {
+        final DecodeContext context = createContext();
+        final ScannerMetrics metrics = new ScannerMetrics();
+        context.setMetrics(metrics);
+        context.setRoiTracker(new RoiTracker());
+        final Point imageSize = new Point(WIDTH, HEIGHT);
+        final DecodeTask task = new DecodeTask(new Nv21FrameImage(
+                SyntheticFrameSource.createFrame(CONTENT, BarcodeFormat.QR_CODE, WIDTH, HEIGHT),
+                null), imageSize, imageSize, imageSize, new Rect(0, 0, WIDTH, HEIGHT), 0, false);
+        final PreparedFrame frame = new PreparedFrame();
+        try {
+            assertEquals(CONTENT, task.decode(context).getText());
+            assertTrue(task.prepare(frame, metrics, null, null));
+        } finally {
+            task.recycle();
+        }
+        ScannerMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2L, snapshot.getStage(ScannerMetrics.Stage.ROTATE).getCount());
+        assertEquals(0L, snapshot.getStage(ScannerMetrics.Stage.CROP).getCount());
+        // Window around the decoded code is copied from the prepared luma
+        assertEquals(CONTENT, DecodeTask.decodePrepared(context, frame).getText());
+        snapshot = metrics.snapshot();
+        assertEquals(2L, snapshot.getStage(ScannerMetrics.Stage.ROTATE).getCount());
+        assertEquals(1L, snapshot.getStage(ScannerMetrics.Stage.CROP).getCount());
+    }
+
+    @Test
+    public void trackedWindowFollowsMirroredCode() throws ReaderException {
+        final DecodeContext context = createContext();
+        final ScannerMetrics metrics = new ScannerMetrics();
+        context.setMetrics(metrics);
+        context.setRoiTracker(new RoiTracker());
+        // Code is off the centre of the frame rect, so that mirrored window misses it
+        final byte[] image =
+                SyntheticFrameSource.createFrame(CONTENT, BarcodeFormat.QR_CODE, WIDTH, HEIGHT);
+        Arrays.fill(image, 0, WIDTH * HEIGHT, (byte) 0xFF);
+        SyntheticFrameSource.drawCode(image, WIDTH, HEIGHT, CONTENT, BarcodeFormat.QR_CODE, 120,
+                160, 160);
+        final Point imageSize = new Point(WIDTH, HEIGHT);
+        final Rect frameRect = new Rect(80, 0, WIDTH, HEIGHT);
+        final PreparedFrame frame = new PreparedFrame();
+        for (int i = 0; i < 2; i++) {
+            final DecodeTask task =
+                    new DecodeTask(new Nv21FrameImage(image, null), imageSize, imageSize,
+                            imageSize, frameRect, 0, true);
+            try {
+                assertEquals(CONTENT, task.decode(context).getText());
+                assertTrue(task.prepare(frame, metrics, null, null));
+            } finally {
+                task.recycle();
+            }
+        }
+        assertEquals(1L, metrics.snapshot().getCount(ScannerMetrics.Counter.TRACKED_SUCCESSES));
+        assertEquals(CONTENT, DecodeTask.decodePrepared(context, frame).getText());
+        assertEquals(2L, metrics.snapshot().getCount(ScannerMetrics.Counter.TRACKED_SUCCESSES));
+    }
+
+    private static PreparedFrame createCodeFrame() {
+        final PreparedFrame frame = new PreparedFrame();
+        final byte[] luma = frame.obtainLuma(new Rect(0, 0, WIDTH, HEIGHT), false);
+        System.arraycopy(SyntheticFrameSource.createFrame(CONTENT, BarcodeFormat.QR_CODE, WIDTH,
+                HEIGHT), 0, luma, 0, WIDTH * HEIGHT);
+        return frame;
+    }
+
+    private static void assertNotDecoded(final DecodeContext context, final PreparedFrame frame) {
+        try {
+            assertNull(DecodeTask.decodePrepared(context, frame));
+        } catch (final ReaderException ignored) {
+        }
+    }
+
+    private static DecodeContext createContext() {
+        final FormatReader reader = new FormatReader();
+        reader.setFormats(Collections.singletonList(BarcodeFormat.QR_CODE));
+        return new DecodeContext(reader);
+    }
+
+    private static DownsampleEstimator createLargeCodeEstimator() {
+        final DownsampleEstimator estimator = new DownsampleEstimator();
+        estimator.onDecoded(new Result(CONTENT, null,
+                new ResultPoint[] {new ResultPoint(0f, 0f), new ResultPoint(800f, 800f)},
+                BarcodeFormat.DATA_MATRIX), 1);
+        return estimator;
+    }
+
+    private static PreparedFrame createBlankFrame() {
+        final PreparedFrame frame = new PreparedFrame();
+        final byte[] luma = frame.obtainLuma(new Rect(0, 0, WIDTH, HEIGHT), false);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                luma[y * WIDTH + x] = (byte) (64 + (x + y) / 16);
+            }
+        }
+        FrameDifferenceFilter.computeSignature(luma, WIDTH, HEIGHT, frame.getSignature());
+        return frame;
+    }
+}
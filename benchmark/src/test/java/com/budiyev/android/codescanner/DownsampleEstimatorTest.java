@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.Collections;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class DownsampleEstimatorTest {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Test
+    public void usesFullResolutionUntilDecoded() {
+        assertEquals(1, new DownsampleEstimator().getFactor(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void downsamplesLargeCodes() {
+        final DownsampleEstimator estimator = new DownsampleEstimator();
+        estimator.onDecoded(result(BarcodeFormat.DATA_MATRIX, 800), 1);
+        assertEquals(4, estimator.getFactor(WIDTH, HEIGHT));
+        // Downsampled luma would be too small
+        assertEquals(2, estimator.getFactor(640, 480));
+        assertEquals(1, estimator.getFactor(320, 240));
+    }
+
+    @Test
+    public void scalesSpreadOfDownsampledResult() {
+        final DownsampleEstimator estimator = new DownsampleEstimator();
+        estimator.onDecoded(result(BarcodeFormat.DATA_MATRIX, 200), 4);
+        assertEquals(4, estimator.getFactor(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void backsOffAfterDownsampledMisses() {
+        final DownsampleEstimator estimator = new DownsampleEstimator();
+        estimator.onDecoded(result(BarcodeFormat.DATA_MATRIX, 800), 1);
+        estimator.onDownsampledMissed(4);
+        assertEquals(2, estimator.getFactor(WIDTH, HEIGHT));
+        // Full resolution success doesn't bring the larger factor back
+        estimator.onDecoded(result(BarcodeFormat.DATA_MATRIX, 800), 1);
+        assertEquals(2, estimator.getFactor(WIDTH, HEIGHT));
+        estimator.onDownsampledMissed(2);
+        assertEquals(1, estimator.getFactor(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void forgetsLostCode() {
+        final DownsampleEstimator estimator = new DownsampleEstimator();
+        estimator.onDecoded(result(BarcodeFormat.DATA_MATRIX, 800), 1);
+        estimator.onDownsampledMissed(4);
+        for (int i = 0; i < 7; i++) {
+            estimator.onDecoded(null, 1);
+        }
+        assertEquals(2, estimator.getFactor(WIDTH, HEIGHT));
+        estimator.onDecoded(null, 1);
+        assertEquals(1, estimator.getFactor(WIDTH, HEIGHT));
+        estimator.onDecoded(result(BarcodeFormat.DATA_MATRIX, 800), 1);
+        assertEquals(4, estimator.getFactor(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void weighsModuleSizeOfLinearCodes() {
+        final DownsampleEstimator estimator = new DownsampleEstimator();
+        // 95 modules, about 8 pixels each
+        estimator.onDecoded(result(BarcodeFormat.EAN_13, 800), 1);
+        assertEquals(2, estimator.getFactor(WIDTH, HEIGHT));
+        estimator.onDecoded(result(BarcodeFormat.EAN_13, 1200), 1);
+        assertEquals(4, estimator.getFactor(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void weighsModuleSizeOfQrCode() throws ReaderException {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            content.append((char) ('a' + i % 26));
+        }
+        final PreparedFrame frame = new PreparedFrame();
+        final byte[] luma = frame.obtainLuma(new Rect(0, 0, WIDTH, HEIGHT), false);
+        System.arraycopy(SyntheticFrameSource.createFrame(content.toString(),
+                BarcodeFormat.QR_CODE, WIDTH, HEIGHT), 0, luma, 0, WIDTH * HEIGHT);
+        final FormatReader reader = new FormatReader();
+        reader.setFormats(Collections.singletonList(BarcodeFormat.QR_CODE));
+        final Result result = DecodeTask.decodePrepared(new DecodeContext(reader), frame);
+        final DownsampleEstimator estimator = new DownsampleEstimator();
+        estimator.onDecoded(result, 1);
+        // Code is large enough for factor 4, but its modules are about 7 pixels
+        assertEquals(2, estimator.getFactor(WIDTH, HEIGHT));
+    }
+
+    private static Result result(final BarcodeFormat format, final int spread) {
+        return new Result("code", null, new ResultPoint[] {new ResultPoint(100f, 100f),
+                new ResultPoint(100f + spread, 100f + spread / 2f)}, format);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class FrameDifferenceFilterTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Test
+    public void decodesFramesUntilOneFails() {
+        final FrameDifferenceFilter filter = new FrameDifferenceFilter();
+        final byte[] signature = signature(createLuma(0));
+        assertFalse(filter.shouldSkip(signature));
+        filter.onDecoded(signature, true);
+        assertFalse(filter.shouldSkip(signature));
+    }
+
+    @Test
+    public void skipsFramesSimilarToFailedOne() {
+        final FrameDifferenceFilter filter = new FrameDifferenceFilter();
+        filter.onDecoded(signature(createLuma(0)), false);
+        // Sensor noise
+        assertTrue(filter.shouldSkip(signature(createLuma(2))));
+        // Scene changed
+        final byte[] luma = createLuma(0);
+        for (int y = 60; y < 180; y++) {
+            Arrays.fill(luma, y * WIDTH + 80, y * WIDTH + 240, (byte) 0);
+        }
+        assertFalse(filter.shouldSkip(signature(luma)));
+        assertEquals(1L, filter.getSkippedFramesCount());
+    }
+
+    @Test
+    public void decodesSimilarFrameAfterSuccess() {
+        final FrameDifferenceFilter filter = new FrameDifferenceFilter();
+        final byte[] signature = signature(createLuma(0));
+        filter.onDecoded(signature, false);
+        filter.onDecoded(signature, true);
+        assertFalse(filter.shouldSkip(signature));
+    }
+
+    @Test
+    public void forcesDecodeAfterInterval() {
+        final FrameDifferenceFilter filter = new FrameDifferenceFilter();
+        filter.setForcedDecodeInterval(2);
+        final byte[] signature = signature(createLuma(0));
+        filter.onDecoded(signature, false);
+        assertTrue(filter.shouldSkip(signature));
+        assertTrue(filter.shouldSkip(signature));
+        assertFalse(filter.shouldSkip(signature));
+        assertTrue(filter.shouldSkip(signature));
+    }
+
+    @Test
+    public void decodesFrameAfterInvalidation() {
+        final FrameDifferenceFilter filter = new FrameDifferenceFilter();
+        final byte[] signature = signature(createLuma(0));
+        filter.onDecoded(signature, false);
+        filter.invalidate();
+        assertFalse(filter.shouldSkip(signature));
+    }
+
+    @Test
+    public void zeroThresholdDisablesSkipping() {
+        final FrameDifferenceFilter filter = new FrameDifferenceFilter();
+        filter.setThreshold(0);
+        final byte[] signature = signature(createLuma(0));
+        filter.onDecoded(signature, false);
+        assertFalse(filter.shouldSkip(signature));
+    }
+
+    /**
+     * Gradient, which is brighter by the specified amount
+     */
+    private static byte[] createLuma(final int brightness) {
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                luma[y * WIDTH + x] = (byte) (64 + brightness + (x + y) / 8);
+            }
+        }
+        return luma;
+    }
+
+    private static byte[] signature(final byte[] luma) {
+        final byte[] signature = new byte[FrameDifferenceFilter.SIGNATURE_LENGTH];
+        FrameDifferenceFilter.computeSignature(luma, WIDTH, HEIGHT, signature);
+        return signature;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.ReaderException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class FrameRecordingTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final String CONTENT = "frame-recording-test";
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void readsRecordedFrames() throws IOException {
+        final File file = mFolder.newFile();
+        final byte[] first = SyntheticFrameSource.createFrame(CONTENT, BarcodeFormat.QR_CODE,
+                WIDTH, HEIGHT);
+        final byte[] second = new byte[first.length];
+        try (final FrameRecorder recorder = new FrameRecorder(file, 1 << 20)) {
+            assertTrue(recorder.record(first, new Point(WIDTH, HEIGHT), 90, true,
+                    new Rect(10, 20, 400, 600), 1000L));
+            assertTrue(recorder.record(second, new Point(WIDTH, HEIGHT), 0, false,
+                    new Rect(0, 0, WIDTH, HEIGHT), 2000L));
+            assertEquals(2, recorder.getFramesCount());
+        }
+        final FrameRecording recording = FrameRecording.open(file);
+        assertEquals(2, recording.getFramesCount());
+        final FrameRecording.Reader reader = recording.reader();
+        final FrameRecording.Frame frame = reader.next();
+        assertArrayEquals(first, frame.getImage());
+        assertEquals(new Point(WIDTH, HEIGHT), frame.getImageSize());
+        assertEquals(90, frame.getOrientation());
+        assertTrue(frame.shouldReverseHorizontal());
+        assertEquals(new Rect(10, 20, 400, 600), frame.getFrameRect());
+        assertEquals(1000L, frame.getTimestamp());
+        final FrameRecording.Frame next = reader.next();
+        assertArrayEquals(second, next.getImage());
+        assertEquals(0, next.getOrientation());
+        assertFalse(next.shouldReverseHorizontal());
+        assertEquals(2000L, next.getTimestamp());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void stopsRecordingWhenFull() throws IOException {
+        final File file = mFolder.newFile();
+        final byte[] image = new byte[1000];
+        final int frameSize = FrameRecorder.FRAME_HEADER_SIZE + image.length;
+        // One byte short of the third frame
+        try (final FrameRecorder recorder =
+                new FrameRecorder(file, FrameRecorder.HEADER_SIZE + frameSize * 3 - 1)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i < 2, recorder.record(image, new Point(40, 25), 0, false,
+                        new Rect(0, 0, 40, 25), i));
+            }
+        }
+        assertEquals(FrameRecorder.HEADER_SIZE + frameSize * 2, file.length());
+        assertEquals(2, FrameRecording.open(file).getFramesCount());
+    }
+
+    @Test
+    public void readsRecordingWhichWasNotClosed() throws IOException {
+        final File file = mFolder.newFile();
+        // Recorder isn't closed, so the file keeps its mapped size
+        final FrameRecorder recorder = new FrameRecorder(file, 1 << 16);
+        recorder.record(new byte[100], new Point(10, 10), 0, false, new Rect(0, 0, 10, 10), 1L);
+        final FrameRecording.Reader reader = FrameRecording.open(file).reader();
+        assertEquals(1L, reader.next().getTimestamp());
+        assertNull(reader.next());
+        recorder.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        FrameRecording.open(mFolder.newFile());
+    }
+
+    @Test
+    public void decodesRotatedRecordedFrame() throws IOException, ReaderException {
+        final File file = mFolder.newFile();
+        final byte[] image = SyntheticFrameSource.createFrame(CONTENT, BarcodeFormat.QR_CODE,
+                WIDTH, HEIGHT);
+        try (final FrameRecorder recorder = new FrameRecorder(file, 1 << 20)) {
+            // Frame rect is in rotated, portrait image coordinates
+            recorder.record(image, new Point(WIDTH, HEIGHT), 90, false,
+                    new Rect(40, 120, HEIGHT - 40, WIDTH - 120), 0L);
+        }
+        final FrameRecording.Frame frame = FrameRecording.open(file).reader().next();
+        final FormatReader reader = new FormatReader();
+        reader.setFormats(Collections.singletonList(BarcodeFormat.QR_CODE));
+        final DecodeTask task = frame.createDecodeTask();
+        try {
+            assertEquals(CONTENT, task.decode(new DecodeContext(reader)).getText());
+        } finally {
+            task.recycle();
+        }
+    }
+}
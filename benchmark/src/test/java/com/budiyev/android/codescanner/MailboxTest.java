@@ -0,0 +1,210 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class MailboxTest {
+
+    private static final int ROUNDS = 200;
+    private static final int ITEMS_PER_PRODUCER = 2000;
+    private static final long JOIN_TIMEOUT_MILLIS = 10000L;
+
+    @Test
+    public void keepsLatestItem() {
+        final List<Integer> dropped = new ArrayList<>();
+        final Mailbox<Integer> mailbox = new Mailbox<>(new Mailbox.DropListener<Integer>() {
+            @Override
+            public void onDropped(final Integer item) {
+                dropped.add(item);
+            }
+        });
+        assertFalse(mailbox.put(1));
+        assertTrue(mailbox.put(2));
+        assertEquals(Integer.valueOf(2), mailbox.take());
+        assertTrue(mailbox.isEmpty());
+        assertEquals(1L, mailbox.getOverwrittenCount());
+        mailbox.put(3);
+        mailbox.close();
+        assertFalse(mailbox.put(4));
+        assertNull(mailbox.take());
+        assertEquals(3, dropped.size());
+    }
+
+    @Test
+    public void closeWakesParkedConsumer() throws InterruptedException {
+        final Mailbox<Integer> mailbox = new Mailbox<>(new CountingDropListener(1));
+        final Consumer consumer = new Consumer(mailbox, new AtomicIntegerArray(1), null);
+        consumer.start();
+        while (consumer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1L);
+        }
+        mailbox.close();
+        consumer.join(JOIN_TIMEOUT_MILLIS);
+        assertFalse("Consumer wasn't woken up by close()", consumer.isAlive());
+        assertTrue(consumer.isReturnedNull());
+    }
+
+    /**
+     * Producers put against consumers and close(); each item must be either taken or dropped
+     * exactly once, each consumer must return {@code null} after close()
+     */
+    @Test
+    public void noItemsLostAcrossClose() throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            final int producersCount = 1 + round % 3;
+            final int consumersCount = 1 + round % 4;
+            final int itemsCount = producersCount * ITEMS_PER_PRODUCER;
+            final AtomicIntegerArray seen = new AtomicIntegerArray(itemsCount);
+            final Mailbox<Integer> mailbox = new Mailbox<>(new CountingDropListener(seen));
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Thread> producers = new ArrayList<>(producersCount);
+            for (int i = 0; i < producersCount; i++) {
+                final Producer producer = new Producer(mailbox, start, i * ITEMS_PER_PRODUCER,
+                        ITEMS_PER_PRODUCER);
+                producers.add(producer);
+                producer.start();
+            }
+            final List<Consumer> consumers = new ArrayList<>(consumersCount);
+            for (int i = 0; i < consumersCount; i++) {
+                final Consumer consumer = new Consumer(mailbox, seen, start);
+                consumers.add(consumer);
+                consumer.start();
+            }
+            start.countDown();
+            // Close at different points of the round: before, during and after production
+            if (round % 5 != 0) {
+                Thread.sleep(round % 3);
+            }
+            mailbox.close();
+            for (final Thread producer : producers) {
+                producer.join(JOIN_TIMEOUT_MILLIS);
+                assertFalse("Producer is stuck in round " + round, producer.isAlive());
+            }
+            for (final Consumer consumer : consumers) {
+                consumer.join(JOIN_TIMEOUT_MILLIS);
+                assertFalse("Lost wake-up in round " + round, consumer.isAlive());
+                assertTrue(consumer.isReturnedNull());
+            }
+            for (int i = 0; i < itemsCount; i++) {
+                assertEquals("Item " + i + " in round " + round, 1, seen.get(i));
+            }
+            assertTrue(mailbox.isEmpty());
+        }
+    }
+
+    private static final class CountingDropListener implements Mailbox.DropListener<Integer> {
+        private final AtomicIntegerArray mSeen;
+
+        public CountingDropListener(final int itemsCount) {
+            this(new AtomicIntegerArray(itemsCount));
+        }
+
+        public CountingDropListener(final AtomicIntegerArray seen) {
+            mSeen = seen;
+        }
+
+        @Override
+        public void onDropped(final Integer item) {
+            mSeen.incrementAndGet(item);
+        }
+    }
+
+    private static final class Producer extends Thread {
+        private final Mailbox<Integer> mMailbox;
+        private final CountDownLatch mStart;
+        private final int mFirstItem;
+        private final int mItemsCount;
+
+        public Producer(final Mailbox<Integer> mailbox, final CountDownLatch start,
+                final int firstItem, final int itemsCount) {
+            mMailbox = mailbox;
+            mStart = start;
+            mFirstItem = firstItem;
+            mItemsCount = itemsCount;
+        }
+
+        @Override
+        public void run() {
+            awaitQuietly(mStart);
+            for (int i = 0; i < mItemsCount; i++) {
+                mMailbox.put(mFirstItem + i);
+                if (i % 64 == 0) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    private static final class Consumer extends Thread {
+        private final Mailbox<Integer> mMailbox;
+        private final AtomicIntegerArray mSeen;
+        private final CountDownLatch mStart;
+        private volatile boolean mReturnedNull;
+
+        public Consumer(final Mailbox<Integer> mailbox, final AtomicIntegerArray seen,
+                final CountDownLatch start) {
+            mMailbox = mailbox;
+            mSeen = seen;
+            mStart = start;
+        }
+
+        public boolean isReturnedNull() {
+            return mReturnedNull;
+        }
+
+        @Override
+        public void run() {
+            if (mStart != null) {
+                awaitQuietly(mStart);
+            }
+            for (; ; ) {
+                final Integer item = mMailbox.take();
+                if (item == null) {
+                    mReturnedNull = true;
+                    return;
+                }
+                mSeen.incrementAndGet(item);
+            }
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
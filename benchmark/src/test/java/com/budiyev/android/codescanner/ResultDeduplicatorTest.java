@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class ResultDeduplicatorTest {
+
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void suppressesWithinCooldown() {
+        final ResultDeduplicator deduplicator = new ResultDeduplicator();
+        deduplicator.setCooldownMillis(100L);
+        assertTrue(deliver(deduplicator, result("a"), 0L));
+        assertFalse(deliver(deduplicator, result("a"), 50L * MILLIS));
+        assertTrue(deliver(deduplicator, result("b"), 50L * MILLIS));
+        assertTrue(deliver(deduplicator, result("a"), 100L * MILLIS));
+        assertEquals(1L, deduplicator.getSuppressedCount());
+    }
+
+    @Test
+    public void emitsOnReentryOnly() {
+        final ResultDeduplicator deduplicator = new ResultDeduplicator();
+        deduplicator.setCooldownMillis(100L);
+        deduplicator.setEmitOnReentry(true);
+        assertTrue(deliver(deduplicator, result("a"), 0L));
+        // Code stays in view, it's seen every 60 ms
+        for (long time = 60L; time < 1000L; time += 60L) {
+            assertFalse(deliver(deduplicator, result("a"), time * MILLIS));
+        }
+        // Code left the view and returned
+        assertTrue(deliver(deduplicator, result("a"), 2000L * MILLIS));
+    }
+
+    @Test
+    public void droppedDeliveryDoesNotSuppress() {
+        final ResultDeduplicator deduplicator = new ResultDeduplicator();
+        deduplicator.setCooldownMillis(100L);
+        // Result was accepted, but dropped as stale or because decoder was stopped
+        assertTrue(deduplicator.accept(result("a"), 0L));
+        assertTrue(deliver(deduplicator, result("a"), 10L * MILLIS));
+        assertFalse(deliver(deduplicator, result("a"), 20L * MILLIS));
+        deduplicator.setEmitOnReentry(true);
+        assertTrue(deduplicator.accept(result("b"), 30L * MILLIS));
+        assertTrue(deliver(deduplicator, result("b"), 40L * MILLIS));
+        assertFalse(deliver(deduplicator, result("b"), 50L * MILLIS));
+        assertEquals(2L, deduplicator.getSuppressedCount());
+    }
+
+    @Test
+    public void forgetsLeastRecentlySeenAndClears() {
+        final ResultDeduplicator deduplicator = new ResultDeduplicator();
+        deduplicator.setCooldownMillis(1000L);
+        deduplicator.setCapacity(2);
+        assertTrue(deliver(deduplicator, result("a"), 0L));
+        assertTrue(deliver(deduplicator, result("b"), MILLIS));
+        assertFalse(deliver(deduplicator, result("a"), 2L * MILLIS));
+        // "b" is the least recently seen one now
+        assertTrue(deliver(deduplicator, result("c"), 3L * MILLIS));
+        assertTrue(deliver(deduplicator, result("b"), 4L * MILLIS));
+        assertFalse(deliver(deduplicator, result("c"), 5L * MILLIS));
+        deduplicator.clear();
+        assertTrue(deliver(deduplicator, result("c"), 6L * MILLIS));
+    }
+
+    @Test
+    public void deliversConcurrentDuplicatesOnce() throws InterruptedException {
+        final int threadsCount = 4;
+        for (int round = 0; round < 500; round++) {
+            final ResultDeduplicator deduplicator = new ResultDeduplicator();
+            final Object deliveryLock = new Object();
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger delivered = new AtomicInteger();
+            final long timestamp = round * MILLIS;
+            final List<Thread> threads = new ArrayList<>(threadsCount);
+            for (int i = 0; i < threadsCount; i++) {
+                final Thread thread = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (final InterruptedException e) {
+                            return;
+                        }
+                        if (!deduplicator.accept(result("code"), timestamp)) {
+                            return;
+                        }
+                        // Same as the decoder does, results are checked and committed
+                        // one at a time
+                        synchronized (deliveryLock) {
+                            if (deduplicator.check(result("code"), timestamp)) {
+                                deduplicator.commit(result("code"), timestamp);
+                                delivered.incrementAndGet();
+                            } else {
+                                deduplicator.suppress();
+                            }
+                        }
+                    }
+                };
+                threads.add(thread);
+                thread.start();
+            }
+            start.countDown();
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals("Round " + round, 1, delivered.get());
+            assertEquals(threadsCount - 1, deduplicator.getSuppressedCount());
+        }
+    }
+
+    /**
+     * Accept, check and commit the result, as if it was delivered
+     */
+    private static boolean deliver(final ResultDeduplicator deduplicator, final Result result,
+            final long timestampNanos) {
+        if (deduplicator.accept(result, timestampNanos) &&
+                deduplicator.check(result, timestampNanos)) {
+            deduplicator.commit(result, timestampNanos);
+            return true;
+        }
+        return false;
+    }
+
+    private static Result result(final String text) {
+        return new Result(text, null, null, BarcodeFormat.QR_CODE);
+    }
+}
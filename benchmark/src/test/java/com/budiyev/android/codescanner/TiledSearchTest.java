@@ -0,0 +1,185 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class TiledSearchTest {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int CODE_SIZE = 40;
+    private static final List<BarcodeFormat> FORMATS =
+            Collections.singletonList(BarcodeFormat.QR_CODE);
+
+    @Test
+    public void splitsLargeFramesOnly() {
+        assertTrue(TiledSearch.isApplicable(400, 400));
+        assertFalse(TiledSearch.isApplicable(399, 800));
+    }
+
+    @Test
+    public void findsSmallCodeMissedInWholeFrame() {
+        final byte[] luma = createLuma();
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "a", BarcodeFormat.QR_CODE, 100, 80,
+                CODE_SIZE);
+        final DecodeContext context = createContext();
+        try {
+            context.getReader().decode(
+                    new PlanarYUVLuminanceSource(luma, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT,
+                            false), context.getBinarizerChain(), null, null);
+            fail("Code is expected to be too small for the whole frame");
+        } catch (final ReaderException ignored) {
+        }
+        final List<Result> results = decode(new TiledSearch(FORMATS, 0), context, luma);
+        assertEquals(1, results.size());
+        assertEquals("a", results.get(0).getText());
+        // Result points are in frame coordinates
+        for (final ResultPoint point : results.get(0).getResultPoints()) {
+            assertTrue(point.getX() >= 100 && point.getX() < 100 + CODE_SIZE);
+            assertTrue(point.getY() >= 80 && point.getY() < 80 + CODE_SIZE);
+        }
+    }
+
+    @Test
+    public void returnsCodeClosestToCentreFirst() {
+        final byte[] luma = createLuma();
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "a", BarcodeFormat.QR_CODE, 100, 80,
+                CODE_SIZE);
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "c", BarcodeFormat.QR_CODE, 620, 340,
+                CODE_SIZE);
+        final List<Result> results = decode(new TiledSearch(FORMATS, 0), createContext(), luma);
+        assertEquals(1, results.size());
+        assertEquals("c", results.get(0).getText());
+    }
+
+    @Test
+    public void collectsCodesOfAllTilesOnce() {
+        final DecodeContext context = createContext();
+        context.setMaxResults(4);
+        assertEquals(createCodeTexts(), getTexts(decode(new TiledSearch(FORMATS, 0), context,
+                createCodesLuma())));
+    }
+
+    @Test
+    public void collectsCodesOfAllTilesWithWorkers() {
+        final TiledSearch tiledSearch = new TiledSearch(FORMATS, 2);
+        try {
+            final DecodeContext context = createContext();
+            context.setMaxResults(4);
+            final byte[] luma = createCodesLuma();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(createCodeTexts(), getTexts(decode(tiledSearch, context, luma)));
+            }
+        } finally {
+            tiledSearch.shutdown();
+        }
+    }
+
+    @Test
+    public void returnsNullIfNothingFound() {
+        assertNull(decode(new TiledSearch(FORMATS, 0), createContext(), createLuma()));
+    }
+
+    @Test
+    public void stopsWhenCancelled() {
+        final byte[] luma = createLuma();
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "a", BarcodeFormat.QR_CODE, 100, 80,
+                CODE_SIZE);
+        final DecodeContext context = createContext();
+        context.getDeadline().start(0L);
+        context.getDeadline().cancel();
+        assertNull(new TiledSearch(FORMATS, 0).decode(context, luma, WIDTH, HEIGHT));
+    }
+
+    /**
+     * Three codes, one of them is in the area, which is covered by four tiles
+     */
+    private static byte[] createCodesLuma() {
+        final byte[] luma = createLuma();
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "a", BarcodeFormat.QR_CODE, 100, 80,
+                CODE_SIZE);
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "b", BarcodeFormat.QR_CODE, 1000, 560,
+                CODE_SIZE);
+        SyntheticFrameSource.drawCode(luma, WIDTH, HEIGHT, "c", BarcodeFormat.QR_CODE, 590, 300,
+                CODE_SIZE);
+        return luma;
+    }
+
+    private static Set<String> createCodeTexts() {
+        final Set<String> texts = new HashSet<>();
+        Collections.addAll(texts, "a", "b", "c");
+        return texts;
+    }
+
+    private static Set<String> getTexts(final List<Result> results) {
+        final Set<String> texts = new HashSet<>();
+        for (final Result result : results) {
+            assertTrue("Duplicate " + result.getText(), texts.add(result.getText()));
+        }
+        return texts;
+    }
+
+    private static List<Result> decode(final TiledSearch tiledSearch,
+            final DecodeContext context, final byte[] luma) {
+        // The hit cancels the deadline
+        context.getDeadline().start(0L);
+        return tiledSearch.decode(context, luma, WIDTH, HEIGHT);
+    }
+
+    private static DecodeContext createContext() {
+        final FormatReader reader = new FormatReader();
+        reader.setFormats(FORMATS);
+        return new DecodeContext(reader);
+    }
+
+    /**
+     * Light background with a smooth gradient
+     */
+    private static byte[] createLuma() {
+        final byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                luma[y * WIDTH + x] = (byte) (160 + (x + y) / 32);
+            }
+        }
+        return luma;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public final class UtilsTest {
+
+    private static final int WIDTH = 12;
+    private static final int HEIGHT = 8;
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    @Test
+    public void cropRotateLumaMatchesRotateYuv() {
+        final byte[] image = createImage();
+        for (final int rotation : ROTATIONS) {
+            final boolean portrait = Utils.isPortrait(rotation);
+            final int rotatedWidth = portrait ? HEIGHT : WIDTH;
+            final int rotatedHeight = portrait ? WIDTH : HEIGHT;
+            final byte[] rotated = Utils.rotateYuv(image, WIDTH, HEIGHT, rotation);
+            final Rect frameRect = new Rect(1, 2, rotatedWidth - 2, rotatedHeight - 1);
+            for (final boolean reverseHorizontal : new boolean[] {false, true}) {
+                final byte[] expected = crop(rotated, rotatedWidth, frameRect, reverseHorizontal);
+                final byte[] output = new byte[expected.length];
+                Utils.cropRotateLuma(image, WIDTH, HEIGHT, rotation, frameRect,
+                        reverseHorizontal, output);
+                assertArrayEquals("Rotation " + rotation + ", reverse " + reverseHorizontal,
+                        expected, output);
+            }
+        }
+    }
+
+    @Test
+    public void cropRotateStridedLumaMatchesRotateYuv() {
+        final byte[] image = createImage();
+        for (final int pixelStride : new int[] {1, 2}) {
+            // Row padding, as in camera2 image planes
+            final int rowStride = WIDTH * pixelStride + 5;
+            final ByteBuffer buffer = ByteBuffer.allocate(rowStride * HEIGHT);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    buffer.put(y * rowStride + x * pixelStride, image[y * WIDTH + x]);
+                }
+            }
+            for (final int rotation : ROTATIONS) {
+                final boolean portrait = Utils.isPortrait(rotation);
+                final int rotatedWidth = portrait ? HEIGHT : WIDTH;
+                final int rotatedHeight = portrait ? WIDTH : HEIGHT;
+                final byte[] rotated = Utils.rotateYuv(image, WIDTH, HEIGHT, rotation);
+                final Rect frameRect = new Rect(2, 1, rotatedWidth - 1, rotatedHeight - 2);
+                for (final boolean reverseHorizontal : new boolean[] {false, true}) {
+                    final byte[] expected =
+                            crop(rotated, rotatedWidth, frameRect, reverseHorizontal);
+                    final byte[] output = new byte[expected.length];
+                    Utils.cropRotateLuma(buffer, rowStride, pixelStride, WIDTH, HEIGHT, rotation,
+                            frameRect, reverseHorizontal, output);
+                    assertArrayEquals("Pixel stride " + pixelStride + ", rotation " + rotation +
+                            ", reverse " + reverseHorizontal, expected, output);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void downsampleLumaAveragesBlocks() {
+        final byte[] luma = {
+                0, 2, 10, 20, 7,
+                4, 6, 30, 40, 7,
+                (byte) 200, (byte) 250, 1, 1, 7,
+                (byte) 250, (byte) 200, 1, 3, 7,
+                9, 9, 9, 9, 9};
+        final byte[] output = new byte[4];
+        Utils.downsampleLuma(luma, 5, 5, 2, output);
+        assertArrayEquals(new byte[] {3, 25, (byte) 225, 1}, output);
+    }
+
+    /**
+     * NV21 image with distinct luma values and noise in chroma planes
+     */
+    private static byte[] createImage() {
+        final byte[] image = new byte[WIDTH * HEIGHT * 3 / 2];
+        new Random(1L).nextBytes(image);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            image[i] = (byte) i;
+        }
+        return image;
+    }
+
+    private static byte[] crop(final byte[] luma, final int width, final Rect frameRect,
+            final boolean reverseHorizontal) {
+        final int frameWidth = frameRect.getWidth();
+        final int frameHeight = frameRect.getHeight();
+        final byte[] output = new byte[frameWidth * frameHeight];
+        for (int y = 0; y < frameHeight; y++) {
+            for (int x = 0; x < frameWidth; x++) {
+                final int sourceX = reverseHorizontal ? frameRect.getRight() - 1 - x :
+                        frameRect.getLeft() + x;
+                output[y * frameWidth + x] =
+                        luma[(frameRect.getTop() + y) * width + sourceX];
+            }
+        }
+        return output;
+    }
+}
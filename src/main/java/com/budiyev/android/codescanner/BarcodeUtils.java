@@ -25,7 +25,6 @@ package com.budiyev.android.codescanner;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 
@@ -38,7 +37,6 @@ import androidx.annotation.Nullable;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatReader;
 import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.RGBLuminanceSource;
@@ -82,12 +80,30 @@ public final class BarcodeUtils {
     @Nullable
     public static Result decodeBitmap(@NonNull final Bitmap bitmap,
             @Nullable final Map<DecodeHintType, ?> hints) {
+        return decodeBitmap(bitmap, hints, null);
+    }
+
+    /**
+     * Decode barcode from bitmap
+     *
+     * @param bitmap         Bitmap
+     * @param hints          Decoder hints
+     * @param binarizerChain Binarizers to decode with, {@link BinarizerChain#createDefault()}
+     *                       if {@code null}
+     * @return Decode result, if barcode was decoded successfully, {@code null} otherwise
+     * @see DecodeHintType
+     * @see BinarizerChain
+     */
+    @Nullable
+    public static Result decodeBitmap(@NonNull final Bitmap bitmap,
+            @Nullable final Map<DecodeHintType, ?> hints,
+            @Nullable final BinarizerChain binarizerChain) {
         Objects.requireNonNull(bitmap);
         final int width = bitmap.getWidth();
         final int height = bitmap.getHeight();
         final int[] pixels = new int[width * height];
         bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-        return decodeRgb(pixels, width, height, hints);
+        return decodeRgb(pixels, width, height, hints, binarizerChain);
     }
 
     /**
@@ -118,11 +134,32 @@ public final class BarcodeUtils {
     @Nullable
     public static Result decodeRgb(@NonNull final int[] pixels, final int width, final int height,
             @Nullable final Map<DecodeHintType, ?> hints) {
+        return decodeRgb(pixels, width, height, hints, null);
+    }
+
+    /**
+     * Decode barcode from RGB pixels array
+     *
+     * @param pixels         Colors in standard Android ARGB format
+     * @param width          Image width
+     * @param height         Image height
+     * @param hints          Decoder hints
+     * @param binarizerChain Binarizers to decode with, {@link BinarizerChain#createDefault()}
+     *                       if {@code null}
+     * @return Decode result, if barcode was decoded successfully, {@code null} otherwise
+     * @see DecodeHintType
+     * @see BinarizerChain
+     * @see Color
+     */
+    @Nullable
+    public static Result decodeRgb(@NonNull final int[] pixels, final int width, final int height,
+            @Nullable final Map<DecodeHintType, ?> hints,
+            @Nullable final BinarizerChain binarizerChain) {
         Objects.requireNonNull(pixels);
-        final MultiFormatReader reader = createReader(hints);
         try {
-            return Utils.decodeLuminanceSource(reader,
-                    new RGBLuminanceSource(width, height, pixels));
+            return createReader(hints).decode(new RGBLuminanceSource(width, height, pixels),
+                    binarizerChain != null ? binarizerChain : BinarizerChain.createDefault(),
+                    null, null);
         } catch (final ReaderException e) {
             return null;
         }
@@ -155,12 +192,34 @@ public final class BarcodeUtils {
      * @see DecodeHintType
      */
     @Nullable
-    @SuppressWarnings("SuspiciousNameCombination")
     public static Result decodeYuv(@NonNull final byte[] pixels, final int width, final int height,
             @Rotation final int rotation, final boolean reverseHorizontal,
             @Nullable final Map<DecodeHintType, ?> hints) {
+        return decodeYuv(pixels, width, height, rotation, reverseHorizontal, hints, null);
+    }
+
+    /**
+     * Decode barcode from YUV pixels array
+     *
+     * @param pixels            YUV image data
+     * @param width             Image width
+     * @param height            Image height
+     * @param rotation          Degrees to rotate image before decoding (only 0, 90, 180 or 270 are allowed)
+     * @param reverseHorizontal Reverse image horizontally before decoding
+     * @param hints             Decoder hints
+     * @param binarizerChain    Binarizers to decode with, {@link BinarizerChain#createDefault()}
+     *                          if {@code null}
+     * @return Decode result, if barcode was decoded successfully, {@code null} otherwise
+     * @see DecodeHintType
+     * @see BinarizerChain
+     */
+    @Nullable
+    @SuppressWarnings("SuspiciousNameCombination")
+    public static Result decodeYuv(@NonNull final byte[] pixels, final int width, final int height,
+            @Rotation final int rotation, final boolean reverseHorizontal,
+            @Nullable final Map<DecodeHintType, ?> hints,
+            @Nullable final BinarizerChain binarizerChain) {
         Objects.requireNonNull(pixels);
-        final byte[] rotatedPixels = Utils.rotateYuv(pixels, width, height, rotation);
         final int rotatedWidth;
         final int rotatedHeight;
         if (rotation == ROTATION_90 || rotation == ROTATION_270) {
@@ -170,11 +229,15 @@ public final class BarcodeUtils {
             rotatedWidth = width;
             rotatedHeight = height;
         }
-        final MultiFormatReader reader = createReader(hints);
+        final byte[] luma = new byte[rotatedWidth * rotatedHeight];
+        Utils.cropRotateLuma(pixels, width, height, rotation,
+                new Rect(0, 0, rotatedWidth, rotatedHeight), reverseHorizontal, luma);
         try {
-            return Utils.decodeLuminanceSource(reader,
-                    new PlanarYUVLuminanceSource(rotatedPixels, rotatedWidth, rotatedHeight, 0, 0,
-                            rotatedWidth, rotatedHeight, reverseHorizontal));
+            return createReader(hints).decode(
+                    new PlanarYUVLuminanceSource(luma, rotatedWidth, rotatedHeight, 0, 0,
+                            rotatedWidth, rotatedHeight, false),
+                    binarizerChain != null ? binarizerChain : BinarizerChain.createDefault(),
+                    null, null);
         } catch (final ReaderException e) {
             return null;
         }
@@ -286,13 +349,12 @@ public final class BarcodeUtils {
     }
 
     @NonNull
-    private static MultiFormatReader createReader(@Nullable final Map<DecodeHintType, ?> hints) {
-        final MultiFormatReader reader = new MultiFormatReader();
+    private static FormatReader createReader(@Nullable final Map<DecodeHintType, ?> hints) {
+        final FormatReader reader = new FormatReader();
         if (hints != null) {
             reader.setHints(hints);
         } else {
-            reader.setHints(Collections.singletonMap(DecodeHintType.POSSIBLE_FORMATS,
-                    CodeScanner.ALL_FORMATS));
+            reader.setFormats(CodeScanner.ALL_FORMATS);
         }
         return reader;
     }
@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * Binarizers, which are tried one after another until the code is decoded, each in normal
+ * and inverted polarity. {@link #GLOBAL_HISTOGRAM} is cheap and is enough for well-lit
+ * 1D codes, {@link #HYBRID} handles uneven lighting and is better for 2D codes.
+ * <br>
+ * Number of attempts, successes and time spent is counted per binarizer,
+ * to tune the chain for the particular use case.
+ *
+ * @see CodeScanner#setBinarizerChain(BinarizerChain)
+ * @see BarcodeUtils#decodeYuv(byte[], int, int, int, boolean, java.util.Map, BinarizerChain)
+ */
+public final class BinarizerChain {
+
+    /**
+     * {@link GlobalHistogramBinarizer} factory
+     */
+    public static final Factory GLOBAL_HISTOGRAM = new GlobalHistogramFactory();
+
+    /**
+     * {@link HybridBinarizer} factory
+     */
+    public static final Factory HYBRID = new HybridFactory();
+
+    private final Factory[] mFactories;
+    private final AtomicLongArray mAttemptsCounts;
+    private final AtomicLongArray mSuccessesCounts;
+    private final AtomicLongArray mElapsedNanos;
+
+    /**
+     * Binarizer chain
+     *
+     * @param factories Binarizer factories in the order they should be tried
+     */
+    public BinarizerChain(@NonNull final Factory... factories) {
+        this(Arrays.asList(factories));
+    }
+
+    /**
+     * Binarizer chain
+     *
+     * @param factories Binarizer factories in the order they should be tried
+     */
+    public BinarizerChain(@NonNull final List<Factory> factories) {
+        final int size = factories.size();
+        if (size == 0) {
+            throw new IllegalArgumentException("Binarizer chain can't be empty");
+        }
+        mFactories = new Factory[size];
+        for (int i = 0; i < size; i++) {
+            mFactories[i] = Objects.requireNonNull(factories.get(i));
+        }
+        mAttemptsCounts = new AtomicLongArray(size);
+        mSuccessesCounts = new AtomicLongArray(size);
+        mElapsedNanos = new AtomicLongArray(size);
+    }
+
+    /**
+     * Chain of a single {@link #HYBRID} binarizer
+     */
+    @NonNull
+    public static BinarizerChain createDefault() {
+        return new BinarizerChain(HYBRID);
+    }
+
+    public int size() {
+        return mFactories.length;
+    }
+
+    @NonNull
+    public Factory get(final int index) {
+        return mFactories[index];
+    }
+
+    /**
+     * Number of decoding attempts with the binarizer at the specified index,
+     * each polarity is counted separately
+     */
+    public long getAttemptsCount(final int index) {
+        return mAttemptsCounts.get(index);
+    }
+
+    /**
+     * Number of successful decoding attempts with the binarizer at the specified index
+     */
+    public long getSuccessesCount(final int index) {
+        return mSuccessesCounts.get(index);
+    }
+
+    /**
+     * Total time of decoding attempts (binarization and decoding) with the binarizer
+     * at the specified index, in nanoseconds
+     */
+    public long getElapsedNanos(final int index) {
+        return mElapsedNanos.get(index);
+    }
+
+    public void resetCounts() {
+        for (int i = 0; i < mFactories.length; i++) {
+            mAttemptsCounts.set(i, 0L);
+            mSuccessesCounts.set(i, 0L);
+            mElapsedNanos.set(i, 0L);
+        }
+    }
+
+    void record(final int index, final long elapsedNanos, final boolean success) {
+        mAttemptsCounts.incrementAndGet(index);
+        mElapsedNanos.addAndGet(index, elapsedNanos);
+        if (success) {
+            mSuccessesCounts.incrementAndGet(index);
+        }
+    }
+
+    /**
+     * Binarizer factory
+     */
+    public interface Factory {
+
+        /**
+         * Create binarizer for the luminance source, called on a decoder thread
+         */
+        @NonNull
+        Binarizer create(@NonNull LuminanceSource source);
+    }
+
+    private static final class GlobalHistogramFactory implements Factory {
+        @NonNull
+        @Override
+        public Binarizer create(@NonNull final LuminanceSource source) {
+            return new GlobalHistogramBinarizer(source);
+        }
+    }
+
+    private static final class HybridFactory implements Factory {
+        @NonNull
+        @Override
+        public Binarizer create(@NonNull final LuminanceSource source) {
+            return new HybridBinarizer(source);
+        }
+    }
+}
@@ -0,0 +1,946 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.MeteringRectangle;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Range;
+import android.util.Size;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * {@link FrameSource} implementation, based on {@link android.hardware.camera2} API.
+ * <br>
+ * Frames are analyzed from a separate {@link ImageReader} stream, which size is limited
+ * by {@link #MAX_ANALYSIS_SIZE} independently of the preview size; luma is read directly
+ * from the Y plane buffer, without copying the frame into a heap array.
+ */
+@RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+final class Camera2FrameSource implements FrameSource {
+
+    /**
+     * Maximum side of the analysis stream frames
+     */
+    public static final int MAX_ANALYSIS_SIZE = 1280;
+
+    /**
+     * Number of zoom steps between no zoom and the maximum digital zoom
+     */
+    public static final int MAX_ZOOM = 99;
+
+    /**
+     * Additional images for the reader, so that camera doesn't stall
+     * while all the buffers are being decoded
+     */
+    private static final int RESERVED_IMAGES_COUNT = 2;
+    private static final long OPEN_TIMEOUT = 5000L;
+    private static final int MIN_FPS = 10;
+    private static final int MAX_FPS = 30;
+    private final Context mContext;
+    private final int mRequestedCameraId;
+    private final CaptureCallback mCaptureCallback;
+    private HandlerThread mCallbackThread;
+    private Handler mCallbackHandler;
+    private CameraDevice mCameraDevice;
+    private CameraCaptureSession mCaptureSession;
+    private CaptureRequest.Builder mRequestBuilder;
+    private ReaderHolder mReaderHolder;
+    private FocusCallback mFocusCallback;
+    private android.graphics.Rect mSensorArraySize;
+    private Range<Integer> mFpsRange;
+    private Point mImageSize;
+    private Point mPreviewSize;
+    private MeteringRectangle[] mFocusRegions;
+    private int mCameraId;
+    private int mOrientation;
+    private int mAutoFocusMode = CameraMetadata.CONTROL_AF_MODE_AUTO;
+    private int mMaxFocusRegions;
+    private int mMaxMeteringRegions;
+    private int mZoom;
+    private float mMaxDigitalZoom = 1f;
+    private boolean mReverseHorizontal;
+    private boolean mAutoFocusSupported;
+    private boolean mContinuousFocusSupported;
+    private boolean mFlashSupported;
+    private boolean mFlashEnabled;
+    private boolean mVideoStabilizationSupported;
+    private boolean mFocusTriggered;
+
+    public Camera2FrameSource(@NonNull final Context context, final int cameraId) {
+        mContext = context;
+        mRequestedCameraId = cameraId;
+        mCaptureCallback = new CaptureCallback();
+    }
+
+    @Override
+    public void open(final int viewWidth, final int viewHeight) {
+        final CameraManager manager =
+                (CameraManager) mContext.getSystemService(Context.CAMERA_SERVICE);
+        if (manager == null) {
+            throw new CodeScannerException("Unable to access camera");
+        }
+        final HandlerThread callbackThread = new HandlerThread("cs-camera2");
+        callbackThread.start();
+        final Handler callbackHandler = new Handler(callbackThread.getLooper());
+        synchronized (this) {
+            mCallbackThread = callbackThread;
+            mCallbackHandler = callbackHandler;
+        }
+        try {
+            final String[] cameraIds = manager.getCameraIdList();
+            final int requestedCameraId = mRequestedCameraId;
+            int cameraIndex = -1;
+            CameraCharacteristics characteristics = null;
+            if (requestedCameraId == CodeScanner.CAMERA_BACK ||
+                    requestedCameraId == CodeScanner.CAMERA_FRONT) {
+                final int facing = requestedCameraId == CodeScanner.CAMERA_BACK ?
+                        CameraMetadata.LENS_FACING_BACK : CameraMetadata.LENS_FACING_FRONT;
+                for (int i = 0; i < cameraIds.length; i++) {
+                    final CameraCharacteristics c = manager.getCameraCharacteristics(cameraIds[i]);
+                    final Integer lensFacing = c.get(CameraCharacteristics.LENS_FACING);
+                    if (lensFacing != null && lensFacing == facing) {
+                        cameraIndex = i;
+                        characteristics = c;
+                        break;
+                    }
+                }
+            } else if (requestedCameraId >= 0 && requestedCameraId < cameraIds.length) {
+                cameraIndex = requestedCameraId;
+                characteristics = manager.getCameraCharacteristics(cameraIds[cameraIndex]);
+            }
+            if (characteristics == null) {
+                throw new CodeScannerException("Unable to access camera");
+            }
+            configure(characteristics, viewWidth, viewHeight);
+            final CameraDevice cameraDevice =
+                    openCamera(manager, cameraIds[cameraIndex], callbackHandler);
+            synchronized (this) {
+                mCameraDevice = cameraDevice;
+                mCameraId = cameraIndex;
+            }
+        } catch (final CameraAccessException | SecurityException e) {
+            release();
+            throw new CodeScannerException("Unable to access camera", e);
+        } catch (final RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getCameraId() {
+        return mCameraId;
+    }
+
+    @NonNull
+    @Override
+    public Point getImageSize() {
+        return mImageSize;
+    }
+
+    @Override
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    @Override
+    public boolean shouldReverseHorizontal() {
+        return mReverseHorizontal;
+    }
+
+    @Override
+    public boolean isAutoFocusSupported() {
+        return mAutoFocusSupported;
+    }
+
+    @Override
+    public boolean isFlashSupported() {
+        return mFlashSupported;
+    }
+
+    @Override
+    public synchronized void startPreview(@Nullable final SurfaceHolder surfaceHolder,
+            @NonNull final FrameListener listener, final int buffersCount,
+            final int heldFramesCount) throws Exception {
+        final CameraDevice cameraDevice = requireCameraDevice();
+        stopPreview();
+        final List<Surface> surfaces = new ArrayList<>(2);
+        final CaptureRequest.Builder requestBuilder =
+                cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+        if (surfaceHolder != null) {
+            final Point previewSize = mPreviewSize;
+            final android.graphics.Rect surfaceFrame = surfaceHolder.getSurfaceFrame();
+            if (surfaceFrame.width() != previewSize.getX() ||
+                    surfaceFrame.height() != previewSize.getY()) {
+                // Surface will be changed, and preview will be restarted with the proper size
+                surfaceHolder.setFixedSize(previewSize.getX(), previewSize.getY());
+            }
+            final Surface previewSurface = surfaceHolder.getSurface();
+            surfaces.add(previewSurface);
+            requestBuilder.addTarget(previewSurface);
+        }
+        final Point imageSize = mImageSize;
+        final ImageReader imageReader =
+                ImageReader.newInstance(imageSize.getX(), imageSize.getY(),
+                        ImageFormat.YUV_420_888,
+                        Math.max(Math.max(buffersCount, heldFramesCount), 1) +
+                                RESERVED_IMAGES_COUNT);
+        final ReaderHolder readerHolder = new ReaderHolder(imageReader);
+        imageReader.setOnImageAvailableListener(new ImageListener(readerHolder, listener),
+                mCallbackHandler);
+        surfaces.add(imageReader.getSurface());
+        requestBuilder.addTarget(imageReader.getSurface());
+        mReaderHolder = readerHolder;
+        mRequestBuilder = requestBuilder;
+        cameraDevice.createCaptureSession(surfaces, new SessionCallback(requestBuilder),
+                mCallbackHandler);
+    }
+
+    @Override
+    public synchronized void stopPreview() {
+        mFocusCallback = null;
+        mFocusTriggered = false;
+        mRequestBuilder = null;
+        final CameraCaptureSession captureSession = mCaptureSession;
+        if (captureSession != null) {
+            mCaptureSession = null;
+            captureSession.close();
+        }
+        final ReaderHolder readerHolder = mReaderHolder;
+        if (readerHolder != null) {
+            mReaderHolder = null;
+            readerHolder.close();
+        }
+    }
+
+    @Override
+    public synchronized void setAutoFocusEnabled(final boolean enabled,
+            @NonNull final AutoFocusMode mode, @Nullable final Rect area) {
+        mFocusCallback = null;
+        mFocusTriggered = false;
+        if (enabled && mode == AutoFocusMode.CONTINUOUS && mContinuousFocusSupported) {
+            mAutoFocusMode = CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE;
+        } else {
+            mAutoFocusMode = CameraMetadata.CONTROL_AF_MODE_AUTO;
+        }
+        if (area != null) {
+            mFocusRegions = getMeteringRegions(area);
+        }
+        triggerAutoFocus(CameraMetadata.CONTROL_AF_TRIGGER_CANCEL, null);
+        updateRepeatingRequest();
+    }
+
+    @Override
+    public synchronized void autoFocus(@Nullable final Rect area,
+            @NonNull final FocusCallback callback) {
+        mFocusCallback = null;
+        mFocusTriggered = false;
+        if (area != null) {
+            mFocusRegions = getMeteringRegions(area);
+            mAutoFocusMode = CameraMetadata.CONTROL_AF_MODE_AUTO;
+            updateRepeatingRequest();
+        }
+        triggerAutoFocus(CameraMetadata.CONTROL_AF_TRIGGER_START, callback);
+    }
+
+    @Override
+    public synchronized void cancelAutoFocus() {
+        mFocusCallback = null;
+        mFocusTriggered = false;
+        triggerAutoFocus(CameraMetadata.CONTROL_AF_TRIGGER_CANCEL, null);
+    }
+
+    @Override
+    public synchronized void setFlashEnabled(final boolean enabled) {
+        mFlashEnabled = enabled;
+        updateRepeatingRequest();
+    }
+
+    /**
+     * Zoom value between {@code 0} and {@link #MAX_ZOOM}, larger values are clamped
+     */
+    @Override
+    public synchronized void setZoom(final int zoom) {
+        mZoom = Math.min(zoom, MAX_ZOOM);
+        // Regions are mapped through the crop region, which changes with zoom
+        mFocusRegions = null;
+        updateRepeatingRequest();
+    }
+
+    @Override
+    public void release() {
+        final HandlerThread callbackThread;
+        synchronized (this) {
+            stopPreview();
+            final CameraDevice cameraDevice = mCameraDevice;
+            if (cameraDevice != null) {
+                mCameraDevice = null;
+                cameraDevice.close();
+            }
+            callbackThread = mCallbackThread;
+            mCallbackThread = null;
+            mCallbackHandler = null;
+        }
+        if (callbackThread != null) {
+            callbackThread.quitSafely();
+        }
+    }
+
+    @SuppressWarnings("SuspiciousNameCombination")
+    private void configure(@NonNull final CameraCharacteristics characteristics,
+            final int viewWidth, final int viewHeight) {
+        final StreamConfigurationMap configurationMap =
+                characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (configurationMap == null) {
+            throw new CodeScannerException("Unable to configure camera");
+        }
+        final Integer sensorOrientation =
+                characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        final Integer lensFacing = characteristics.get(CameraCharacteristics.LENS_FACING);
+        final boolean front = lensFacing != null && lensFacing == CameraMetadata.LENS_FACING_FRONT;
+        final int orientation = Utils.getDisplayOrientation(mContext,
+                sensorOrientation != null ? sensorOrientation : 0, front);
+        final boolean portrait = Utils.isPortrait(orientation);
+        final int frameWidth = portrait ? viewHeight : viewWidth;
+        final int frameHeight = portrait ? viewWidth : viewHeight;
+        final List<Point> analysisSizes =
+                toPoints(configurationMap.getOutputSizes(ImageFormat.YUV_420_888));
+        // View geometry is calculated from the analysis size, while the preview size
+        // is displayed, so that they have to be of the same aspect ratio
+        List<Point> previewSizes = new ArrayList<>();
+        final List<Point> allPreviewSizes =
+                toPoints(configurationMap.getOutputSizes(SurfaceHolder.class));
+        for (final Point size : allPreviewSizes) {
+            if (!filterByAspectRatio(analysisSizes, size).isEmpty()) {
+                previewSizes.add(size);
+            }
+        }
+        if (previewSizes.isEmpty()) {
+            previewSizes = allPreviewSizes;
+        }
+        Point previewSize = Utils.findSuitableImageSize(previewSizes, frameWidth, frameHeight,
+                Utils.MIN_PREVIEW_PIXELS);
+        if (previewSize == null) {
+            previewSize = Utils.findSuitableImageSize(previewSizes, frameWidth, frameHeight, 0);
+        }
+        if (previewSize == null) {
+            throw new CodeScannerException("Unable to configure camera preview size");
+        }
+        final List<Point> matchingSizes = filterByAspectRatio(analysisSizes, previewSize);
+        final List<Point> smallMatchingSizes = new ArrayList<>(matchingSizes.size());
+        for (final Point size : matchingSizes) {
+            if (Math.max(size.getX(), size.getY()) <= MAX_ANALYSIS_SIZE) {
+                smallMatchingSizes.add(size);
+            }
+        }
+        Point imageSize = Utils.findSuitableImageSize(smallMatchingSizes, previewSize.getX(),
+                previewSize.getY(), 0);
+        if (imageSize == null) {
+            imageSize = Utils.findSuitableImageSize(matchingSizes, previewSize.getX(),
+                    previewSize.getY(), 0);
+        }
+        if (imageSize == null) {
+            // Camera doesn't support any analysis size of a preview aspect ratio
+            imageSize = Utils.findSuitableImageSize(analysisSizes, previewSize.getX(),
+                    previewSize.getY(), 0);
+        }
+        if (imageSize == null) {
+            throw new CodeScannerException("Unable to configure camera image size");
+        }
+        final int[] focusModes =
+                characteristics.get(CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES);
+        final boolean autoFocusSupported =
+                contains(focusModes, CameraMetadata.CONTROL_AF_MODE_AUTO);
+        mContinuousFocusSupported =
+                contains(focusModes, CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+        mAutoFocusSupported = autoFocusSupported || mContinuousFocusSupported;
+        final Boolean flashAvailable =
+                characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+        mFlashSupported = flashAvailable != null && flashAvailable;
+        mVideoStabilizationSupported = contains(characteristics.get(
+                CameraCharacteristics.CONTROL_AVAILABLE_VIDEO_STABILIZATION_MODES),
+                CameraMetadata.CONTROL_VIDEO_STABILIZATION_MODE_ON);
+        mFpsRange = findFpsRange(
+                characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES));
+        final Integer maxFocusRegions =
+                characteristics.get(CameraCharacteristics.CONTROL_MAX_REGIONS_AF);
+        mMaxFocusRegions = maxFocusRegions != null ? maxFocusRegions : 0;
+        final Integer maxMeteringRegions =
+                characteristics.get(CameraCharacteristics.CONTROL_MAX_REGIONS_AE);
+        mMaxMeteringRegions = maxMeteringRegions != null ? maxMeteringRegions : 0;
+        final Float maxDigitalZoom =
+                characteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+        mMaxDigitalZoom = maxDigitalZoom != null ? Math.max(maxDigitalZoom, 1f) : 1f;
+        mSensorArraySize =
+                characteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+        mPreviewSize = previewSize;
+        mImageSize = imageSize;
+        mOrientation = orientation;
+        mReverseHorizontal = front;
+    }
+
+    @NonNull
+    private static CameraDevice openCamera(@NonNull final CameraManager manager,
+            @NonNull final String cameraId, @NonNull final Handler handler)
+            throws CameraAccessException {
+        final DeviceCallback deviceCallback = new DeviceCallback();
+        manager.openCamera(cameraId, deviceCallback, handler);
+        try {
+            if (!deviceCallback.await(OPEN_TIMEOUT)) {
+                deviceCallback.cancel();
+                throw new CodeScannerException("Unable to access camera");
+            }
+        } catch (final InterruptedException e) {
+            deviceCallback.cancel();
+            Thread.currentThread().interrupt();
+            throw new CodeScannerException("Unable to access camera", e);
+        }
+        final CameraDevice cameraDevice = deviceCallback.getCameraDevice();
+        if (cameraDevice == null) {
+            throw new CodeScannerException(
+                    "Unable to access camera, error: " + deviceCallback.getError());
+        }
+        return cameraDevice;
+    }
+
+    @NonNull
+    private CameraDevice requireCameraDevice() {
+        final CameraDevice cameraDevice = mCameraDevice;
+        if (cameraDevice == null) {
+            throw new IllegalStateException("Camera is not opened");
+        }
+        return cameraDevice;
+    }
+
+    private void applySettings(@NonNull final CaptureRequest.Builder requestBuilder) {
+        requestBuilder.set(CaptureRequest.CONTROL_MODE, CameraMetadata.CONTROL_MODE_AUTO);
+        requestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CameraMetadata.CONTROL_AE_MODE_ON);
+        if (mAutoFocusSupported) {
+            requestBuilder.set(CaptureRequest.CONTROL_AF_MODE, mAutoFocusMode);
+        }
+        if (mFlashSupported) {
+            requestBuilder.set(CaptureRequest.FLASH_MODE,
+                    mFlashEnabled ? CameraMetadata.FLASH_MODE_TORCH :
+                            CameraMetadata.FLASH_MODE_OFF);
+        }
+        if (mFpsRange != null) {
+            requestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, mFpsRange);
+        }
+        if (mVideoStabilizationSupported) {
+            requestBuilder.set(CaptureRequest.CONTROL_VIDEO_STABILIZATION_MODE,
+                    CameraMetadata.CONTROL_VIDEO_STABILIZATION_MODE_ON);
+        }
+        final android.graphics.Rect cropRegion = getCropRegion();
+        if (cropRegion != null) {
+            requestBuilder.set(CaptureRequest.SCALER_CROP_REGION, cropRegion);
+        }
+        final MeteringRectangle[] focusRegions = mFocusRegions;
+        if (focusRegions != null) {
+            if (mMaxFocusRegions > 0) {
+                requestBuilder.set(CaptureRequest.CONTROL_AF_REGIONS, focusRegions);
+            }
+            if (mMaxMeteringRegions > 0) {
+                requestBuilder.set(CaptureRequest.CONTROL_AE_REGIONS, focusRegions);
+            }
+        }
+    }
+
+    private void updateRepeatingRequest() {
+        final CameraCaptureSession captureSession = mCaptureSession;
+        final CaptureRequest.Builder requestBuilder = mRequestBuilder;
+        if (captureSession == null || requestBuilder == null) {
+            return;
+        }
+        applySettings(requestBuilder);
+        try {
+            captureSession.setRepeatingRequest(requestBuilder.build(), mCaptureCallback,
+                    mCallbackHandler);
+        } catch (final CameraAccessException | IllegalStateException ignored) {
+        }
+    }
+
+    private void triggerAutoFocus(final int trigger, @Nullable final FocusCallback callback) {
+        final CameraCaptureSession captureSession = mCaptureSession;
+        final CaptureRequest.Builder requestBuilder = mRequestBuilder;
+        if (captureSession == null || requestBuilder == null || !mAutoFocusSupported) {
+            if (callback != null) {
+                notifyFocusFailed(callback);
+            }
+            return;
+        }
+        applySettings(requestBuilder);
+        requestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, trigger);
+        try {
+            captureSession.capture(requestBuilder.build(),
+                    callback != null ? new TriggerCallback(callback) : null, mCallbackHandler);
+            mFocusCallback = callback;
+        } catch (final CameraAccessException | IllegalStateException e) {
+            if (callback != null) {
+                notifyFocusFailed(callback);
+            }
+        } finally {
+            requestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
+                    CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
+        }
+    }
+
+    /**
+     * Focus callback is always called asynchronously, like it's done by camera
+     */
+    private void notifyFocusFailed(@NonNull final FocusCallback callback) {
+        final Handler callbackHandler = mCallbackHandler;
+        if (callbackHandler != null) {
+            callbackHandler.post(new FocusFailedTask(callback));
+        }
+    }
+
+    private synchronized void onFocusTriggered(@NonNull final FocusCallback callback) {
+        if (mFocusCallback == callback) {
+            mFocusTriggered = true;
+        }
+    }
+
+    private void onCaptureResult(@NonNull final CaptureResult result) {
+        final FocusCallback callback;
+        final boolean success;
+        synchronized (this) {
+            callback = mFocusCallback;
+            if (callback == null || !mFocusTriggered) {
+                return;
+            }
+            final Integer focusState = result.get(CaptureResult.CONTROL_AF_STATE);
+            if (focusState == null) {
+                success = false;
+            } else if (focusState == CameraMetadata.CONTROL_AF_STATE_FOCUSED_LOCKED) {
+                success = true;
+            } else if (focusState == CameraMetadata.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED) {
+                success = false;
+            } else {
+                return;
+            }
+            mFocusCallback = null;
+            mFocusTriggered = false;
+        }
+        callback.onFocused(success);
+    }
+
+    @Nullable
+    private android.graphics.Rect getCropRegion() {
+        final android.graphics.Rect sensorArraySize = mSensorArraySize;
+        if (sensorArraySize == null) {
+            return null;
+        }
+        final float ratio = 1f + (mMaxDigitalZoom - 1f) * mZoom / MAX_ZOOM;
+        final int width = Math.round(sensorArraySize.width() / ratio);
+        final int height = Math.round(sensorArraySize.height() / ratio);
+        final int left = sensorArraySize.left + (sensorArraySize.width() - width) / 2;
+        final int top = sensorArraySize.top + (sensorArraySize.height() - height) / 2;
+        return new android.graphics.Rect(left, top, left + width, top + height);
+    }
+
+    /**
+     * Map area from rotated image coordinates into sensor active array coordinates
+     */
+    @Nullable
+    private MeteringRectangle[] getMeteringRegions(@NonNull final Rect area) {
+        final android.graphics.Rect cropRegion = getCropRegion();
+        if (cropRegion == null) {
+            return null;
+        }
+        final int width = mImageSize.getX();
+        final int height = mImageSize.getY();
+        final Rect imageArea;
+        switch (mOrientation) {
+            case 90:
+                imageArea = new Rect(area.getTop(), height - area.getRight(), area.getBottom(),
+                        height - area.getLeft());
+                break;
+            case 180:
+                imageArea = new Rect(width - area.getRight(), height - area.getBottom(),
+                        width - area.getLeft(), height - area.getTop());
+                break;
+            case 270:
+                imageArea = new Rect(width - area.getBottom(), area.getLeft(),
+                        width - area.getTop(), area.getRight());
+                break;
+            default:
+                imageArea = area;
+                break;
+        }
+        final Rect boundArea = imageArea.bound(0, 0, width, height);
+        final int left = cropRegion.left + boundArea.getLeft() * cropRegion.width() / width;
+        final int top = cropRegion.top + boundArea.getTop() * cropRegion.height() / height;
+        final int right = cropRegion.left + boundArea.getRight() * cropRegion.width() / width;
+        final int bottom = cropRegion.top + boundArea.getBottom() * cropRegion.height() / height;
+        if (right <= left || bottom <= top) {
+            return null;
+        }
+        return new MeteringRectangle[] {new MeteringRectangle(
+                new android.graphics.Rect(left, top, right, bottom),
+                MeteringRectangle.METERING_WEIGHT_MAX)};
+    }
+
+    @NonNull
+    private static List<Point> toPoints(@Nullable final Size[] sizes) {
+        if (sizes == null) {
+            return new ArrayList<>(0);
+        }
+        final List<Point> points = new ArrayList<>(sizes.length);
+        for (final Size size : sizes) {
+            points.add(new Point(size.getWidth(), size.getHeight()));
+        }
+        return points;
+    }
+
+    @NonNull
+    private static List<Point> filterByAspectRatio(@NonNull final List<Point> sizes,
+            @NonNull final Point ratio) {
+        final List<Point> result = new ArrayList<>(sizes.size());
+        for (final Point size : sizes) {
+            if ((long) size.getX() * ratio.getY() == (long) size.getY() * ratio.getX()) {
+                result.add(size);
+            }
+        }
+        return result;
+    }
+
+    private static boolean contains(@Nullable final int[] values, final int value) {
+        if (values == null) {
+            return false;
+        }
+        for (final int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static Range<Integer> findFpsRange(@Nullable final Range<Integer>[] fpsRanges) {
+        if (fpsRanges == null || fpsRanges.length == 0) {
+            return null;
+        }
+        final Range<Integer>[] sortedRanges = Arrays.copyOf(fpsRanges, fpsRanges.length);
+        Arrays.sort(sortedRanges, new FpsRangeComparator());
+        for (final Range<Integer> fpsRange : sortedRanges) {
+            if (fpsRange.getLower() >= MIN_FPS && fpsRange.getUpper() <= MAX_FPS) {
+                return fpsRange;
+            }
+        }
+        return null;
+    }
+
+    private static final class FpsRangeComparator implements Comparator<Range<Integer>> {
+        @Override
+        public int compare(@NonNull final Range<Integer> a, @NonNull final Range<Integer> b) {
+            final int comparison = Integer.compare(b.getUpper(), a.getUpper());
+            return comparison != 0 ? comparison : Integer.compare(b.getLower(), a.getLower());
+        }
+    }
+
+    private static final class DeviceCallback extends CameraDevice.StateCallback {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private CameraDevice mCameraDevice;
+        private int mError;
+        private boolean mCancelled;
+
+        @Override
+        public void onOpened(@NonNull final CameraDevice camera) {
+            synchronized (this) {
+                if (mCancelled) {
+                    camera.close();
+                    return;
+                }
+                mCameraDevice = camera;
+            }
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onDisconnected(@NonNull final CameraDevice camera) {
+            camera.close();
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onError(@NonNull final CameraDevice camera, final int error) {
+            camera.close();
+            synchronized (this) {
+                mError = error;
+                mCameraDevice = null;
+            }
+            mLatch.countDown();
+        }
+
+        public boolean await(final long timeout) throws InterruptedException {
+            return mLatch.await(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        public synchronized void cancel() {
+            mCancelled = true;
+            final CameraDevice cameraDevice = mCameraDevice;
+            if (cameraDevice != null) {
+                mCameraDevice = null;
+                cameraDevice.close();
+            }
+        }
+
+        @Nullable
+        public synchronized CameraDevice getCameraDevice() {
+            return mCameraDevice;
+        }
+
+        public synchronized int getError() {
+            return mError;
+        }
+    }
+
+    private final class SessionCallback extends CameraCaptureSession.StateCallback {
+        private final CaptureRequest.Builder mSessionRequestBuilder;
+
+        public SessionCallback(@NonNull final CaptureRequest.Builder requestBuilder) {
+            mSessionRequestBuilder = requestBuilder;
+        }
+
+        @Override
+        public void onConfigured(@NonNull final CameraCaptureSession session) {
+            synchronized (Camera2FrameSource.this) {
+                if (mRequestBuilder != mSessionRequestBuilder) {
+                    session.close();
+                    return;
+                }
+                mCaptureSession = session;
+                updateRepeatingRequest();
+            }
+        }
+
+        @Override
+        public void onConfigureFailed(@NonNull final CameraCaptureSession session) {
+            session.close();
+        }
+    }
+
+    private final class CaptureCallback extends CameraCaptureSession.CaptureCallback {
+        @Override
+        public void onCaptureCompleted(@NonNull final CameraCaptureSession session,
+                @NonNull final CaptureRequest request, @NonNull final TotalCaptureResult result) {
+            onCaptureResult(result);
+        }
+    }
+
+    private final class TriggerCallback extends CameraCaptureSession.CaptureCallback {
+        private final FocusCallback mCallback;
+
+        public TriggerCallback(@NonNull final FocusCallback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void onCaptureCompleted(@NonNull final CameraCaptureSession session,
+                @NonNull final CaptureRequest request, @NonNull final TotalCaptureResult result) {
+            onFocusTriggered(mCallback);
+            onCaptureResult(result);
+        }
+    }
+
+    private static final class FocusFailedTask implements Runnable {
+        private final FocusCallback mCallback;
+
+        public FocusFailedTask(@NonNull final FocusCallback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void run() {
+            mCallback.onFocused(false);
+        }
+    }
+
+    private static final class ImageListener implements ImageReader.OnImageAvailableListener {
+        private final ReaderHolder mReaderHolder;
+        private final FrameListener mListener;
+
+        public ImageListener(@NonNull final ReaderHolder readerHolder,
+                @NonNull final FrameListener listener) {
+            mReaderHolder = readerHolder;
+            mListener = listener;
+        }
+
+        @Override
+        public void onImageAvailable(@NonNull final ImageReader reader) {
+            final Image image = mReaderHolder.acquireNextImage();
+            if (image != null) {
+                mListener.onFrame(new PlaneFrameImage(image, mReaderHolder),
+                        image.getTimestamp());
+            }
+        }
+    }
+
+    /**
+     * Reader is closed when it's no longer used by preview and all acquired images
+     * are released, since closing it invalidates plane buffers of the acquired images
+     */
+    private static final class ReaderHolder {
+        private final ImageReader mImageReader;
+        private int mAcquiredImagesCount;
+        private boolean mClosed;
+
+        public ReaderHolder(@NonNull final ImageReader imageReader) {
+            mImageReader = imageReader;
+        }
+
+        @Nullable
+        public synchronized Image acquireNextImage() {
+            if (mClosed) {
+                return null;
+            }
+            final Image image;
+            try {
+                image = mImageReader.acquireNextImage();
+            } catch (final IllegalStateException e) {
+                // All images are being decoded, frame will be dropped
+                return null;
+            }
+            if (image != null) {
+                mAcquiredImagesCount++;
+            }
+            return image;
+        }
+
+        public synchronized void release(@NonNull final Image image) {
+            image.close();
+            mAcquiredImagesCount--;
+            closeIfUnused();
+        }
+
+        public synchronized void close() {
+            mClosed = true;
+            closeIfUnused();
+        }
+
+        private void closeIfUnused() {
+            if (mClosed && mAcquiredImagesCount == 0) {
+                mImageReader.close();
+            }
+        }
+    }
+
+    private static final class PlaneFrameImage implements FrameImage {
+        private final Image mImage;
+        private final ReaderHolder mReaderHolder;
+        private boolean mReleased;
+
+        public PlaneFrameImage(@NonNull final Image image,
+                @NonNull final ReaderHolder readerHolder) {
+            mImage = image;
+            mReaderHolder = readerHolder;
+        }
+
+        @Override
+        public void cropRotateLuma(final int width, final int height, final int rotation,
+                @NonNull final Rect frameRect, final boolean reverseHorizontal,
+                @NonNull final byte[] output) {
+            final Image.Plane plane = mImage.getPlanes()[0];
+            Utils.cropRotateLuma(plane.getBuffer(), plane.getRowStride(), plane.getPixelStride(),
+                    width, height, rotation, frameRect, reverseHorizontal, output);
+        }
+
+        @NonNull
+        @Override
+        public byte[] getNv21() {
+            final int width = mImage.getWidth();
+            final int height = mImage.getHeight();
+            final int chromaWidth = (width + 1) / 2;
+            final int chromaHeight = (height + 1) / 2;
+            final byte[] nv21 = new byte[width * height + 2 * chromaWidth * chromaHeight];
+            final Image.Plane[] planes = mImage.getPlanes();
+            final Image.Plane yPlane = planes[0];
+            final ByteBuffer yBuffer = yPlane.getBuffer();
+            final int yRowStride = yPlane.getRowStride();
+            final int yPixelStride = yPlane.getPixelStride();
+            int index = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    nv21[index++] = yBuffer.get(y * yRowStride + x * yPixelStride);
+                }
+            }
+            final Image.Plane uPlane = planes[1];
+            final Image.Plane vPlane = planes[2];
+            final ByteBuffer uBuffer = uPlane.getBuffer();
+            final ByteBuffer vBuffer = vPlane.getBuffer();
+            final int uRowStride = uPlane.getRowStride();
+            final int uPixelStride = uPlane.getPixelStride();
+            final int vRowStride = vPlane.getRowStride();
+            final int vPixelStride = vPlane.getPixelStride();
+            for (int y = 0; y < chromaHeight; y++) {
+                for (int x = 0; x < chromaWidth; x++) {
+                    nv21[index++] = vBuffer.get(y * vRowStride + x * vPixelStride);
+                    nv21[index++] = uBuffer.get(y * uRowStride + x * uPixelStride);
+                }
+            }
+            return nv21;
+        }
+
+        @Override
+        public void release() {
+            synchronized (this) {
+                if (mReleased) {
+                    return;
+                }
+                mReleased = true;
+            }
+            mReaderHolder.release(mImage);
+        }
+    }
+}
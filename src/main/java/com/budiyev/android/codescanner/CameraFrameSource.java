@@ -0,0 +1,316 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.List;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.hardware.Camera.CameraInfo;
+import android.hardware.Camera.Parameters;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * {@link FrameSource} implementation, based on {@link Camera} API
+ */
+@SuppressWarnings("deprecation")
+final class CameraFrameSource implements FrameSource {
+
+    private final Context mContext;
+    private final Camera.PreviewCallback mPreviewCallback;
+    private final int mRequestedCameraId;
+    private volatile Camera mCamera;
+    private volatile FrameListener mFrameListener;
+    private volatile PreviewBufferPool mBufferPool;
+    private Handler mCameraHandler;
+    private Point mImageSize;
+    private int mCameraId;
+    private int mOrientation;
+    private boolean mReverseHorizontal;
+    private boolean mAutoFocusSupported;
+    private boolean mFlashSupported;
+
+    public CameraFrameSource(@NonNull final Context context, final int cameraId) {
+        mContext = context;
+        mRequestedCameraId = cameraId;
+        mPreviewCallback = new PreviewCallback();
+    }
+
+    @Override
+    public void open(final int viewWidth, final int viewHeight) {
+        Camera camera = null;
+        final CameraInfo cameraInfo = new CameraInfo();
+        final int cameraId = mRequestedCameraId;
+        int openedCameraId = cameraId;
+        if (cameraId == CodeScanner.CAMERA_BACK || cameraId == CodeScanner.CAMERA_FRONT) {
+            final int numberOfCameras = Camera.getNumberOfCameras();
+            final int facing =
+                    cameraId == CodeScanner.CAMERA_BACK ? CameraInfo.CAMERA_FACING_BACK :
+                            CameraInfo.CAMERA_FACING_FRONT;
+            for (int i = 0; i < numberOfCameras; i++) {
+                Camera.getCameraInfo(i, cameraInfo);
+                if (cameraInfo.facing == facing) {
+                    camera = Camera.open(i);
+                    openedCameraId = i;
+                    break;
+                }
+            }
+        } else {
+            camera = Camera.open(cameraId);
+            Camera.getCameraInfo(cameraId, cameraInfo);
+        }
+        if (camera == null) {
+            throw new CodeScannerException("Unable to access camera");
+        }
+        try {
+            configure(camera, cameraInfo, viewWidth, viewHeight);
+        } catch (final RuntimeException e) {
+            camera.release();
+            throw e;
+        }
+        // Camera delivers callbacks to the looper of the thread, which opened it
+        final Looper looper = Looper.myLooper();
+        mCameraHandler = new Handler(looper != null ? looper : Looper.getMainLooper());
+        mCameraId = openedCameraId;
+        mCamera = camera;
+    }
+
+    @Override
+    public int getCameraId() {
+        return mCameraId;
+    }
+
+    @NonNull
+    @Override
+    public Point getImageSize() {
+        return mImageSize;
+    }
+
+    @Override
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    @Override
+    public boolean shouldReverseHorizontal() {
+        return mReverseHorizontal;
+    }
+
+    @Override
+    public boolean isAutoFocusSupported() {
+        return mAutoFocusSupported;
+    }
+
+    @Override
+    public boolean isFlashSupported() {
+        return mFlashSupported;
+    }
+
+    @Override
+    public void startPreview(@Nullable final SurfaceHolder surfaceHolder,
+            @NonNull final FrameListener listener, final int buffersCount,
+            final int heldFramesCount) throws Exception {
+        final Camera camera = requireCamera();
+        mFrameListener = listener;
+        if (buffersCount > 0) {
+            final PreviewBufferPool bufferPool =
+                    new PreviewBufferPool(camera, mCameraHandler, mImageSize, buffersCount);
+            camera.setPreviewCallbackWithBuffer(mPreviewCallback);
+            bufferPool.fill();
+            mBufferPool = bufferPool;
+        } else {
+            camera.setPreviewCallback(mPreviewCallback);
+        }
+        camera.setPreviewDisplay(surfaceHolder);
+        camera.startPreview();
+    }
+
+    @Override
+    public void stopPreview() {
+        releaseBufferPool();
+        mFrameListener = null;
+        final Camera camera = requireCamera();
+        camera.cancelAutoFocus();
+        camera.setPreviewCallback(null);
+        camera.stopPreview();
+    }
+
+    @Override
+    public void setAutoFocusEnabled(final boolean enabled, @NonNull final AutoFocusMode mode,
+            @Nullable final Rect area) {
+        final Camera camera = requireCamera();
+        camera.cancelAutoFocus();
+        final Parameters parameters = camera.getParameters();
+        if (enabled) {
+            Utils.setAutoFocusMode(parameters, mode);
+            if (area != null) {
+                configureFocusArea(parameters, area);
+            }
+        } else {
+            Utils.disableAutoFocus(parameters);
+        }
+        camera.setParameters(parameters);
+    }
+
+    @Override
+    public void autoFocus(@Nullable final Rect area, @NonNull final FocusCallback callback) {
+        final Camera camera = requireCamera();
+        camera.cancelAutoFocus();
+        if (area != null) {
+            final Parameters parameters = camera.getParameters();
+            configureFocusArea(parameters, area);
+            Utils.configureFocusModeForTouch(parameters);
+            camera.setParameters(parameters);
+        }
+        camera.autoFocus(new AutoFocusCallback(callback));
+    }
+
+    @Override
+    public void cancelAutoFocus() {
+        requireCamera().cancelAutoFocus();
+    }
+
+    @Override
+    public void setFlashEnabled(final boolean enabled) {
+        final Camera camera = requireCamera();
+        final Parameters parameters = camera.getParameters();
+        if (parameters == null) {
+            return;
+        }
+        Utils.setFlashMode(parameters,
+                enabled ? Parameters.FLASH_MODE_TORCH : Parameters.FLASH_MODE_OFF);
+        camera.setParameters(parameters);
+    }
+
+    @Override
+    public void setZoom(final int zoom) {
+        final Camera camera = requireCamera();
+        final Parameters parameters = camera.getParameters();
+        Utils.setZoom(parameters, zoom);
+        camera.setParameters(parameters);
+    }
+
+    @Override
+    public void release() {
+        releaseBufferPool();
+        mFrameListener = null;
+        final Camera camera = mCamera;
+        if (camera != null) {
+            mCamera = null;
+            camera.release();
+        }
+    }
+
+    private void configure(@NonNull final Camera camera, @NonNull final CameraInfo cameraInfo,
+            final int viewWidth, final int viewHeight) {
+        final Parameters parameters = camera.getParameters();
+        if (parameters == null) {
+            throw new CodeScannerException("Unable to configure camera");
+        }
+        final int orientation = Utils.getDisplayOrientation(mContext, cameraInfo);
+        final boolean portrait = Utils.isPortrait(orientation);
+        final Point imageSize =
+                Utils.findSuitableImageSize(parameters, portrait ? viewHeight : viewWidth,
+                        portrait ? viewWidth : viewHeight);
+        parameters.setPreviewSize(imageSize.getX(), imageSize.getY());
+        parameters.setPreviewFormat(ImageFormat.NV21);
+        final List<String> focusModes = parameters.getSupportedFocusModes();
+        mAutoFocusSupported = focusModes != null &&
+                (focusModes.contains(Parameters.FOCUS_MODE_AUTO) ||
+                        focusModes.contains(Parameters.FOCUS_MODE_CONTINUOUS_PICTURE));
+        final List<String> flashModes = parameters.getSupportedFlashModes();
+        mFlashSupported = flashModes != null && flashModes.contains(Parameters.FLASH_MODE_TORCH);
+        Utils.configureFpsRange(parameters);
+        Utils.configureSceneMode(parameters);
+        Utils.configureVideoStabilization(parameters);
+        camera.setParameters(parameters);
+        camera.setDisplayOrientation(orientation);
+        mImageSize = imageSize;
+        mOrientation = orientation;
+        mReverseHorizontal = cameraInfo.facing == CameraInfo.CAMERA_FACING_FRONT;
+    }
+
+    @SuppressWarnings("SuspiciousNameCombination")
+    private void configureFocusArea(@NonNull final Parameters parameters,
+            @NonNull final Rect area) {
+        final Point imageSize = mImageSize;
+        final int orientation = mOrientation;
+        final boolean portrait = Utils.isPortrait(orientation);
+        Utils.configureFocusArea(parameters, area,
+                portrait ? imageSize.getY() : imageSize.getX(),
+                portrait ? imageSize.getX() : imageSize.getY(), orientation);
+    }
+
+    @NonNull
+    private Camera requireCamera() {
+        final Camera camera = mCamera;
+        if (camera == null) {
+            throw new IllegalStateException("Camera is not opened");
+        }
+        return camera;
+    }
+
+    private void releaseBufferPool() {
+        final PreviewBufferPool bufferPool = mBufferPool;
+        if (bufferPool != null) {
+            mBufferPool = null;
+            bufferPool.release();
+        }
+    }
+
+    private final class PreviewCallback implements Camera.PreviewCallback {
+        @Override
+        public void onPreviewFrame(final byte[] data, final Camera camera) {
+            if (data == null) {
+                return;
+            }
+            final PreviewBufferPool bufferPool = mBufferPool;
+            final FrameListener listener = mFrameListener;
+            if (listener != null) {
+                listener.onFrame(new Nv21FrameImage(data, bufferPool), System.nanoTime());
+            } else if (bufferPool != null) {
+                bufferPool.recycle(data);
+            }
+        }
+    }
+
+    private static final class AutoFocusCallback implements Camera.AutoFocusCallback {
+        private final FocusCallback mCallback;
+
+        public AutoFocusCallback(@NonNull final FocusCallback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void onAutoFocus(final boolean success, final Camera camera) {
+            mCallback.onFocused(success);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Cheap pre-decode stage, which finds regions of the viewfinder frame, that look like codes,
+ * so that these regions are decoded first. Frame luma is sampled on a grid, samples are grouped
+ * into cells, cells with strong gradients of coherent orientation (parallel bars of linear
+ * codes or perpendicular edges of matrix codes) are candidates; adjacent candidate cells
+ * are merged into regions, padded by one cell. If no code was decoded from the regions,
+ * the whole frame is decoded, unless {@link #setGatingEnabled gating} is enabled.
+ * <br>
+ * Thresholds can be changed at any time. Localized frames and frames without regions
+ * are counted.
+ *
+ * @see CodeScanner#setCodeLocalizer(CodeLocalizer)
+ * @see LocalizeCallback
+ */
+public final class CodeLocalizer {
+
+    /**
+     * Default number of samples along the smaller side of the frame
+     */
+    public static final int DEFAULT_GRID_SIZE = 96;
+
+    /**
+     * Default minimum root mean square brightness difference of a cell, {@code 0-255}
+     */
+    public static final int DEFAULT_MIN_GRADIENT = 24;
+
+    /**
+     * Default minimum gradient orientation coherence of a cell, {@code 0-1}
+     */
+    public static final float DEFAULT_MIN_COHERENCE = 0.5f;
+
+    /**
+     * Default maximum number of regions per frame
+     */
+    public static final int DEFAULT_MAX_REGIONS = 4;
+
+    /**
+     * Default number of gated frames in a row, after which a frame is decoded in full anyway
+     */
+    public static final int DEFAULT_FORCED_DECODE_INTERVAL = 10;
+
+    private static final int CELL_SAMPLES = 4;
+    private final AtomicLong mLocalizedCount = new AtomicLong();
+    private final AtomicLong mEmptyCount = new AtomicLong();
+    private volatile int mGridSize = DEFAULT_GRID_SIZE;
+    private volatile int mMinGradient = DEFAULT_MIN_GRADIENT;
+    private volatile float mMinCoherence = DEFAULT_MIN_COHERENCE;
+    private volatile int mMaxRegions = DEFAULT_MAX_REGIONS;
+    private volatile int mForcedDecodeInterval = DEFAULT_FORCED_DECODE_INTERVAL;
+    private volatile boolean mGatingEnabled;
+    private int mGatedInRow;
+
+    /**
+     * Localizer with default thresholds
+     */
+    public CodeLocalizer() {
+    }
+
+    public int getGridSize() {
+        return mGridSize;
+    }
+
+    /**
+     * Number of samples along the smaller side of the frame, more samples make
+     * regions tighter and localization slower; cells are {@code 4x4} samples
+     */
+    public void setGridSize(final int gridSize) {
+        if (gridSize < CELL_SAMPLES * 2) {
+            throw new IllegalArgumentException("Grid size must be at least " + CELL_SAMPLES * 2);
+        }
+        mGridSize = gridSize;
+    }
+
+    public int getMinGradient() {
+        return mMinGradient;
+    }
+
+    /**
+     * Cells with lower root mean square brightness difference between neighbours of samples
+     * aren't candidates; lower threshold finds codes of lower contrast and more background
+     *
+     * @param minGradient Brightness difference, {@code 0-255}
+     */
+    public void setMinGradient(final int minGradient) {
+        if (minGradient < 0 || minGradient > 255) {
+            throw new IllegalArgumentException("Gradient must be between 0 and 255");
+        }
+        mMinGradient = minGradient;
+    }
+
+    public float getMinCoherence() {
+        return mMinCoherence;
+    }
+
+    /**
+     * Cells with lower gradient orientation coherence aren't candidates; coherence is {@code 1}
+     * if all edges of the cell are parallel or perpendicular to each other and {@code 0}
+     * if they are oriented uniformly
+     *
+     * @param minCoherence Coherence, {@code 0-1}
+     */
+    public void setMinCoherence(final float minCoherence) {
+        if (!(minCoherence >= 0f && minCoherence <= 1f)) {
+            throw new IllegalArgumentException("Coherence must be between 0 and 1");
+        }
+        mMinCoherence = minCoherence;
+    }
+
+    public int getMaxRegions() {
+        return mMaxRegions;
+    }
+
+    /**
+     * Maximum number of regions per frame, largest regions are decoded first
+     */
+    public void setMaxRegions(final int maxRegions) {
+        if (maxRegions < 1) {
+            throw new IllegalArgumentException(
+                    "Maximum number of regions must be greater than zero");
+        }
+        mMaxRegions = maxRegions;
+    }
+
+    public boolean isGatingEnabled() {
+        return mGatingEnabled;
+    }
+
+    /**
+     * Don't decode frames in full, if no code was decoded from their regions or there are
+     * no regions, {@code false} by default; saves time of frames without codes, but codes,
+     * which localizer misses (low contrast, large modules), are only decoded from frames
+     * of the {@link #setForcedDecodeInterval forced decode interval}
+     */
+    public void setGatingEnabled(final boolean gatingEnabled) {
+        mGatingEnabled = gatingEnabled;
+    }
+
+    public int getForcedDecodeInterval() {
+        return mForcedDecodeInterval;
+    }
+
+    /**
+     * Number of gated frames in a row, after which a frame is decoded in full anyway,
+     * if {@link #setGatingEnabled gating} is enabled
+     */
+    public void setForcedDecodeInterval(final int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be greater than zero");
+        }
+        mForcedDecodeInterval = interval;
+    }
+
+    /**
+     * Number of localized frames
+     */
+    public long getLocalizedFramesCount() {
+        return mLocalizedCount.get();
+    }
+
+    /**
+     * Number of localized frames, where no regions were found
+     */
+    public long getEmptyFramesCount() {
+        return mEmptyCount.get();
+    }
+
+    /**
+     * Reset localized and empty frame counts to zero
+     */
+    public void resetCounts() {
+        mLocalizedCount.set(0L);
+        mEmptyCount.set(0L);
+    }
+
+    /**
+     * Whether frame, which wasn't decoded from its regions, should be decoded in full
+     */
+    synchronized boolean shouldDecodeFully() {
+        if (!mGatingEnabled || ++mGatedInRow > mForcedDecodeInterval) {
+            mGatedInRow = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find candidate regions in luma of the frame
+     *
+     * @return Regions in luma coordinates, largest first, empty if there are no candidates,
+     * {@code null} if frame is too small for the grid
+     */
+    @Nullable
+    List<Rect> localize(@NonNull final byte[] luma, final int width, final int height) {
+        final int step = Math.max(1, Math.min(width, height) / mGridSize);
+        final int cellSize = step * CELL_SAMPLES;
+        // Samples are taken one pixel apart from the edges for central differences
+        final int columns = (width - 2) / cellSize;
+        final int rows = (height - 2) / cellSize;
+        if (columns < 2 || rows < 2) {
+            return null;
+        }
+        mLocalizedCount.incrementAndGet();
+        final boolean[] candidates = findCandidates(luma, width, step, columns, rows);
+        final List<Rect> regions =
+                mergeCandidates(candidates, columns, rows, cellSize, width, height);
+        if (regions.isEmpty()) {
+            mEmptyCount.incrementAndGet();
+        }
+        return regions;
+    }
+
+    @NonNull
+    private boolean[] findCandidates(@NonNull final byte[] luma, final int width, final int step,
+            final int columns, final int rows) {
+        final int cellSize = step * CELL_SAMPLES;
+        final int samplesCount = CELL_SAMPLES * CELL_SAMPLES;
+        final long minEnergy = (long) mMinGradient * mMinGradient * samplesCount;
+        final double minCoherence = mMinCoherence;
+        final boolean[] candidates = new boolean[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final int cellLeft = 1 + column * cellSize;
+                final int cellTop = 1 + row * cellSize + step / 2;
+                long energy = 0L;
+                long weight = 0L;
+                long cos = 0L;
+                long sin = 0L;
+                for (int y = 0; y < CELL_SAMPLES; y++) {
+                    // Rows are staggered, so that linear codes are sampled at distinct columns
+                    int index = (cellTop + y * step) * width + cellLeft + y * step / CELL_SAMPLES;
+                    for (int x = 0; x < CELL_SAMPLES; x++, index += step) {
+                        final int dx = (luma[index + 1] & 0xff) - (luma[index - 1] & 0xff);
+                        final int dy = (luma[index + width] & 0xff) - (luma[index - width] & 0xff);
+                        final long dx2 = dx * dx;
+                        final long dy2 = dy * dy;
+                        final long magnitude = dx2 + dy2;
+                        // Quadruple angle, so that perpendicular edges add up as parallel ones
+                        final long cos2 = dx2 - dy2;
+                        final long sin2 = 2L * dx * dy;
+                        energy += magnitude;
+                        weight += magnitude * magnitude;
+                        cos += cos2 * cos2 - sin2 * sin2;
+                        sin += 2L * cos2 * sin2;
+                    }
+                }
+                if (energy >= minEnergy && energy > 0L) {
+                    final double coherence = Math.hypot(cos, sin) / weight;
+                    candidates[row * columns + column] = coherence >= minCoherence;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Merge adjacent candidate cells into padded regions, largest first
+     */
+    @NonNull
+    private List<Rect> mergeCandidates(@NonNull final boolean[] candidates, final int columns,
+            final int rows, final int cellSize, final int width, final int height) {
+        final List<Region> regions = new ArrayList<>();
+        final int[] stack = new int[candidates.length];
+        for (int start = 0; start < candidates.length; start++) {
+            if (!candidates[start]) {
+                continue;
+            }
+            candidates[start] = false;
+            stack[0] = start;
+            int stackSize = 1;
+            int cellsCount = 0;
+            int left = columns;
+            int top = rows;
+            int right = 0;
+            int bottom = 0;
+            while (stackSize > 0) {
+                final int cell = stack[--stackSize];
+                final int column = cell % columns;
+                final int row = cell / columns;
+                cellsCount++;
+                left = Math.min(left, column);
+                top = Math.min(top, row);
+                right = Math.max(right, column);
+                bottom = Math.max(bottom, row);
+                if (column > 0 && candidates[cell - 1]) {
+                    candidates[cell - 1] = false;
+                    stack[stackSize++] = cell - 1;
+                }
+                if (column < columns - 1 && candidates[cell + 1]) {
+                    candidates[cell + 1] = false;
+                    stack[stackSize++] = cell + 1;
+                }
+                if (row > 0 && candidates[cell - columns]) {
+                    candidates[cell - columns] = false;
+                    stack[stackSize++] = cell - columns;
+                }
+                if (row < rows - 1 && candidates[cell + columns]) {
+                    candidates[cell + columns] = false;
+                    stack[stackSize++] = cell + columns;
+                }
+            }
+            // Padded by one cell, so that quiet zone and partially covered cells are included
+            addRegion(regions, new Region(Math.max(0, (left - 1) * cellSize),
+                    Math.max(0, (top - 1) * cellSize), Math.min(width, (right + 2) * cellSize),
+                    Math.min(height, (bottom + 2) * cellSize), cellsCount));
+        }
+        Collections.sort(regions, new RegionComparator());
+        final int count = Math.min(regions.size(), mMaxRegions);
+        final List<Rect> rects = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Region region = regions.get(i);
+            rects.add(new Rect(region.mLeft, region.mTop, region.mRight, region.mBottom));
+        }
+        return rects;
+    }
+
+    /**
+     * Add the region, merging it with overlapping ones; parts of a matrix code are often
+     * separated by cells of low coherence, but their padded regions overlap
+     */
+    private static void addRegion(@NonNull final List<Region> regions,
+            @NonNull final Region region) {
+        for (int i = regions.size() - 1; i >= 0; i--) {
+            final Region other = regions.get(i);
+            if (region.overlaps(other)) {
+                regions.remove(i);
+                region.merge(other);
+                // Merged region may overlap regions, which were checked already
+                i = regions.size();
+            }
+        }
+        regions.add(region);
+    }
+
+    private static final class Region {
+        private int mLeft;
+        private int mTop;
+        private int mRight;
+        private int mBottom;
+        private int mCellsCount;
+
+        public Region(final int left, final int top, final int right, final int bottom,
+                final int cellsCount) {
+            mLeft = left;
+            mTop = top;
+            mRight = right;
+            mBottom = bottom;
+            mCellsCount = cellsCount;
+        }
+
+        public boolean overlaps(@NonNull final Region other) {
+            return mLeft < other.mRight && other.mLeft < mRight && mTop < other.mBottom &&
+                    other.mTop < mBottom;
+        }
+
+        public void merge(@NonNull final Region other) {
+            mLeft = Math.min(mLeft, other.mLeft);
+            mTop = Math.min(mTop, other.mTop);
+            mRight = Math.max(mRight, other.mRight);
+            mBottom = Math.max(mBottom, other.mBottom);
+            mCellsCount += other.mCellsCount;
+        }
+    }
+
+    private static final class RegionComparator implements Comparator<Region> {
+        @Override
+        public int compare(@NonNull final Region a, @NonNull final Region b) {
+            return b.mCellsCount - a.mCellsCount;
+        }
+    }
+}
@@ -23,19 +23,23 @@
  */
 package com.budiyev.android.codescanner;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import android.Manifest;
 import android.content.Context;
-import android.graphics.ImageFormat;
 import android.hardware.Camera;
-import android.hardware.Camera.CameraInfo;
 import android.hardware.Camera.Parameters;
+import android.os.Build;
 import android.os.Handler;
-import android.os.Process;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.view.SurfaceHolder;
 
 import androidx.annotation.MainThread;
@@ -88,20 +92,32 @@ public final class CodeScanner {
     private static final List<BarcodeFormat> DEFAULT_FORMATS = ALL_FORMATS;
     private static final ScanMode DEFAULT_SCAN_MODE = ScanMode.SINGLE;
     private static final AutoFocusMode DEFAULT_AUTO_FOCUS_MODE = AutoFocusMode.SAFE;
+    private static final CameraApi DEFAULT_CAMERA_API = CameraApi.CAMERA;
     private static final boolean DEFAULT_AUTO_FOCUS_ENABLED = true;
     private static final boolean DEFAULT_TOUCH_FOCUS_ENABLED = true;
     private static final boolean DEFAULT_FLASH_ENABLED = false;
     private static final long DEFAULT_SAFE_AUTO_FOCUS_INTERVAL = 2000L;
+    private static final int DEFAULT_PREVIEW_BUFFERS_COUNT = 3;
+    private static final int DEFAULT_DECODER_THREADS_COUNT = 1;
+    private static final int DEFAULT_MAX_RESULTS_PER_FRAME = 8;
+    private static final long DEFAULT_FRAME_TIME_BUDGET_MILLIS = 0L;
+    private static final boolean DEFAULT_DOWNSAMPLING_ENABLED = false;
+    private static final boolean DEFAULT_ADAPTIVE_DECODING_ENABLED = false;
+    private static final boolean DEFAULT_ROI_TRACKING_ENABLED = false;
+    private static final boolean DEFAULT_PIPELINED_DECODING_ENABLED = false;
+    private static final boolean DEFAULT_DECODE_RACING_ENABLED = false;
+    private static final boolean DEFAULT_TILED_SEARCH_ENABLED = false;
     private static final int SAFE_AUTO_FOCUS_ATTEMPTS_THRESHOLD = 2;
+    private static final long CAMERA_THREAD_TIMEOUT = 2000L;
     private final Object mInitializeLock = new Object();
     private final Context mContext;
     private final Handler mMainThreadHandler;
     private final CodeScannerView mScannerView;
     private final SurfaceHolder mSurfaceHolder;
     private final SurfaceHolder.Callback mSurfaceCallback;
-    private final Camera.PreviewCallback mPreviewCallback;
-    private final Camera.AutoFocusCallback mTouchFocusCallback;
-    private final Camera.AutoFocusCallback mSafeAutoFocusCallback;
+    private final FrameSource.FrameListener mPreviewCallback;
+    private final FrameSource.FocusCallback mTouchFocusCallback;
+    private final FrameSource.FocusCallback mSafeAutoFocusCallback;
     private final Runnable mSafeAutoFocusTask;
     private final Runnable mStopPreviewTask;
     private final DecoderStateListener mDecoderStateListener;
@@ -110,23 +126,48 @@ public final class CodeScanner {
     private volatile ScanMode mScanMode = DEFAULT_SCAN_MODE;
     private volatile AutoFocusMode mAutoFocusMode = DEFAULT_AUTO_FOCUS_MODE;
     private volatile DecodeCallback mDecodeCallback = null;
+    private volatile MultiDecodeCallback mMultiDecodeCallback = null;
+    private volatile int mMaxResultsPerFrame = DEFAULT_MAX_RESULTS_PER_FRAME;
+    private volatile long mFrameTimeBudgetMillis = DEFAULT_FRAME_TIME_BUDGET_MILLIS;
     private volatile ErrorCallback mErrorCallback = null;
+    private volatile CameraApi mCameraApi = DEFAULT_CAMERA_API;
+    private volatile FrameSource.Factory mFrameSourceFactory = null;
     private volatile DecoderWrapper mDecoderWrapper = null;
+    private volatile ScannerMetrics mMetrics = null;
+    private volatile FrameQualityGate mQualityGate = null;
+    private volatile CodeLocalizer mCodeLocalizer = null;
+    private volatile LocalizeCallback mLocalizeCallback = null;
+    private volatile BinarizerChain mBinarizerChain = BinarizerChain.createDefault();
+    private volatile ResultDeduplicator mResultDeduplicator = null;
+    private volatile FrameDifferenceFilter mDifferenceFilter = null;
+    private volatile TryHarderPolicy mTryHarderPolicy = null;
+    private volatile FrameRecorder mFrameRecorder = null;
+    private volatile HandlerThread mCameraThread = null;
+    private volatile Handler mCameraHandler = null;
+    private volatile HandlerThread mReleasingCameraThread = null;
     private volatile boolean mInitialization = false;
     private volatile boolean mInitialized = false;
     private volatile boolean mStoppingPreview = false;
     private volatile boolean mAutoFocusEnabled = DEFAULT_AUTO_FOCUS_ENABLED;
     private volatile boolean mFlashEnabled = DEFAULT_FLASH_ENABLED;
+    private volatile boolean mDownsamplingEnabled = DEFAULT_DOWNSAMPLING_ENABLED;
+    private volatile boolean mAdaptiveDecodingEnabled = DEFAULT_ADAPTIVE_DECODING_ENABLED;
+    private volatile boolean mRoiTrackingEnabled = DEFAULT_ROI_TRACKING_ENABLED;
+    private volatile boolean mDecodeRacingEnabled = DEFAULT_DECODE_RACING_ENABLED;
+    private volatile boolean mTiledSearchEnabled = DEFAULT_TILED_SEARCH_ENABLED;
     private volatile long mSafeAutoFocusInterval = DEFAULT_SAFE_AUTO_FOCUS_INTERVAL;
     private volatile int mCameraId = CAMERA_BACK;
     private volatile int mZoom = 0;
+    private volatile int mPreviewBuffersCount = DEFAULT_PREVIEW_BUFFERS_COUNT;
+    private volatile int mDecoderThreadsCount = DEFAULT_DECODER_THREADS_COUNT;
+    private volatile boolean mPipelinedDecodingEnabled = DEFAULT_PIPELINED_DECODING_ENABLED;
+    private volatile boolean mTouchFocusing = false;
+    private volatile boolean mPreviewActive = false;
+    private volatile boolean mSafeAutoFocusing = false;
+    private volatile boolean mSafeAutoFocusTaskScheduled = false;
+    private volatile int mSafeAutoFocusAttemptsCount = 0;
     private boolean mTouchFocusEnabled = DEFAULT_TOUCH_FOCUS_ENABLED;
-    private boolean mTouchFocusing = false;
-    private boolean mPreviewActive = false;
-    private boolean mSafeAutoFocusing = false;
-    private boolean mSafeAutoFocusTaskScheduled = false;
     private boolean mInitializationRequested = false;
-    private int mSafeAutoFocusAttemptsCount = 0;
     private int mViewWidth = 0;
     private int mViewHeight = 0;
 
@@ -204,6 +245,37 @@ public final class CodeScanner {
         }
     }
 
+    /**
+     * Get current camera API
+     *
+     * @see #setCameraApi
+     */
+    @NonNull
+    public CameraApi getCameraApi() {
+        return mCameraApi;
+    }
+
+    /**
+     * Camera API to use, {@link CameraApi#CAMERA} by default
+     *
+     * @see CameraApi
+     */
+    @MainThread
+    public void setCameraApi(@NonNull final CameraApi cameraApi) {
+        synchronized (mInitializeLock) {
+            if (mCameraApi != Objects.requireNonNull(cameraApi)) {
+                mCameraApi = cameraApi;
+                if (mInitialized) {
+                    final boolean previewActive = mPreviewActive;
+                    releaseResources();
+                    if (previewActive) {
+                        initialize();
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Get current list of formats to decode
      *
@@ -264,6 +336,65 @@ public final class CodeScanner {
         }
     }
 
+    /**
+     * Get current multiple codes decode callback
+     *
+     * @see #setMultiDecodeCallback
+     */
+    @Nullable
+    public MultiDecodeCallback getMultiDecodeCallback() {
+        return mMultiDecodeCallback;
+    }
+
+    /**
+     * Callback, which receives all distinct codes decoded from a frame, closest to the frame
+     * centre first; if set, multiple codes are searched in each frame, which is slower,
+     * and {@link DecodeCallback} receives the closest one
+     *
+     * @param multiDecodeCallback Callback
+     * @see MultiDecodeCallback
+     * @see #setMaxResultsPerFrame
+     */
+    public void setMultiDecodeCallback(@Nullable final MultiDecodeCallback multiDecodeCallback) {
+        synchronized (mInitializeLock) {
+            mMultiDecodeCallback = multiDecodeCallback;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setMultiCallback(multiDecodeCallback);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get current maximum number of codes to decode per frame
+     *
+     * @see #setMaxResultsPerFrame
+     */
+    public int getMaxResultsPerFrame() {
+        return mMaxResultsPerFrame;
+    }
+
+    /**
+     * Maximum number of codes to decode per frame, if {@link MultiDecodeCallback} is set,
+     * {@code 8} by default
+     */
+    public void setMaxResultsPerFrame(final int maxResultsPerFrame) {
+        if (maxResultsPerFrame < 1) {
+            throw new IllegalArgumentException("Max results count must be greater than zero");
+        }
+        synchronized (mInitializeLock) {
+            mMaxResultsPerFrame = maxResultsPerFrame;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setMaxResults(maxResultsPerFrame);
+                }
+            }
+        }
+    }
+
     /**
      * Get current error callback
      *
@@ -278,63 +409,636 @@ public final class CodeScanner {
      * Camera initialization and image decoding error callback.
      * If not set, an exception will be thrown when error will occur.
      *
-     * @param errorCallback Callback
-     * @see ErrorCallback#SUPPRESS
-     * @see ErrorCallback
+     * @param errorCallback Callback
+     * @see ErrorCallback#SUPPRESS
+     * @see ErrorCallback
+     */
+    public void setErrorCallback(@Nullable final ErrorCallback errorCallback) {
+        mErrorCallback = errorCallback;
+    }
+
+    /**
+     * Get current scan mode
+     *
+     * @see #setScanMode
+     */
+    @NonNull
+    public ScanMode getScanMode() {
+        return mScanMode;
+    }
+
+    /**
+     * Scan mode, {@link ScanMode#SINGLE} by default
+     *
+     * @see ScanMode
+     */
+    public void setScanMode(@NonNull final ScanMode scanMode) {
+        synchronized (mInitializeLock) {
+            mScanMode = Objects.requireNonNull(scanMode);
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    final Decoder decoder = decoderWrapper.getDecoder();
+                    decoder.setResultDeduplicator(getActiveResultDeduplicator());
+                    decoder.setRoiTrackingEnabled(isRoiTrackingActive());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get current result deduplicator
+     *
+     * @see #setResultDeduplicator
+     */
+    @Nullable
+    public ResultDeduplicator getResultDeduplicator() {
+        return mResultDeduplicator;
+    }
+
+    /**
+     * Deduplicator, which suppresses repeated results of the same code in
+     * {@link ScanMode#CONTINUOUS} scan mode, {@code null} by default (all results are delivered)
+     *
+     * @see ResultDeduplicator
+     */
+    public void setResultDeduplicator(@Nullable final ResultDeduplicator resultDeduplicator) {
+        synchronized (mInitializeLock) {
+            mResultDeduplicator = resultDeduplicator;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder()
+                            .setResultDeduplicator(getActiveResultDeduplicator());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get current zoom value
+     */
+    public int getZoom() {
+        return mZoom;
+    }
+
+    /**
+     * Set current zoom value (between {@code 0} and {@link Parameters#getMaxZoom()},
+     * or {@code 99} for {@link CameraApi#CAMERA2}, if larger,
+     * max zoom value will be set
+     */
+    public void setZoom(final int zoom) {
+        if (zoom < 0) {
+            throw new IllegalArgumentException("Zoom value must be greater than or equal to zero");
+        }
+        synchronized (mInitializeLock) {
+            if (zoom != mZoom) {
+                mZoom = zoom;
+                if (mInitialized) {
+                    final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                    if (decoderWrapper != null) {
+                        runOnCameraThread(new ZoomTask(decoderWrapper, zoom));
+                    }
+                }
+            }
+        }
+        mZoom = zoom;
+    }
+
+    /**
+     * Get current number of preview buffers
+     *
+     * @see #setPreviewBuffersCount
+     */
+    public int getPreviewBuffersCount() {
+        return mPreviewBuffersCount;
+    }
+
+    /**
+     * Number of preallocated preview frame buffers, which are reused instead of allocating
+     * a new one for every frame, {@code 3} by default. If {@code 0}, a new buffer will be
+     * allocated by the camera for each preview frame. Takes effect on the next preview start.
+     *
+     * @param count Number of buffers, greater than or equal to zero
+     */
+    public void setPreviewBuffersCount(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException(
+                    "Preview buffers count must be greater than or equal to zero");
+        }
+        mPreviewBuffersCount = count;
+    }
+
+    /**
+     * Get current number of decoder threads
+     *
+     * @see #setDecoderThreadsCount
+     */
+    public int getDecoderThreadsCount() {
+        return mDecoderThreadsCount;
+    }
+
+    /**
+     * Number of threads decoding preview frames in parallel, {@code 1} by default.
+     * Each thread owns its own reader, frames are dispatched to idle threads,
+     * results of frames older than the last delivered one are dropped, so that
+     * {@link DecodeCallback} receives results in order. Takes effect on the next
+     * scanner initialization.
+     *
+     * @param count Number of threads, greater than zero
+     * @see Runtime#availableProcessors()
+     */
+    public void setDecoderThreadsCount(final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Decoder threads count must be greater than zero");
+        }
+        mDecoderThreadsCount = count;
+    }
+
+    /**
+     * Pipelined decoding is currently enabled or not
+     *
+     * @see #setPipelinedDecodingEnabled
+     */
+    public boolean isPipelinedDecodingEnabled() {
+        return mPipelinedDecodingEnabled;
+    }
+
+    /**
+     * Prepare (crop, rotate and check) the next frame on a separate thread, while
+     * the previous one is being decoded, disabled by default. Camera buffer is released
+     * right after preparing, one prepared frame at most waits for a decoder thread, newer
+     * one replaces it. Takes effect on the next scanner initialization.
+     *
+     * @param enabled Pipelined decoding enabled
+     * @see #setDecoderThreadsCount
+     */
+    public void setPipelinedDecodingEnabled(final boolean enabled) {
+        mPipelinedDecodingEnabled = enabled;
+    }
+
+    /**
+     * Get current frame time budget
+     *
+     * @see #setFrameTimeBudgetMillis
+     */
+    public long getFrameTimeBudgetMillis() {
+        return mFrameTimeBudgetMillis;
+    }
+
+    /**
+     * Time budget of a frame decoding, {@code 0} (unlimited) by default. Decoding, which
+     * exceeds the budget, is abandoned and the next frame is taken; hard frames
+     * (dense or noisy codes) can't block the decoder for long then.
+     *
+     * @param frameTimeBudgetMillis Budget in milliseconds, {@code 0} for unlimited
+     */
+    public void setFrameTimeBudgetMillis(final long frameTimeBudgetMillis) {
+        if (frameTimeBudgetMillis < 0L) {
+            throw new IllegalArgumentException("Frame time budget can't be negative");
+        }
+        synchronized (mInitializeLock) {
+            mFrameTimeBudgetMillis = frameTimeBudgetMillis;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder()
+                            .setTimeBudgetNanos(frameTimeBudgetMillis * 1000000L);
+                }
+            }
+        }
+    }
+
+    /**
+     * Downsampled decoding is currently enabled or not
+     *
+     * @see #setDownsamplingEnabled
+     */
+    public boolean isDownsamplingEnabled() {
+        return mDownsamplingEnabled;
+    }
+
+    /**
+     * Enable or disable downsampled decoding, {@code false} by default.
+     * If enabled, after a large code was decoded, following frames are decoded
+     * from 2x or 4x downsampled luma first, which is faster, and in full resolution
+     * only if that fails; after such failure smaller factor is used, until the code is lost.
+     */
+    public void setDownsamplingEnabled(final boolean downsamplingEnabled) {
+        synchronized (mInitializeLock) {
+            if (mDownsamplingEnabled == downsamplingEnabled) {
+                return;
+            }
+            mDownsamplingEnabled = downsamplingEnabled;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setDownsamplingEnabled(downsamplingEnabled);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adaptive decoding is currently enabled or not
+     *
+     * @see #setAdaptiveDecodingEnabled
+     */
+    public boolean isAdaptiveDecodingEnabled() {
+        return mAdaptiveDecodingEnabled;
+    }
+
+    /**
+     * Enable or disable adaptive decoding, {@code false} by default.
+     * If enabled, polarities and barcode reader families are tried in the order of their
+     * recent successes instead of the fixed one, so what is usually scanned is found first.
+     * <br>
+     * Note that this changes the decoding order: the learned order replaces the fixed one of
+     * {@link com.google.zxing.MultiFormatReader} (one-dimensional codes first, or last with
+     * {@link com.google.zxing.DecodeHintType#TRY_HARDER} hint), and each 32nd frame
+     * is decoded in the reversed order to give rarely successful readers a chance; which code
+     * is reported first, if a frame contains codes of different families, can differ.
+     */
+    public void setAdaptiveDecodingEnabled(final boolean adaptiveDecodingEnabled) {
+        synchronized (mInitializeLock) {
+            if (mAdaptiveDecodingEnabled == adaptiveDecodingEnabled) {
+                return;
+            }
+            mAdaptiveDecodingEnabled = adaptiveDecodingEnabled;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setAdaptiveDecodingEnabled(adaptiveDecodingEnabled);
+                }
+            }
+        }
+    }
+
+    /**
+     * Region of interest tracking is currently enabled or not
+     *
+     * @see #setRoiTrackingEnabled
+     */
+    public boolean isRoiTrackingEnabled() {
+        return mRoiTrackingEnabled;
+    }
+
+    /**
+     * Enable or disable region of interest tracking in {@link ScanMode#CONTINUOUS} scan mode,
+     * {@code false} by default. If enabled, after a code was decoded, following frames are
+     * decoded from the padded window around it first, and from the whole frame rect
+     * only if that fails; window is dropped after the first miss.
+     * <br>
+     * Note that while the tracked code stays in the window, other codes aren't searched for.
+     */
+    public void setRoiTrackingEnabled(final boolean roiTrackingEnabled) {
+        synchronized (mInitializeLock) {
+            if (mRoiTrackingEnabled == roiTrackingEnabled) {
+                return;
+            }
+            mRoiTrackingEnabled = roiTrackingEnabled;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setRoiTrackingEnabled(isRoiTrackingActive());
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode racing is currently enabled or not
+     *
+     * @see #setDecodeRacingEnabled
+     */
+    public boolean isDecodeRacingEnabled() {
+        return mDecodeRacingEnabled;
+    }
+
+    /**
+     * Enable or disable decode racing, {@code false} by default. If enabled, normal and inverted
+     * polarity of a frame (and {@link com.google.zxing.DecodeHintType#TRY_HARDER} variant,
+     * if there's one more idle core) are decoded in parallel, the first success cancels the rest;
+     * inverted codes are decoded with lower latency then, at the cost of CPU and battery.
+     * <br>
+     * Racing workers only use cores, which aren't used by decoder threads and the main thread;
+     * if there are no such cores, racing has no effect.
+     *
+     * @see #setDecoderThreadsCount
+     */
+    public void setDecodeRacingEnabled(final boolean decodeRacingEnabled) {
+        synchronized (mInitializeLock) {
+            mDecodeRacingEnabled = decodeRacingEnabled;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setRacingEnabled(decodeRacingEnabled);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tiled search is currently enabled or not
+     *
+     * @see #setTiledSearchEnabled
+     */
+    public boolean isTiledSearchEnabled() {
+        return mTiledSearchEnabled;
+    }
+
+    /**
+     * Enable or disable tiled search, {@code false} by default. If enabled, frames, where
+     * nothing was found, are split into overlapping tiles, which are searched centre-outwards
+     * until the first code is found; codes, which are too small for the whole frame rect,
+     * can be decoded then, at the cost of CPU time of unsuccessful frames. Applies to frame
+     * rects of at least {@code 400} pixels on the smaller side.
+     * <br>
+     * Tiles are searched on idle cores in parallel, if there are any, see
+     * {@link #setDecodeRacingEnabled}; set {@link #setFrameTimeBudgetMillis frame time budget}
+     * to limit the search.
+     */
+    public void setTiledSearchEnabled(final boolean tiledSearchEnabled) {
+        synchronized (mInitializeLock) {
+            mTiledSearchEnabled = tiledSearchEnabled;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setTiledSearchEnabled(tiledSearchEnabled);
+                }
+            }
+        }
+    }
+
+    /**
+     * Metrics are currently enabled or not
+     *
+     * @see #setMetricsEnabled
+     */
+    public boolean isMetricsEnabled() {
+        return mMetrics != null;
+    }
+
+    /**
+     * Enable or disable decoding pipeline metrics, {@code false} by default.
+     * Disabling metrics discards collected values.
+     *
+     * @see #getMetrics()
+     * @see ScannerMetrics
+     */
+    public void setMetricsEnabled(final boolean metricsEnabled) {
+        synchronized (mInitializeLock) {
+            if (metricsEnabled == (mMetrics != null)) {
+                return;
+            }
+            final ScannerMetrics metrics = metricsEnabled ? new ScannerMetrics() : null;
+            mMetrics = metrics;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setMetrics(metrics);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get decoding pipeline metrics
+     *
+     * @return Metrics, if enabled, {@code null} otherwise
+     * @see #setMetricsEnabled
+     */
+    @Nullable
+    public ScannerMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Get current frame quality gate
+     *
+     * @see #setFrameQualityGate
+     */
+    @Nullable
+    public FrameQualityGate getFrameQualityGate() {
+        return mQualityGate;
+    }
+
+    /**
+     * Quality gate, which rejects dark, bright, blank or blurry frames before decoding,
+     * {@code null} by default (all frames are decoded)
+     *
+     * @see FrameQualityGate
+     */
+    public void setFrameQualityGate(@Nullable final FrameQualityGate qualityGate) {
+        synchronized (mInitializeLock) {
+            mQualityGate = qualityGate;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setQualityGate(qualityGate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get current code localizer
+     *
+     * @see #setCodeLocalizer
+     */
+    @Nullable
+    public CodeLocalizer getCodeLocalizer() {
+        return mCodeLocalizer;
+    }
+
+    /**
+     * Localizer, which finds regions of frames, that look like codes, so that these regions
+     * are decoded first, and the whole frame only if no code was found in them,
+     * {@code null} by default (the whole frame is decoded)
+     *
+     * @see CodeLocalizer
+     * @see #setLocalizeCallback
+     */
+    public void setCodeLocalizer(@Nullable final CodeLocalizer codeLocalizer) {
+        synchronized (mInitializeLock) {
+            mCodeLocalizer = codeLocalizer;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setCodeLocalizer(codeLocalizer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get current localize callback
+     *
+     * @see #setLocalizeCallback
+     */
+    @Nullable
+    public LocalizeCallback getLocalizeCallback() {
+        return mLocalizeCallback;
+    }
+
+    /**
+     * Callback, which receives regions of each frame found by the
+     * {@link #setCodeLocalizer code localizer} before they are decoded, for example,
+     * to show a hint while code isn't decoded yet; has no effect without code localizer
+     *
+     * @param localizeCallback Callback
+     * @see LocalizeCallback
+     */
+    public void setLocalizeCallback(@Nullable final LocalizeCallback localizeCallback) {
+        synchronized (mInitializeLock) {
+            mLocalizeCallback = localizeCallback;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setLocalizeCallback(localizeCallback);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get current binarizer chain
+     *
+     * @see #setBinarizerChain
+     */
+    @NonNull
+    public BinarizerChain getBinarizerChain() {
+        return mBinarizerChain;
+    }
+
+    /**
+     * Binarizers to decode frames with, {@link BinarizerChain#createDefault()} by default;
+     * for well-lit 1D codes {@link BinarizerChain#GLOBAL_HISTOGRAM} followed by
+     * {@link BinarizerChain#HYBRID} is faster
+     *
+     * @see BinarizerChain
+     */
+    public void setBinarizerChain(@NonNull final BinarizerChain binarizerChain) {
+        synchronized (mInitializeLock) {
+            mBinarizerChain = Objects.requireNonNull(binarizerChain);
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setBinarizerChain(binarizerChain);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get current try harder policy
+     *
+     * @see #setTryHarderPolicy
+     */
+    @Nullable
+    public TryHarderPolicy getTryHarderPolicy() {
+        return mTryHarderPolicy;
+    }
+
+    /**
+     * Policy, which decides, what frames are decoded with
+     * {@link com.google.zxing.DecodeHintType#TRY_HARDER} hint, {@code null} by default
+     * (frames are never decoded with it); other frames are decoded with the fast configuration
+     *
+     * @see TryHarderPolicy
+     */
+    public void setTryHarderPolicy(@Nullable final TryHarderPolicy tryHarderPolicy) {
+        synchronized (mInitializeLock) {
+            mTryHarderPolicy = tryHarderPolicy;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setTryHarderPolicy(tryHarderPolicy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get current frame difference filter
+     *
+     * @see #setFrameDifferenceFilter
      */
-    public void setErrorCallback(@Nullable final ErrorCallback errorCallback) {
-        mErrorCallback = errorCallback;
+    @Nullable
+    public FrameDifferenceFilter getFrameDifferenceFilter() {
+        return mDifferenceFilter;
     }
 
     /**
-     * Get current scan mode
+     * Filter, which skips frames nearly identical to the last one that failed to decode,
+     * {@code null} by default (all frames are decoded); filter is invalidated when
+     * preview starts and when auto focus completes
      *
-     * @see #setScanMode
+     * @see FrameDifferenceFilter
      */
-    @NonNull
-    public ScanMode getScanMode() {
-        return mScanMode;
+    public void setFrameDifferenceFilter(@Nullable final FrameDifferenceFilter differenceFilter) {
+        synchronized (mInitializeLock) {
+            mDifferenceFilter = differenceFilter;
+            if (mInitialized) {
+                final DecoderWrapper decoderWrapper = mDecoderWrapper;
+                if (decoderWrapper != null) {
+                    decoderWrapper.getDecoder().setDifferenceFilter(differenceFilter);
+                }
+            }
+        }
     }
 
     /**
-     * Scan mode, {@link ScanMode#SINGLE} by default
+     * Preview frames are currently being recorded or not
      *
-     * @see ScanMode
+     * @see #startFrameRecording
      */
-    public void setScanMode(@NonNull final ScanMode scanMode) {
-        mScanMode = Objects.requireNonNull(scanMode);
+    public boolean isFrameRecording() {
+        return mFrameRecorder != null;
     }
 
     /**
-     * Get current zoom value
+     * Start recording preview frames, which are passed to decoder, into the file.
+     * Raw frames are written along with their size, orientation, frame rect and timestamp,
+     * recording stops accepting frames when the file size limit is reached.
+     * Recorded frames can be replayed through the decoding pipeline on a plain JVM.
+     *
+     * @param file    File to write frames into, will be overwritten
+     * @param maxSize Maximum file size in bytes
+     * @throws IOException if file can't be created or mapped into memory
+     * @see #stopFrameRecording()
      */
-    public int getZoom() {
-        return mZoom;
+    public void startFrameRecording(@NonNull final File file, final long maxSize)
+            throws IOException {
+        Objects.requireNonNull(file);
+        final FrameRecorder frameRecorder = new FrameRecorder(file, maxSize);
+        final FrameRecorder previous;
+        synchronized (mInitializeLock) {
+            previous = mFrameRecorder;
+            mFrameRecorder = frameRecorder;
+        }
+        if (previous != null) {
+            previous.close();
+        }
     }
 
     /**
-     * Set current zoom value (between {@code 0} and {@link Parameters#getMaxZoom()}, if larger,
-     * max zoom value will be set
+     * Stop recording preview frames, if recording is active
+     *
+     * @see #startFrameRecording
      */
-    public void setZoom(final int zoom) {
-        if (zoom < 0) {
-            throw new IllegalArgumentException("Zoom value must be greater than or equal to zero");
-        }
+    public void stopFrameRecording() {
+        final FrameRecorder frameRecorder;
         synchronized (mInitializeLock) {
-            if (zoom != mZoom) {
-                mZoom = zoom;
-                if (mInitialized) {
-                    final DecoderWrapper decoderWrapper = mDecoderWrapper;
-                    if (decoderWrapper != null) {
-                        final Camera camera = decoderWrapper.getCamera();
-                        final Parameters parameters = camera.getParameters();
-                        Utils.setZoom(parameters, zoom);
-                        camera.setParameters(parameters);
-                    }
-                }
+            frameRecorder = mFrameRecorder;
+            mFrameRecorder = null;
+        }
+        if (frameRecorder != null) {
+            try {
+                frameRecorder.close();
+            } catch (final IOException ignored) {
             }
         }
-        mZoom = zoom;
     }
 
     /**
@@ -486,7 +1190,6 @@ public final class CodeScanner {
         }
     }
 
-    @SuppressWarnings("SuspiciousNameCombination")
     void performTouchFocus(final Rect viewFocusArea) {
         synchronized (mInitializeLock) {
             if (mInitialized && mPreviewActive && !mTouchFocusing) {
@@ -495,28 +1198,9 @@ public final class CodeScanner {
                     final DecoderWrapper decoderWrapper = mDecoderWrapper;
                     if (mPreviewActive && decoderWrapper != null &&
                             decoderWrapper.isAutoFocusSupported()) {
-                        final Point imageSize = decoderWrapper.getImageSize();
-                        int imageWidth = imageSize.getX();
-                        int imageHeight = imageSize.getY();
-                        final int orientation = decoderWrapper.getDisplayOrientation();
-                        if (orientation == 90 || orientation == 270) {
-                            final int width = imageWidth;
-                            imageWidth = imageHeight;
-                            imageHeight = width;
-                        }
-                        final Rect imageArea =
-                                Utils.getImageFrameRect(imageWidth, imageHeight, viewFocusArea,
-                                        decoderWrapper.getPreviewSize(),
-                                        decoderWrapper.getViewSize());
-                        final Camera camera = decoderWrapper.getCamera();
-                        camera.cancelAutoFocus();
-                        final Parameters parameters = camera.getParameters();
-                        Utils.configureFocusArea(parameters, imageArea, imageWidth, imageHeight,
-                                orientation);
-                        Utils.configureFocusModeForTouch(parameters);
-                        camera.setParameters(parameters);
-                        camera.autoFocus(mTouchFocusCallback);
                         mTouchFocusing = true;
+                        runOnCameraThread(new TouchFocusTask(decoderWrapper,
+                                decoderWrapper.getImageRect(viewFocusArea)));
                     }
                 } catch (final Exception ignored) {
                 }
@@ -524,6 +1208,14 @@ public final class CodeScanner {
         }
     }
 
+    /**
+     * Source of preview frames, if {@code null}, source for the current camera API is used,
+     * takes effect on the next scanner initialization
+     */
+    void setFrameSourceFactory(@Nullable final FrameSource.Factory frameSourceFactory) {
+        mFrameSourceFactory = frameSourceFactory;
+    }
+
     boolean isAutoFocusSupportedOrUnknown() {
         final DecoderWrapper wrapper = mDecoderWrapper;
         return wrapper == null || wrapper.isAutoFocusSupported();
@@ -544,43 +1236,89 @@ public final class CodeScanner {
         if (width > 0 && height > 0) {
             mInitialization = true;
             mInitializationRequested = false;
-            final InitializationThread initializationThread =
-                    new InitializationThread(width, height);
-            initializationThread.setUncaughtExceptionHandler(mExceptionHandler);
-            initializationThread.start();
+            getCameraHandler().post(new InitializationTask(width, height));
         } else {
             mInitializationRequested = true;
         }
     }
 
-    private void startPreviewInternal(final boolean internal) {
-        try {
-            final DecoderWrapper decoderWrapper = mDecoderWrapper;
-            if (decoderWrapper != null) {
-                final Camera camera = decoderWrapper.getCamera();
-                camera.setPreviewCallback(mPreviewCallback);
-                camera.setPreviewDisplay(mSurfaceHolder);
-                if (!internal && decoderWrapper.isFlashSupported() && mFlashEnabled) {
-                    setFlashEnabledInternal(true);
-                }
-                camera.startPreview();
-                mStoppingPreview = false;
-                mPreviewActive = true;
-                mSafeAutoFocusing = false;
-                mSafeAutoFocusAttemptsCount = 0;
-                if (decoderWrapper.isAutoFocusSupported() && mAutoFocusEnabled) {
-                    final Rect frameRect = mScannerView.getFrameRect();
-                    if (frameRect != null) {
-                        final Parameters parameters = camera.getParameters();
-                        Utils.configureDefaultFocusArea(parameters, decoderWrapper, frameRect);
-                        camera.setParameters(parameters);
-                    }
-                    if (mAutoFocusMode == AutoFocusMode.SAFE) {
-                        scheduleSafeAutoFocusTask();
-                    }
-                }
+    /**
+     * Camera is opened on a dedicated thread with a looper, so that preview frames
+     * and auto focus callbacks are delivered there instead of the main thread;
+     * camera is also controlled and released on this thread only
+     */
+    @NonNull
+    private Handler getCameraHandler() {
+        synchronized (mInitializeLock) {
+            Handler cameraHandler = mCameraHandler;
+            if (cameraHandler == null) {
+                final HandlerThread cameraThread = new HandlerThread("cs-camera");
+                cameraThread.setUncaughtExceptionHandler(mExceptionHandler);
+                cameraThread.start();
+                cameraHandler = new Handler(cameraThread.getLooper());
+                mCameraThread = cameraThread;
+                mCameraHandler = cameraHandler;
             }
-        } catch (final Exception ignored) {
+            return cameraHandler;
+        }
+    }
+
+    private void quitCameraThread() {
+        final HandlerThread cameraThread = mCameraThread;
+        if (cameraThread != null) {
+            mCameraThread = null;
+            mCameraHandler = null;
+            mReleasingCameraThread = cameraThread;
+            cameraThread.quitSafely();
+        }
+    }
+
+    /**
+     * Run the task on the camera thread, immediately if called on it
+     *
+     * @return {@code false} if there's no camera thread, {@code true} otherwise
+     */
+    private boolean runOnCameraThread(@NonNull final Runnable task) {
+        final Handler cameraHandler = mCameraHandler;
+        if (cameraHandler == null) {
+            return false;
+        }
+        if (cameraHandler.getLooper() == Looper.myLooper()) {
+            task.run();
+            return true;
+        }
+        return cameraHandler.post(task);
+    }
+
+    /**
+     * Wait until the camera thread runs the tasks, which were posted to it before
+     */
+    private void awaitCameraThread() {
+        final Handler cameraHandler = mCameraHandler;
+        if (cameraHandler == null || cameraHandler.getLooper() == Looper.myLooper()) {
+            return;
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        if (cameraHandler.post(new CountDownTask(latch))) {
+            try {
+                latch.await(CAMERA_THREAD_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void startPreviewInternal(final boolean internal) {
+        final DecoderWrapper decoderWrapper = mDecoderWrapper;
+        if (decoderWrapper != null) {
+            mStoppingPreview = false;
+            mPreviewActive = true;
+            mSafeAutoFocusing = false;
+            mSafeAutoFocusAttemptsCount = 0;
+            final Rect frameRect = mScannerView.getFrameRect();
+            runOnCameraThread(new StartPreviewTask(decoderWrapper,
+                    frameRect != null ? decoderWrapper.getImageRect(frameRect) : null,
+                    !internal && decoderWrapper.isFlashSupported() && mFlashEnabled));
         }
     }
 
@@ -591,20 +1329,11 @@ public final class CodeScanner {
     }
 
     private void stopPreviewInternal(final boolean internal) {
-        try {
-            final DecoderWrapper decoderWrapper = mDecoderWrapper;
-            if (decoderWrapper != null) {
-                final Camera camera = decoderWrapper.getCamera();
-                camera.cancelAutoFocus();
-                final Parameters parameters = camera.getParameters();
-                if (!internal && decoderWrapper.isFlashSupported() && mFlashEnabled) {
-                    Utils.setFlashMode(parameters, Parameters.FLASH_MODE_OFF);
-                }
-                camera.setParameters(parameters);
-                camera.setPreviewCallback(null);
-                camera.stopPreview();
-            }
-        } catch (final Exception ignored) {
+        final DecoderWrapper decoderWrapper = mDecoderWrapper;
+        if (decoderWrapper != null) {
+            runOnCameraThread(new StopPreviewCameraTask(decoderWrapper,
+                    !internal && decoderWrapper.isFlashSupported() && mFlashEnabled));
+            decoderWrapper.getDecoder().cancel();
         }
         mStoppingPreview = false;
         mPreviewActive = false;
@@ -624,63 +1353,46 @@ public final class CodeScanner {
         mStoppingPreview = false;
         mPreviewActive = false;
         mSafeAutoFocusing = false;
+        final Handler cameraHandler = mCameraHandler;
+        if (cameraHandler != null) {
+            cameraHandler.removeCallbacks(mSafeAutoFocusTask);
+        }
+        mSafeAutoFocusTaskScheduled = false;
+        stopFrameRecording();
         final DecoderWrapper decoderWrapper = mDecoderWrapper;
         if (decoderWrapper != null) {
             mDecoderWrapper = null;
-            decoderWrapper.release();
+            final Runnable releaseTask = new ReleaseTask(decoderWrapper);
+            if (!runOnCameraThread(releaseTask)) {
+                releaseTask.run();
+            }
         }
+        // Camera is released before the thread quits, next one waits for it
+        quitCameraThread();
     }
 
     private void setFlashEnabledInternal(final boolean flashEnabled) {
-        try {
-            final DecoderWrapper decoderWrapper = mDecoderWrapper;
-            if (decoderWrapper != null) {
-                final Camera camera = decoderWrapper.getCamera();
-                final Parameters parameters = camera.getParameters();
-                if (parameters == null) {
-                    return;
-                }
-                if (flashEnabled) {
-                    Utils.setFlashMode(parameters, Parameters.FLASH_MODE_TORCH);
-                } else {
-                    Utils.setFlashMode(parameters, Parameters.FLASH_MODE_OFF);
-                }
-                camera.setParameters(parameters);
-            }
-        } catch (final Exception ignored) {
+        final DecoderWrapper decoderWrapper = mDecoderWrapper;
+        if (decoderWrapper != null) {
+            runOnCameraThread(new FlashTask(decoderWrapper, flashEnabled));
         }
     }
 
     private void setAutoFocusEnabledInternal(final boolean autoFocusEnabled) {
-        try {
-            final DecoderWrapper decoderWrapper = mDecoderWrapper;
-            if (decoderWrapper != null) {
-                final Camera camera = decoderWrapper.getCamera();
-                camera.cancelAutoFocus();
-                mTouchFocusing = false;
-                final Parameters parameters = camera.getParameters();
-                final AutoFocusMode autoFocusMode = mAutoFocusMode;
-                if (autoFocusEnabled) {
-                    Utils.setAutoFocusMode(parameters, autoFocusMode);
-                } else {
-                    Utils.disableAutoFocus(parameters);
-                }
-                if (autoFocusEnabled) {
-                    final Rect frameRect = mScannerView.getFrameRect();
-                    if (frameRect != null) {
-                        Utils.configureDefaultFocusArea(parameters, decoderWrapper, frameRect);
-                    }
-                }
-                camera.setParameters(parameters);
-                if (autoFocusEnabled) {
-                    mSafeAutoFocusAttemptsCount = 0;
-                    mSafeAutoFocusing = false;
-                    if (autoFocusMode == AutoFocusMode.SAFE) {
-                        scheduleSafeAutoFocusTask();
-                    }
+        final DecoderWrapper decoderWrapper = mDecoderWrapper;
+        if (decoderWrapper != null) {
+            mTouchFocusing = false;
+            final AutoFocusMode autoFocusMode = mAutoFocusMode;
+            final Rect frameRect = autoFocusEnabled ? mScannerView.getFrameRect() : null;
+            runOnCameraThread(new AutoFocusTask(decoderWrapper, autoFocusEnabled, autoFocusMode,
+                    frameRect != null ? decoderWrapper.getImageRect(frameRect) : null));
+            if (autoFocusEnabled) {
+                mSafeAutoFocusAttemptsCount = 0;
+                mSafeAutoFocusing = false;
+                if (autoFocusMode == AutoFocusMode.SAFE) {
+                    scheduleSafeAutoFocusTask();
                 }
             }
-        } catch (final Exception ignored) {
         }
     }
 
@@ -697,9 +1409,7 @@ public final class CodeScanner {
             mSafeAutoFocusAttemptsCount++;
         } else {
             try {
-                final Camera camera = decoderWrapper.getCamera();
-                camera.cancelAutoFocus();
-                camera.autoFocus(mSafeAutoFocusCallback);
+                decoderWrapper.getFrameSource().autoFocus(null, mSafeAutoFocusCallback);
                 mSafeAutoFocusAttemptsCount = 0;
                 mSafeAutoFocusing = true;
             } catch (final Exception e) {
@@ -709,12 +1419,42 @@ public final class CodeScanner {
         scheduleSafeAutoFocusTask();
     }
 
+    private void invalidateDifferenceFilter() {
+        final FrameDifferenceFilter differenceFilter = mDifferenceFilter;
+        if (differenceFilter != null) {
+            differenceFilter.invalidate();
+        }
+    }
+
+    /**
+     * Deduplicator is only applied in {@link ScanMode#CONTINUOUS} scan mode
+     */
+    @Nullable
+    private ResultDeduplicator getActiveResultDeduplicator() {
+        return mScanMode == ScanMode.CONTINUOUS ? mResultDeduplicator : null;
+    }
+
+    /**
+     * Region of interest tracking is only applied in {@link ScanMode#CONTINUOUS} scan mode
+     */
+    private boolean isRoiTrackingActive() {
+        return mRoiTrackingEnabled && mScanMode == ScanMode.CONTINUOUS;
+    }
+
+    /**
+     * Safe auto focus runs on the camera thread, like the other camera calls and release,
+     * so that the camera can't be released between the state check and the focus call
+     */
     private void scheduleSafeAutoFocusTask() {
         if (mSafeAutoFocusTaskScheduled) {
             return;
         }
+        final Handler cameraHandler = mCameraHandler;
+        if (cameraHandler == null) {
+            return;
+        }
         mSafeAutoFocusTaskScheduled = true;
-        mMainThreadHandler.postDelayed(mSafeAutoFocusTask, mSafeAutoFocusInterval);
+        cameraHandler.postDelayed(mSafeAutoFocusTask, mSafeAutoFocusInterval);
     }
 
     private final class ScannerSizeListener implements CodeScannerView.SizeListener {
@@ -734,26 +1474,43 @@ public final class CodeScanner {
         }
     }
 
-    private final class PreviewCallback implements Camera.PreviewCallback {
+    private final class PreviewCallback implements FrameSource.FrameListener {
         @Override
-        public void onPreviewFrame(final byte[] data, final Camera camera) {
-            if (!mInitialized || mStoppingPreview || mScanMode == ScanMode.PREVIEW ||
-                    data == null) {
+        public void onFrame(@NonNull final FrameImage image, final long timestamp) {
+            final ScannerMetrics metrics = mMetrics;
+            if (metrics != null) {
+                metrics.increment(ScannerMetrics.Counter.FRAMES_RECEIVED);
+            }
+            if (!mInitialized || mStoppingPreview || mScanMode == ScanMode.PREVIEW) {
+                image.release();
                 return;
             }
             final DecoderWrapper decoderWrapper = mDecoderWrapper;
             if (decoderWrapper == null) {
-                return;
-            }
-            final Decoder decoder = decoderWrapper.getDecoder();
-            if (decoder.getState() != Decoder.State.IDLE) {
+                image.release();
                 return;
             }
             final Rect frameRect = mScannerView.getFrameRect();
             if (frameRect == null || frameRect.getWidth() < 1 || frameRect.getHeight() < 1) {
+                image.release();
+                return;
+            }
+            final FrameRecorder frameRecorder = mFrameRecorder;
+            if (frameRecorder != null) {
+                frameRecorder.record(image.getNv21(), decoderWrapper.getImageSize(),
+                        decoderWrapper.getDisplayOrientation(),
+                        decoderWrapper.shouldReverseHorizontal(),
+                        decoderWrapper.getImageRect(frameRect), timestamp);
+            }
+            final Decoder decoder = decoderWrapper.getDecoder();
+            if (decoder.getState() != Decoder.State.IDLE) {
+                if (metrics != null) {
+                    metrics.increment(ScannerMetrics.Counter.FRAMES_DROPPED);
+                }
+                image.release();
                 return;
             }
-            decoder.decode(new DecodeTask(data, decoderWrapper.getImageSize(),
+            decoder.decode(new DecodeTask(image, decoderWrapper.getImageSize(),
                     decoderWrapper.getPreviewSize(), decoderWrapper.getViewSize(), frameRect,
                     decoderWrapper.getDisplayOrientation(),
                     decoderWrapper.shouldReverseHorizontal()));
@@ -780,6 +1537,8 @@ public final class CodeScanner {
         @Override
         public void surfaceDestroyed(final SurfaceHolder holder) {
             stopPreviewInternalSafe();
+            // Camera must not draw on the surface after it's destroyed
+            awaitCameraThread();
         }
     }
 
@@ -791,6 +1550,9 @@ public final class CodeScanner {
                 if (scanMode == ScanMode.PREVIEW) {
                     return false;
                 } else if (scanMode == ScanMode.SINGLE) {
+                    if (mStoppingPreview) {
+                        return false;
+                    }
                     mStoppingPreview = true;
                     mMainThreadHandler.post(mStopPreviewTask);
                 }
@@ -799,98 +1561,93 @@ public final class CodeScanner {
         }
     }
 
-    private final class InitializationThread extends Thread {
+    private final class InitializationTask implements Runnable {
         private final int mWidth;
         private final int mHeight;
 
-        public InitializationThread(final int width, final int height) {
-            super("cs-init");
+        public InitializationTask(final int width, final int height) {
             mWidth = width;
             mHeight = height;
         }
 
         @Override
         public void run() {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            initialize();
+            if (!mInitialization || mCameraThread != Thread.currentThread()) {
+                return;
+            }
+            try {
+                initialize();
+            } catch (final Throwable e) {
+                mExceptionHandler.uncaughtException(Thread.currentThread(), e);
+            }
         }
 
+        @SuppressWarnings("SuspiciousNameCombination")
         private void initialize() {
-            Camera camera = null;
-            final CameraInfo cameraInfo = new CameraInfo();
-            final int cameraId = mCameraId;
-            if (cameraId == CAMERA_BACK || cameraId == CAMERA_FRONT) {
-                final int numberOfCameras = Camera.getNumberOfCameras();
-                final int facing = cameraId == CAMERA_BACK ? CameraInfo.CAMERA_FACING_BACK :
-                        CameraInfo.CAMERA_FACING_FRONT;
-                for (int i = 0; i < numberOfCameras; i++) {
-                    Camera.getCameraInfo(i, cameraInfo);
-                    if (cameraInfo.facing == facing) {
-                        camera = Camera.open(i);
-                        mCameraId = i;
-                        break;
-                    }
+            final HandlerThread releasingCameraThread = mReleasingCameraThread;
+            if (releasingCameraThread != null) {
+                // Previous camera has to be released before it's opened again
+                try {
+                    releasingCameraThread.join();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CodeScannerException(e);
                 }
-            } else {
-                camera = Camera.open(cameraId);
-                Camera.getCameraInfo(cameraId, cameraInfo);
-            }
-            if (camera == null) {
-                throw new CodeScannerException("Unable to access camera");
             }
-            final Parameters parameters = camera.getParameters();
-            if (parameters == null) {
-                throw new CodeScannerException("Unable to configure camera");
+            final FrameSource frameSource = createFrameSource();
+            try {
+                frameSource.open(mWidth, mHeight);
+            } catch (final RuntimeException e) {
+                frameSource.release();
+                throw e;
             }
-            final int orientation = Utils.getDisplayOrientation(mContext, cameraInfo);
-            final boolean portrait = Utils.isPortrait(orientation);
-            final Point imageSize =
-                    Utils.findSuitableImageSize(parameters, portrait ? mHeight : mWidth,
-                            portrait ? mWidth : mHeight);
+            mCameraId = frameSource.getCameraId();
+            final Point imageSize = frameSource.getImageSize();
             final int imageWidth = imageSize.getX();
             final int imageHeight = imageSize.getY();
-            parameters.setPreviewSize(imageWidth, imageHeight);
-            parameters.setPreviewFormat(ImageFormat.NV21);
+            final boolean portrait = Utils.isPortrait(frameSource.getOrientation());
             final Point previewSize = Utils.getPreviewSize(portrait ? imageHeight : imageWidth,
                     portrait ? imageWidth : imageHeight, mWidth, mHeight);
-            final List<String> focusModes = parameters.getSupportedFocusModes();
-            final boolean autoFocusSupported = focusModes != null &&
-                    (focusModes.contains(Parameters.FOCUS_MODE_AUTO) ||
-                            focusModes.contains(Parameters.FOCUS_MODE_CONTINUOUS_PICTURE));
-            if (!autoFocusSupported) {
+            final Point viewSize = new Point(mWidth, mHeight);
+            if (!frameSource.isAutoFocusSupported()) {
                 mAutoFocusEnabled = false;
             }
-            final Point viewSize = new Point(mWidth, mHeight);
-            if (autoFocusSupported && mAutoFocusEnabled) {
-                Utils.setAutoFocusMode(parameters, mAutoFocusMode);
-                final Rect frameRect = mScannerView.getFrameRect();
-                if (frameRect != null) {
-                    Utils.configureDefaultFocusArea(parameters, frameRect, previewSize, viewSize,
-                            imageWidth, imageHeight, orientation);
-                }
-            }
-            final List<String> flashModes = parameters.getSupportedFlashModes();
-            final boolean flashSupported =
-                    flashModes != null && flashModes.contains(Parameters.FLASH_MODE_TORCH);
-            if (!flashSupported) {
+            if (!frameSource.isFlashSupported()) {
                 mFlashEnabled = false;
             }
-            final int zoom = mZoom;
-            if (zoom != 0) {
-                Utils.setZoom(parameters, zoom);
-            }
-            Utils.configureFpsRange(parameters);
-            Utils.configureSceneMode(parameters);
-            Utils.configureVideoStabilization(parameters);
-            camera.setParameters(parameters);
-            camera.setDisplayOrientation(orientation);
             synchronized (mInitializeLock) {
                 final Decoder decoder =
                         new Decoder(mDecoderStateListener, mExceptionHandler, mFormats,
-                                mDecodeCallback);
-                mDecoderWrapper =
-                        new DecoderWrapper(camera, cameraInfo, decoder, imageSize, previewSize,
-                                viewSize, orientation, autoFocusSupported, flashSupported);
+                                mDecodeCallback, mDecoderThreadsCount,
+                                mPipelinedDecodingEnabled);
+                decoder.setMetrics(mMetrics);
+                decoder.setQualityGate(mQualityGate);
+                decoder.setCodeLocalizer(mCodeLocalizer);
+                decoder.setLocalizeCallback(mLocalizeCallback);
+                decoder.setBinarizerChain(mBinarizerChain);
+                decoder.setResultDeduplicator(getActiveResultDeduplicator());
+                decoder.setRoiTrackingEnabled(isRoiTrackingActive());
+                decoder.setMultiCallback(mMultiDecodeCallback);
+                decoder.setMaxResults(mMaxResultsPerFrame);
+                decoder.setTimeBudgetNanos(mFrameTimeBudgetMillis * 1000000L);
+                decoder.setDifferenceFilter(mDifferenceFilter);
+                decoder.setTryHarderPolicy(mTryHarderPolicy);
+                decoder.setRacingEnabled(mDecodeRacingEnabled);
+                decoder.setTiledSearchEnabled(mTiledSearchEnabled);
+                decoder.setDownsamplingEnabled(mDownsamplingEnabled);
+                decoder.setAdaptiveDecodingEnabled(mAdaptiveDecodingEnabled);
+                final DecoderWrapper decoderWrapper =
+                        new DecoderWrapper(frameSource, decoder, previewSize, viewSize);
+                final int zoom = mZoom;
+                if (zoom != 0) {
+                    frameSource.setZoom(zoom);
+                }
+                if (frameSource.isAutoFocusSupported() && mAutoFocusEnabled) {
+                    final Rect frameRect = mScannerView.getFrameRect();
+                    frameSource.setAutoFocusEnabled(true, mAutoFocusMode,
+                            frameRect != null ? decoderWrapper.getImageRect(frameRect) : null);
+                }
+                mDecoderWrapper = decoderWrapper;
                 decoder.start();
                 mInitialization = false;
                 mInitialized = true;
@@ -899,6 +1656,20 @@ public final class CodeScanner {
         }
     }
 
+    @NonNull
+    private FrameSource createFrameSource() {
+        final FrameSource.Factory frameSourceFactory = mFrameSourceFactory;
+        if (frameSourceFactory != null) {
+            return frameSourceFactory.create(mCameraId);
+        }
+        if (mCameraApi == CameraApi.CAMERA2 &&
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return new Camera2FrameSource(mContext, mCameraId);
+        } else {
+            return new CameraFrameSource(mContext, mCameraId);
+        }
+    }
+
     private final class ExceptionHandler implements Thread.UncaughtExceptionHandler {
 
         @Override
@@ -913,17 +1684,19 @@ public final class CodeScanner {
         }
     }
 
-    private final class TouchFocusCallback implements Camera.AutoFocusCallback {
+    private final class TouchFocusCallback implements FrameSource.FocusCallback {
         @Override
-        public void onAutoFocus(final boolean success, @NonNull final Camera camera) {
+        public void onFocused(final boolean success) {
             mTouchFocusing = false;
+            invalidateDifferenceFilter();
         }
     }
 
-    private final class SafeAutoFocusCallback implements Camera.AutoFocusCallback {
+    private final class SafeAutoFocusCallback implements FrameSource.FocusCallback {
         @Override
-        public void onAutoFocus(final boolean success, @NonNull final Camera camera) {
+        public void onFocused(final boolean success) {
             mSafeAutoFocusing = false;
+            invalidateDifferenceFilter();
         }
     }
 
@@ -944,6 +1717,172 @@ public final class CodeScanner {
         }
     }
 
+    private final class StartPreviewTask implements Runnable {
+        private final DecoderWrapper mWrapper;
+        private final Rect mFocusArea;
+        private final boolean mEnableFlash;
+
+        public StartPreviewTask(@NonNull final DecoderWrapper decoderWrapper,
+                @Nullable final Rect focusArea, final boolean enableFlash) {
+            mWrapper = decoderWrapper;
+            mFocusArea = focusArea;
+            mEnableFlash = enableFlash;
+        }
+
+        @Override
+        public void run() {
+            final DecoderWrapper decoderWrapper = mWrapper;
+            try {
+                final FrameSource frameSource = decoderWrapper.getFrameSource();
+                if (mEnableFlash) {
+                    frameSource.setFlashEnabled(true);
+                }
+                invalidateDifferenceFilter();
+                frameSource.startPreview(mSurfaceHolder, mPreviewCallback, mPreviewBuffersCount,
+                        decoderWrapper.getDecoder().getHeldFramesCount());
+                if (decoderWrapper.isAutoFocusSupported() && mAutoFocusEnabled) {
+                    frameSource.setAutoFocusEnabled(true, mAutoFocusMode, mFocusArea);
+                    if (mAutoFocusMode == AutoFocusMode.SAFE) {
+                        scheduleSafeAutoFocusTask();
+                    }
+                }
+            } catch (final Exception e) {
+                mPreviewActive = false;
+            }
+        }
+    }
+
+    private static final class StopPreviewCameraTask implements Runnable {
+        private final DecoderWrapper mWrapper;
+        private final boolean mDisableFlash;
+
+        public StopPreviewCameraTask(@NonNull final DecoderWrapper decoderWrapper,
+                final boolean disableFlash) {
+            mWrapper = decoderWrapper;
+            mDisableFlash = disableFlash;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final FrameSource frameSource = mWrapper.getFrameSource();
+                if (mDisableFlash) {
+                    frameSource.setFlashEnabled(false);
+                }
+                frameSource.stopPreview();
+            } catch (final Exception ignored) {
+            }
+        }
+    }
+
+    private static final class FlashTask implements Runnable {
+        private final DecoderWrapper mWrapper;
+        private final boolean mFlashEnabled;
+
+        public FlashTask(@NonNull final DecoderWrapper decoderWrapper,
+                final boolean flashEnabled) {
+            mWrapper = decoderWrapper;
+            mFlashEnabled = flashEnabled;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mWrapper.getFrameSource().setFlashEnabled(mFlashEnabled);
+            } catch (final Exception ignored) {
+            }
+        }
+    }
+
+    private static final class AutoFocusTask implements Runnable {
+        private final DecoderWrapper mWrapper;
+        private final boolean mAutoFocusEnabled;
+        private final AutoFocusMode mAutoFocusMode;
+        private final Rect mFocusArea;
+
+        public AutoFocusTask(@NonNull final DecoderWrapper decoderWrapper,
+                final boolean autoFocusEnabled, @NonNull final AutoFocusMode autoFocusMode,
+                @Nullable final Rect focusArea) {
+            mWrapper = decoderWrapper;
+            mAutoFocusEnabled = autoFocusEnabled;
+            mAutoFocusMode = autoFocusMode;
+            mFocusArea = focusArea;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mWrapper.getFrameSource()
+                        .setAutoFocusEnabled(mAutoFocusEnabled, mAutoFocusMode, mFocusArea);
+            } catch (final Exception ignored) {
+            }
+        }
+    }
+
+    private final class TouchFocusTask implements Runnable {
+        private final DecoderWrapper mWrapper;
+        private final Rect mFocusArea;
+
+        public TouchFocusTask(@NonNull final DecoderWrapper decoderWrapper,
+                @NonNull final Rect focusArea) {
+            mWrapper = decoderWrapper;
+            mFocusArea = focusArea;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mWrapper.getFrameSource().autoFocus(mFocusArea, mTouchFocusCallback);
+            } catch (final Exception e) {
+                mTouchFocusing = false;
+            }
+        }
+    }
+
+    private static final class ZoomTask implements Runnable {
+        private final DecoderWrapper mWrapper;
+        private final int mZoom;
+
+        public ZoomTask(@NonNull final DecoderWrapper decoderWrapper, final int zoom) {
+            mWrapper = decoderWrapper;
+            mZoom = zoom;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mWrapper.getFrameSource().setZoom(mZoom);
+            } catch (final Exception ignored) {
+            }
+        }
+    }
+
+    private static final class ReleaseTask implements Runnable {
+        private final DecoderWrapper mWrapper;
+
+        public ReleaseTask(@NonNull final DecoderWrapper decoderWrapper) {
+            mWrapper = decoderWrapper;
+        }
+
+        @Override
+        public void run() {
+            mWrapper.release();
+        }
+    }
+
+    private static final class CountDownTask implements Runnable {
+        private final CountDownLatch mLatch;
+
+        public CountDownTask(@NonNull final CountDownLatch latch) {
+            mLatch = latch;
+        }
+
+        @Override
+        public void run() {
+            mLatch.countDown();
+        }
+    }
+
     private final class FinishInitializationTask implements Runnable {
         private final Point mPreviewSize;
 
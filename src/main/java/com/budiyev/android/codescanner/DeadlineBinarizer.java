@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Binarizer wrapper, which stops binarizing once the deadline is expired, readers treat
+ * that as rows or images without a code and finish quickly
+ */
+final class DeadlineBinarizer extends Binarizer {
+
+    private final Binarizer mBinarizer;
+    private final DecodeDeadline mDeadline;
+
+    public DeadlineBinarizer(@NonNull final Binarizer binarizer,
+            @NonNull final DecodeDeadline deadline) {
+        super(binarizer.getLuminanceSource());
+        mBinarizer = binarizer;
+        mDeadline = deadline;
+    }
+
+    @Override
+    public BitArray getBlackRow(final int y, final BitArray row) throws NotFoundException {
+        if (mDeadline.isExpired()) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        return mBinarizer.getBlackRow(y, row);
+    }
+
+    @Override
+    public BitMatrix getBlackMatrix() throws NotFoundException {
+        if (mDeadline.isExpired()) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        return mBinarizer.getBlackMatrix();
+    }
+
+    @Override
+    public Binarizer createBinarizer(final LuminanceSource source) {
+        return new DeadlineBinarizer(mBinarizer.createBinarizer(source), mDeadline);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.zxing.Result;
+
+/**
+ * Reader, buffers and settings, which decode task uses; confined to a single decoding thread,
+ * settings are updated before each task
+ */
+final class DecodeContext {
+
+    private final FormatReader mReader;
+    private final LumaBuffer mLumaBuffer;
+    private final LumaBuffer mDownsampleBuffer;
+    private final byte[] mSignature;
+    private final DecodeDeadline mDeadline;
+    private ScannerMetrics mMetrics;
+    private FrameQualityGate mQualityGate;
+    private FrameDifferenceFilter mDifferenceFilter;
+    private DownsampleEstimator mDownsampleEstimator;
+    private DecodeStrategy mDecodeStrategy;
+    private RoiTracker mRoiTracker;
+    private TryHarderPolicy mTryHarderPolicy;
+    private DecodeRace mDecodeRace;
+    private TiledSearch mTiledSearch;
+    private CodeLocalizer mCodeLocalizer;
+    private LocalizeCallback mLocalizeCallback;
+    private BinarizerChain mBinarizerChain;
+    private int mMaxResults;
+    private List<Result> mResults;
+    private long mTimeBudgetNanos;
+
+    public DecodeContext(@NonNull final FormatReader reader) {
+        mReader = reader;
+        mLumaBuffer = new LumaBuffer();
+        mDownsampleBuffer = new LumaBuffer();
+        mSignature = new byte[FrameDifferenceFilter.SIGNATURE_LENGTH];
+        mBinarizerChain = BinarizerChain.createDefault();
+        mMaxResults = 1;
+        mDeadline = new DecodeDeadline();
+        reader.setDeadline(mDeadline);
+    }
+
+    @NonNull
+    public FormatReader getReader() {
+        return mReader;
+    }
+
+    @NonNull
+    public LumaBuffer getLumaBuffer() {
+        return mLumaBuffer;
+    }
+
+    @NonNull
+    public LumaBuffer getDownsampleBuffer() {
+        return mDownsampleBuffer;
+    }
+
+    /**
+     * Buffer for the frame signature
+     *
+     * @see FrameDifferenceFilter
+     */
+    @NonNull
+    public byte[] getSignature() {
+        return mSignature;
+    }
+
+    /**
+     * Deadline of the current frame, which reader checks
+     */
+    @NonNull
+    public DecodeDeadline getDeadline() {
+        return mDeadline;
+    }
+
+    /**
+     * Time budget of a frame in nanoseconds, {@code 0} for unlimited
+     */
+    public long getTimeBudgetNanos() {
+        return mTimeBudgetNanos;
+    }
+
+    public void setTimeBudgetNanos(final long timeBudgetNanos) {
+        mTimeBudgetNanos = timeBudgetNanos;
+    }
+
+    @Nullable
+    public ScannerMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    public void setMetrics(@Nullable final ScannerMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    @Nullable
+    public FrameQualityGate getQualityGate() {
+        return mQualityGate;
+    }
+
+    public void setQualityGate(@Nullable final FrameQualityGate qualityGate) {
+        mQualityGate = qualityGate;
+    }
+
+    @Nullable
+    public FrameDifferenceFilter getDifferenceFilter() {
+        return mDifferenceFilter;
+    }
+
+    public void setDifferenceFilter(@Nullable final FrameDifferenceFilter differenceFilter) {
+        mDifferenceFilter = differenceFilter;
+    }
+
+    /**
+     * Estimator of the downsample factor, {@code null} if frames are decoded
+     * in full resolution only
+     */
+    @Nullable
+    public DownsampleEstimator getDownsampleEstimator() {
+        return mDownsampleEstimator;
+    }
+
+    public void setDownsampleEstimator(@Nullable final DownsampleEstimator downsampleEstimator) {
+        mDownsampleEstimator = downsampleEstimator;
+    }
+
+    /**
+     * Adaptive order of decoding attempts, {@code null} if the fixed order is used
+     */
+    @Nullable
+    public DecodeStrategy getDecodeStrategy() {
+        return mDecodeStrategy;
+    }
+
+    public void setDecodeStrategy(@Nullable final DecodeStrategy decodeStrategy) {
+        mDecodeStrategy = decodeStrategy;
+    }
+
+    /**
+     * Tracker of the last decoded code, {@code null} if the whole frame rect is always decoded
+     */
+    @Nullable
+    public RoiTracker getRoiTracker() {
+        return mRoiTracker;
+    }
+
+    public void setRoiTracker(@Nullable final RoiTracker roiTracker) {
+        mRoiTracker = roiTracker;
+    }
+
+    /**
+     * Policy of {@link com.google.zxing.DecodeHintType#TRY_HARDER} escalation, {@code null}
+     * if frames are always decoded with the fast configuration
+     */
+    @Nullable
+    public TryHarderPolicy getTryHarderPolicy() {
+        return mTryHarderPolicy;
+    }
+
+    public void setTryHarderPolicy(@Nullable final TryHarderPolicy tryHarderPolicy) {
+        mTryHarderPolicy = tryHarderPolicy;
+    }
+
+    /**
+     * Race of decoding variants on idle cores, {@code null} if variants are decoded
+     * on the decoding thread one after another
+     */
+    @Nullable
+    public DecodeRace getDecodeRace() {
+        return mDecodeRace;
+    }
+
+    public void setDecodeRace(@Nullable final DecodeRace decodeRace) {
+        mDecodeRace = decodeRace;
+    }
+
+    /**
+     * Search of frame rect tiles for small codes, {@code null} if tiles aren't searched
+     */
+    @Nullable
+    public TiledSearch getTiledSearch() {
+        return mTiledSearch;
+    }
+
+    public void setTiledSearch(@Nullable final TiledSearch tiledSearch) {
+        mTiledSearch = tiledSearch;
+    }
+
+    /**
+     * Localizer of regions to decode, {@code null} if the whole frame rect is decoded
+     */
+    @Nullable
+    public CodeLocalizer getCodeLocalizer() {
+        return mCodeLocalizer;
+    }
+
+    public void setCodeLocalizer(@Nullable final CodeLocalizer codeLocalizer) {
+        mCodeLocalizer = codeLocalizer;
+    }
+
+    @Nullable
+    public LocalizeCallback getLocalizeCallback() {
+        return mLocalizeCallback;
+    }
+
+    public void setLocalizeCallback(@Nullable final LocalizeCallback localizeCallback) {
+        mLocalizeCallback = localizeCallback;
+    }
+
+    @NonNull
+    public BinarizerChain getBinarizerChain() {
+        return mBinarizerChain;
+    }
+
+    public void setBinarizerChain(@NonNull final BinarizerChain binarizerChain) {
+        mBinarizerChain = binarizerChain;
+    }
+
+    /**
+     * Maximum number of codes to decode per frame, multiple codes are decoded if greater than 1
+     */
+    public int getMaxResults() {
+        return mMaxResults;
+    }
+
+    public void setMaxResults(final int maxResults) {
+        mMaxResults = maxResults;
+    }
+
+    /**
+     * Results of the last decoded frame, closest to the frame centre first, {@code null}
+     * if multiple codes weren't decoded
+     */
+    @Nullable
+    public List<Result> getResults() {
+        return mResults;
+    }
+
+    public void setResults(@Nullable final List<Result> results) {
+        mResults = results;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Time budget of a frame decoding, which is checked cooperatively between decoding attempts
+ * and binarized rows; can also be cancelled from any thread. Started before decoding,
+ * checked by a single decoding thread.
+ */
+final class DecodeDeadline {
+
+    private volatile boolean mCancelled;
+    private DecodeDeadline mParent;
+    private boolean mLimited;
+    private long mDeadlineNanos;
+
+    /**
+     * Start the budget for the next frame, resets cancellation
+     *
+     * @param budgetNanos Budget in nanoseconds, {@code 0} for unlimited
+     */
+    public void start(final long budgetNanos) {
+        mParent = null;
+        mLimited = budgetNanos > 0L;
+        mDeadlineNanos = System.nanoTime() + budgetNanos;
+        mCancelled = false;
+    }
+
+    /**
+     * Start the budget, which ends together with the specified one and is cancelled with it,
+     * including the cancellation, which happened before
+     */
+    public void start(@NonNull final DecodeDeadline deadline) {
+        mParent = deadline;
+        mLimited = deadline.mLimited;
+        mDeadlineNanos = deadline.mDeadlineNanos;
+        mCancelled = deadline.isCancelled();
+    }
+
+    /**
+     * Abandon the current frame
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        final DecodeDeadline parent = mParent;
+        return mCancelled || parent != null && parent.isCancelled();
+    }
+
+    /**
+     * Whether the budget is exceeded or the frame is cancelled
+     */
+    public boolean isExpired() {
+        return isCancelled() || mLimited && System.nanoTime() - mDeadlineNanos > 0L;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+
+/**
+ * Races decoding variants of the same luma on idle cores: normal polarity is decoded
+ * on the calling thread, while inverted polarity and, if one more worker is idle,
+ * {@link com.google.zxing.DecodeHintType#TRY_HARDER} variant (which also tries one-dimensional
+ * codes rotated by 90 degrees) are decoded by workers. The first success wins, the rest
+ * are cancelled; cancelled workers become idle again as soon as they notice cancellation.
+ * If there's no idle worker, luma is decoded on the calling thread as usual. Thread safe.
+ */
+final class DecodeRace {
+
+    private final ExecutorService mExecutor;
+    private final ConcurrentLinkedQueue<Lane> mIdleLanes;
+    private final Lane[] mLanes;
+    private volatile List<BarcodeFormat> mFormats;
+
+    /**
+     * @param workersCount Number of workers, should not exceed number of idle cores
+     */
+    public DecodeRace(@NonNull final List<BarcodeFormat> formats, final int workersCount) {
+        mFormats = formats;
+        mExecutor = new ThreadPoolExecutor(workersCount, workersCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory("cs-race-"));
+        mIdleLanes = new ConcurrentLinkedQueue<>();
+        mLanes = new Lane[workersCount];
+        for (int i = 0; i < workersCount; i++) {
+            final Lane lane = new Lane();
+            mLanes[i] = lane;
+            mIdleLanes.offer(lane);
+        }
+    }
+
+    public void setFormats(@NonNull final List<BarcodeFormat> formats) {
+        mFormats = formats;
+    }
+
+    /**
+     * Decode luma with the reader, binarizer chain, strategy and deadline of the context
+     */
+    @NonNull
+    public Result decode(@NonNull final DecodeContext context,
+            @NonNull final LuminanceSource source) throws ReaderException {
+        final FormatReader reader = context.getReader();
+        final BinarizerChain binarizerChain = context.getBinarizerChain();
+        final DecodeStrategy strategy = context.getDecodeStrategy();
+        final ScannerMetrics metrics = context.getMetrics();
+        final Lane invertedLane = mIdleLanes.poll();
+        if (invertedLane == null) {
+            return reader.decode(source, binarizerChain, strategy, metrics);
+        }
+        final Lane tryHarderLane = reader.isTryHarder() ? null : mIdleLanes.poll();
+        final Race race = new Race(context.getDeadline(), tryHarderLane != null ? 2 : 1);
+        if (metrics != null) {
+            metrics.increment(ScannerMetrics.Counter.FRAMES_RACED);
+        }
+        // All lanes are added before any of them starts, so that the winner cancels all others
+        invertedLane.prepare(race, source, binarizerChain, strategy,
+                FormatReader.POLARITY_INVERTED, reader.isTryHarder());
+        if (tryHarderLane != null) {
+            tryHarderLane.prepare(race, source, binarizerChain, strategy,
+                    FormatReader.POLARITY_NORMAL, true);
+        }
+        execute(invertedLane, race);
+        if (tryHarderLane != null) {
+            execute(tryHarderLane, race);
+        }
+        reader.setPolarity(FormatReader.POLARITY_NORMAL);
+        try {
+            race.win(reader.decode(source, binarizerChain, strategy, metrics), false);
+        } catch (final ReaderException ignored) {
+        } finally {
+            reader.setPolarity(FormatReader.POLARITY_ANY);
+        }
+        final Result result = race.await();
+        if (result == null) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        if (metrics != null && race.isWonByWorker()) {
+            metrics.increment(ScannerMetrics.Counter.RACE_WINS);
+        }
+        return result;
+    }
+
+    /**
+     * Cancel variants, which are being decoded by workers
+     */
+    public void cancel() {
+        for (final Lane lane : mLanes) {
+            lane.mDeadline.cancel();
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        // Submitted lanes still run, so that callers are released
+        mExecutor.shutdown();
+    }
+
+    private void execute(@NonNull final Lane lane, @NonNull final Race race) {
+        try {
+            mExecutor.execute(lane);
+        } catch (final RejectedExecutionException e) {
+            lane.finish(race);
+        }
+    }
+
+    /**
+     * Variants of a single frame
+     */
+    private static final class Race {
+        private final AtomicReference<Result> mResult = new AtomicReference<>();
+        private final Lane[] mLanes;
+        private final DecodeDeadline mDeadline;
+        private final AtomicInteger mRunningLanesCount;
+        private final CountDownLatch mFinishedLatch = new CountDownLatch(1);
+        private volatile boolean mWonByWorker;
+        private int mLanesCount;
+
+        public Race(@NonNull final DecodeDeadline deadline, final int lanesCount) {
+            mDeadline = deadline;
+            mLanes = new Lane[lanesCount];
+            mRunningLanesCount = new AtomicInteger(lanesCount);
+        }
+
+        @NonNull
+        public DecodeDeadline getDeadline() {
+            return mDeadline;
+        }
+
+        public void add(@NonNull final Lane lane) {
+            mLanes[mLanesCount++] = lane;
+        }
+
+        /**
+         * Cancel all other variants, if the result is the first one; results, which come
+         * after the race is finished, are ignored
+         */
+        public void win(@NonNull final Result result, final boolean worker) {
+            if (mResult.compareAndSet(null, result)) {
+                mWonByWorker = worker;
+                mDeadline.cancel();
+                for (final Lane lane : mLanes) {
+                    lane.mDeadline.cancel();
+                }
+                mFinishedLatch.countDown();
+            }
+        }
+
+        public void onLaneFinished() {
+            if (mRunningLanesCount.decrementAndGet() == 0) {
+                mFinishedLatch.countDown();
+            }
+        }
+
+        /**
+         * Wait for the first success or for all workers to fail
+         *
+         * @return Result or {@code null} if all variants failed
+         */
+        @Nullable
+        public Result await() {
+            boolean interrupted = false;
+            for (; ; ) {
+                try {
+                    mFinishedLatch.await();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return mResult.get();
+        }
+
+        public boolean isWonByWorker() {
+            return mWonByWorker;
+        }
+    }
+
+    /**
+     * Reader and deadline of a worker variant, used by a single race at a time
+     */
+    private final class Lane implements Runnable {
+        private final FormatReader mReader;
+        private final DecodeDeadline mDeadline;
+        private List<BarcodeFormat> mAppliedFormats;
+        private Race mRace;
+        private LuminanceSource mSource;
+        private BinarizerChain mBinarizerChain;
+        private DecodeStrategy mStrategy;
+        private int mPolarity;
+        private boolean mTryHarder;
+
+        public Lane() {
+            mReader = new FormatReader();
+            mDeadline = new DecodeDeadline();
+            mReader.setDeadline(mDeadline);
+        }
+
+        public void prepare(@NonNull final Race race, @NonNull final LuminanceSource source,
+                @NonNull final BinarizerChain binarizerChain,
+                @Nullable final DecodeStrategy strategy, final int polarity,
+                final boolean tryHarder) {
+            mRace = race;
+            mSource = source;
+            mBinarizerChain = binarizerChain;
+            mStrategy = strategy;
+            mPolarity = polarity;
+            mTryHarder = tryHarder;
+            mDeadline.start(race.getDeadline());
+            race.add(this);
+        }
+
+        @Override
+        public void run() {
+            final Race race = mRace;
+            try {
+                final List<BarcodeFormat> formats = mFormats;
+                if (formats != mAppliedFormats) {
+                    mReader.setFormats(formats);
+                    mAppliedFormats = formats;
+                }
+                final FormatReader reader = mReader;
+                reader.setPolarity(mPolarity);
+                reader.setTryHarder(mTryHarder);
+                race.win(reader.decode(mSource, mBinarizerChain, mStrategy, null), true);
+            } catch (final ReaderException ignored) {
+            } finally {
+                finish(race);
+            }
+        }
+
+        public void finish(@NonNull final Race race) {
+            mRace = null;
+            mSource = null;
+            mStrategy = null;
+            mIdleLanes.offer(this);
+            race.onLaneFinished();
+        }
+    }
+}
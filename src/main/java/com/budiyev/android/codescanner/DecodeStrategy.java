@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Adaptive order of decoding attempts (binarizer and polarity) and reader families,
+ * learned from recent successes; shared between decoder threads.
+ * <br>
+ * Each success decays all scores of its dimension and adds one to the winner's score,
+ * so the order follows what is actually being scanned. Every {@link #EXPLORATION_INTERVAL}
+ * order is reversed to give the least successful entries a chance to win.
+ */
+final class DecodeStrategy {
+
+    /**
+     * Multiplier, which is applied to all scores of a dimension on each success
+     */
+    private static final float DECAY = 0.9f;
+
+    /**
+     * Each n-th order is an exploration one
+     */
+    private static final int EXPLORATION_INTERVAL = 32;
+
+    private final float[] mFamilyScores;
+    private float[] mAttemptScores;
+    private int mOrdersCount;
+
+    public DecodeStrategy(final int familiesCount) {
+        mFamilyScores = new float[familiesCount];
+        mAttemptScores = new float[0];
+    }
+
+    /**
+     * Fill the arrays with indices of attempts and reader families in the order
+     * they should be tried
+     *
+     * @param attempts Array of attempts count length, attempt scores are reset
+     *                 if the count has changed
+     * @param families Array of families count length
+     * @return Whether the order is an exploration one
+     */
+    public synchronized boolean order(@NonNull final int[] attempts,
+            @NonNull final int[] families) {
+        if (mAttemptScores.length != attempts.length) {
+            mAttemptScores = new float[attempts.length];
+        }
+        final boolean exploration = ++mOrdersCount % EXPLORATION_INTERVAL == 0;
+        order(mAttemptScores, attempts, exploration);
+        order(mFamilyScores, families, exploration);
+        return exploration;
+    }
+
+    /**
+     * Record the successful attempt and reader family
+     */
+    public synchronized void onDecoded(final int attempt, final int family) {
+        if (attempt < mAttemptScores.length) {
+            reward(mAttemptScores, attempt);
+        }
+        reward(mFamilyScores, family);
+    }
+
+    private static void order(@NonNull final float[] scores, @NonNull final int[] order,
+            final boolean exploration) {
+        final int length = scores.length;
+        for (int i = 0; i < length; i++) {
+            final int index = exploration ? length - 1 - i : i;
+            final float score = scores[index];
+            int j = i;
+            for (; j > 0; j--) {
+                final float previous = scores[order[j - 1]];
+                if (exploration ? previous <= score : previous >= score) {
+                    break;
+                }
+                order[j] = order[j - 1];
+            }
+            order[j] = index;
+        }
+    }
+
+    private static void reward(@NonNull final float[] scores, final int index) {
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] *= DECAY;
+        }
+        scores[index] += 1f;
+    }
+}
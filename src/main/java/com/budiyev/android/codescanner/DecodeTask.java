@@ -23,24 +23,31 @@
  */
 package com.budiyev.android.codescanner;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
 import com.google.zxing.PlanarYUVLuminanceSource;
 import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
 
 final class DecodeTask {
 
-    private final byte[] mImage;
+    private final FrameImage mImage;
     private final Point mImageSize;
     private final Point mPreviewSize;
     private final Point mViewSize;
     private final Rect mViewFrameRect;
     private final int mOrientation;
     private final boolean mReverseHorizontal;
+    private long mSequence;
 
-    public DecodeTask(@NonNull final byte[] image, @NonNull final Point imageSize,
+    public DecodeTask(@NonNull final FrameImage image, @NonNull final Point imageSize,
             @NonNull final Point previewSize, @NonNull final Point viewSize,
             @NonNull final Rect viewFrameRect, final int orientation,
             final boolean reverseHorizontal) {
@@ -53,28 +60,601 @@ final class DecodeTask {
         mReverseHorizontal = reverseHorizontal;
     }
 
+    public long getSequence() {
+        return mSequence;
+    }
+
+    public void setSequence(final long sequence) {
+        mSequence = sequence;
+    }
+
+    /**
+     * Decode the frame within the time budget of the context
+     */
     @Nullable
-    @SuppressWarnings("SuspiciousNameCombination")
-    public Result decode(@NonNull final MultiFormatReader reader) throws ReaderException {
-        int imageWidth = mImageSize.getX();
-        int imageHeight = mImageSize.getY();
-        final int orientation = mOrientation;
-        final byte[] image = Utils.rotateYuv(mImage, imageWidth, imageHeight, orientation);
-        if (orientation == 90 || orientation == 270) {
-            final int width = imageWidth;
-            imageWidth = imageHeight;
-            imageHeight = width;
+    public Result decode(@NonNull final DecodeContext context) throws ReaderException {
+        context.getDeadline().start(context.getTimeBudgetNanos());
+        Result result = null;
+        try {
+            result = decodeFrame(context);
+            return result;
+        } finally {
+            onFinished(context, result);
         }
+    }
+
+    /**
+     * Crop and rotate the frame rect into the prepared frame and check it, first stage of
+     * the pipelined decoding; doesn't use a reader, so it can run while previous frame
+     * is being decoded on another thread
+     *
+     * @return {@code true} if prepared frame should be decoded, {@code false} otherwise
+     * @see #decodePrepared
+     */
+    public boolean prepare(@NonNull final PreparedFrame frame,
+            @Nullable final ScannerMetrics metrics, @Nullable final FrameQualityGate qualityGate,
+            @Nullable final FrameDifferenceFilter differenceFilter) {
+        final Rect frameRect = getFrameRect();
+        if (frameRect == null) {
+            return false;
+        }
+        long start = metrics != null ? System.nanoTime() : 0L;
+        final byte[] luma = frame.obtainLuma(frameRect, mReverseHorizontal);
+        mImage.cropRotateLuma(mImageSize.getX(), mImageSize.getY(), mOrientation, frameRect,
+                mReverseHorizontal, luma);
+        if (metrics != null) {
+            final long time = System.nanoTime();
+            metrics.record(ScannerMetrics.Stage.ROTATE, time - start);
+            start = time;
+        }
+        frame.setSequence(mSequence);
+        return accept(luma, frameRect.getWidth(), frameRect.getHeight(), metrics, start,
+                qualityGate, differenceFilter, frame.getSignature());
+    }
+
+    /**
+     * Decode the prepared frame within the time budget of the context, second stage
+     * of the pipelined decoding; quality gate and difference filter of the context
+     * aren't checked again
+     *
+     * @see #prepare
+     */
+    @Nullable
+    public static Result decodePrepared(@NonNull final DecodeContext context,
+            @NonNull final PreparedFrame frame) throws ReaderException {
+        context.getDeadline().start(context.getTimeBudgetNanos());
+        Result result = null;
+        try {
+            context.setResults(null);
+            final Rect frameRect = frame.getFrameRect();
+            final int frameWidth = frameRect.getWidth();
+            final byte[] luma = frame.getLuma();
+            final boolean reverseHorizontal = frame.shouldReverseHorizontal();
+            final RoiTracker roiTracker =
+                    context.getMaxResults() > 1 ? null : context.getRoiTracker();
+            if (roiTracker != null) {
+                final Rect window = roiTracker.getWindow(frameRect);
+                if (window != null) {
+                    final ScannerMetrics metrics = context.getMetrics();
+                    final long start = metrics != null ? System.nanoTime() : 0L;
+                    final int width = window.getWidth();
+                    final int height = window.getHeight();
+                    final byte[] windowLuma = context.getLumaBuffer().obtain(width * height);
+                    Utils.cropLuma(luma, frameWidth,
+                            getWindowOffsetX(frameRect, window, reverseHorizontal),
+                            window.getTop() - frameRect.getTop(), width, height, windowLuma);
+                    if (metrics != null) {
+                        metrics.record(ScannerMetrics.Stage.CROP, System.nanoTime() - start);
+                    }
+                    result = decodeWindow(context, roiTracker, frameRect, window,
+                            reverseHorizontal, windowLuma);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+            }
+            result = decodeChecked(context, luma, frameWidth, frameRect.getHeight(), frameRect,
+                    reverseHorizontal, roiTracker, context.getDifferenceFilter(),
+                    frame.getSignature());
+            return result;
+        } finally {
+            onFinished(context, result);
+        }
+    }
+
+    /**
+     * Count the frame as timed out, if it wasn't decoded in time and wasn't cancelled
+     */
+    private static void onFinished(@NonNull final DecodeContext context,
+            @Nullable final Result result) {
+        final DecodeDeadline deadline = context.getDeadline();
+        if (result == null && !deadline.isCancelled() && deadline.isExpired()) {
+            final ScannerMetrics metrics = context.getMetrics();
+            if (metrics != null) {
+                metrics.increment(ScannerMetrics.Counter.FRAMES_TIMED_OUT);
+            }
+        }
+    }
+
+    /**
+     * @return Frame rect in image coordinates, {@code null} if it's empty
+     */
+    @Nullable
+    @SuppressWarnings("SuspiciousNameCombination")
+    private Rect getFrameRect() {
+        final int imageWidth = mImageSize.getX();
+        final int imageHeight = mImageSize.getY();
+        final boolean portrait = Utils.isPortrait(mOrientation);
         final Rect frameRect =
-                Utils.getImageFrameRect(imageWidth, imageHeight, mViewFrameRect, mPreviewSize,
+                Utils.getImageFrameRect(portrait ? imageHeight : imageWidth,
+                        portrait ? imageWidth : imageHeight, mViewFrameRect, mPreviewSize,
                         mViewSize);
+        if (frameRect.getWidth() < 1 || frameRect.getHeight() < 1) {
+            return null;
+        }
+        return frameRect;
+    }
+
+    @Nullable
+    private Result decodeFrame(@NonNull final DecodeContext context) throws ReaderException {
+        context.setResults(null);
+        final ScannerMetrics metrics = context.getMetrics();
+        final Rect frameRect = getFrameRect();
+        if (frameRect == null) {
+            return null;
+        }
         final int frameWidth = frameRect.getWidth();
         final int frameHeight = frameRect.getHeight();
-        if (frameWidth < 1 || frameHeight < 1) {
+        long start = metrics != null ? System.nanoTime() : 0L;
+        final RoiTracker roiTracker = context.getMaxResults() > 1 ? null : context.getRoiTracker();
+        if (roiTracker != null) {
+            final Result result = decodeTrackedWindow(context, roiTracker, frameRect);
+            if (result != null) {
+                return result;
+            }
+            if (metrics != null) {
+                start = System.nanoTime();
+            }
+        }
+        final byte[] luma = context.getLumaBuffer().obtain(frameWidth * frameHeight);
+        mImage.cropRotateLuma(mImageSize.getX(), mImageSize.getY(), mOrientation, frameRect,
+                mReverseHorizontal, luma);
+        if (metrics != null) {
+            final long time = System.nanoTime();
+            metrics.record(ScannerMetrics.Stage.ROTATE, time - start);
+            start = time;
+        }
+        final FrameDifferenceFilter differenceFilter = context.getDifferenceFilter();
+        if (!accept(luma, frameWidth, frameHeight, metrics, start, context.getQualityGate(),
+                differenceFilter, context.getSignature())) {
+            return null;
+        }
+        return decodeChecked(context, luma, frameWidth, frameHeight, frameRect,
+                mReverseHorizontal, roiTracker, differenceFilter, context.getSignature());
+    }
+
+    /**
+     * Decode the window around the last decoded code
+     *
+     * @return Result in frame rect luma coordinates, {@code null} if there's no window
+     * or the code wasn't found in it
+     */
+    @Nullable
+    private Result decodeTrackedWindow(@NonNull final DecodeContext context,
+            @NonNull final RoiTracker roiTracker, @NonNull final Rect frameRect) {
+        final Rect window = roiTracker.getWindow(frameRect);
+        if (window == null) {
+            return null;
+        }
+        final ScannerMetrics metrics = context.getMetrics();
+        final long start = metrics != null ? System.nanoTime() : 0L;
+        final byte[] luma = context.getLumaBuffer().obtain(window.getWidth() * window.getHeight());
+        mImage.cropRotateLuma(mImageSize.getX(), mImageSize.getY(), mOrientation, window,
+                mReverseHorizontal, luma);
+        if (metrics != null) {
+            metrics.record(ScannerMetrics.Stage.ROTATE, System.nanoTime() - start);
+        }
+        return decodeWindow(context, roiTracker, frameRect, window, mReverseHorizontal, luma);
+    }
+
+    /**
+     * @return Result in frame rect luma coordinates, {@code null} if the code wasn't found
+     */
+    @Nullable
+    private static Result decodeWindow(@NonNull final DecodeContext context,
+            @NonNull final RoiTracker roiTracker, @NonNull final Rect frameRect,
+            @NonNull final Rect window, final boolean reverseHorizontal,
+            @NonNull final byte[] luma) {
+        Result result = null;
+        try {
+            result = decodeLuma(context, luma, window.getWidth(), window.getHeight());
+        } catch (final ReaderException ignored) {
+        }
+        if (result == null) {
+            roiTracker.onMissed();
+            return null;
+        }
+        final ScannerMetrics metrics = context.getMetrics();
+        if (metrics != null) {
+            metrics.increment(ScannerMetrics.Counter.TRACKED_SUCCESSES);
+        }
+        final Result frameResult = Utils.transformResult(result, 1,
+                getWindowOffsetX(frameRect, window, reverseHorizontal),
+                window.getTop() - frameRect.getTop());
+        roiTracker.onDecoded(frameResult, frameRect, reverseHorizontal);
+        return frameResult;
+    }
+
+    /**
+     * Horizontal offset of the window, which is in image coordinates,
+     * in the frame rect luma, which may be mirrored
+     */
+    private static int getWindowOffsetX(@NonNull final Rect frameRect,
+            @NonNull final Rect window, final boolean reverseHorizontal) {
+        return reverseHorizontal ? frameRect.getRight() - window.getRight() :
+                window.getLeft() - frameRect.getLeft();
+    }
+
+    /**
+     * Decode frame rect luma, which passed the checks, update tracker and difference filter
+     */
+    @Nullable
+    private static Result decodeChecked(@NonNull final DecodeContext context,
+            @NonNull final byte[] luma, final int width, final int height,
+            @NonNull final Rect frameRect, final boolean reverseHorizontal,
+            @Nullable final RoiTracker roiTracker,
+            @Nullable final FrameDifferenceFilter differenceFilter,
+            @NonNull final byte[] signature) throws ReaderException {
+        final TryHarderPolicy tryHarderPolicy = context.getTryHarderPolicy();
+        boolean tryHarder = false;
+        if (tryHarderPolicy != null) {
+            byte[] frameSignature = null;
+            if (tryHarderPolicy.isStabilityCheckEnabled()) {
+                if (differenceFilter == null) {
+                    // Signature is only computed by the check, if there's a difference filter
+                    FrameDifferenceFilter.computeSignature(luma, width, height, signature);
+                }
+                frameSignature = signature;
+            }
+            tryHarder = tryHarderPolicy.shouldTryHarder(frameSignature);
+            if (tryHarder) {
+                context.getReader().setTryHarder(true);
+                final ScannerMetrics metrics = context.getMetrics();
+                if (metrics != null) {
+                    metrics.increment(ScannerMetrics.Counter.FRAMES_ESCALATED);
+                }
+            }
+        }
+        boolean success = false;
+        try {
+            final Result result = decodeFrameRect(context, luma, width, height);
+            success = result != null;
+            if (roiTracker != null && result != null) {
+                roiTracker.onDecoded(result, frameRect, reverseHorizontal);
+            }
+            return result;
+        } finally {
+            // Frame, which was abandoned on the deadline or cancelled, wasn't proven unreadable
+            final boolean finished = success || !context.getDeadline().isExpired();
+            if (tryHarderPolicy != null) {
+                context.getReader().setTryHarder(false);
+                if (finished) {
+                    tryHarderPolicy.onDecoded(success, tryHarder);
+                } else {
+                    tryHarderPolicy.onAbandoned(tryHarder);
+                }
+            }
+            if (differenceFilter != null && finished) {
+                differenceFilter.onDecoded(signature, success);
+            }
+        }
+    }
+
+    /**
+     * Decode regions of frame rect luma, found by the localizer, then the whole frame rect luma,
+     * unless localizer gates it, search its tiles for small codes, if nothing was found
+     * and there's time left
+     */
+    @NonNull
+    private static Result decodeFrameRect(@NonNull final DecodeContext context,
+            @NonNull final byte[] luma, final int width, final int height)
+            throws ReaderException {
+        final boolean multiple = context.getMaxResults() > 1;
+        final CodeLocalizer localizer = context.getCodeLocalizer();
+        if (localizer != null) {
+            final List<Rect> regions = localize(context, localizer, luma, width, height);
+            if (regions != null) {
+                if (!regions.isEmpty()) {
+                    try {
+                        return decodeRegions(context, luma, width, height, regions);
+                    } catch (final ReaderException ignored) {
+                    }
+                }
+                if (context.getDeadline().isExpired()) {
+                    throw NotFoundException.getNotFoundInstance();
+                }
+                if (!localizer.shouldDecodeFully()) {
+                    final ScannerMetrics metrics = context.getMetrics();
+                    if (metrics != null) {
+                        metrics.increment(ScannerMetrics.Counter.FRAMES_UNLOCALIZED);
+                    }
+                    throw NotFoundException.getNotFoundInstance();
+                }
+            }
+        }
+        try {
+            return multiple ?
+                    decodeMultiple(context, luma, width, height) :
+                    decodeLuma(context, luma, width, height);
+        } catch (final ReaderException e) {
+            final TiledSearch tiledSearch = context.getTiledSearch();
+            if (tiledSearch == null || !TiledSearch.isApplicable(width, height) ||
+                    context.getDeadline().isExpired()) {
+                throw e;
+            }
+            final List<Result> results = tiledSearch.decode(context, luma, width, height);
+            if (results == null) {
+                throw e;
+            }
+            final ScannerMetrics metrics = context.getMetrics();
+            if (metrics != null) {
+                metrics.increment(ScannerMetrics.Counter.TILED_SUCCESSES);
+            }
+            if (multiple) {
+                Collections.sort(results, new CentreDistanceComparator(width / 2f, height / 2f));
+                context.setResults(results);
+            }
+            return results.get(0);
+        }
+    }
+
+    /**
+     * Find regions to decode and pass them to the callback, if any
+     *
+     * @return Regions in frame rect luma coordinates, {@code null} if frame rect
+     * is too small to be localized
+     */
+    @Nullable
+    private static List<Rect> localize(@NonNull final DecodeContext context,
+            @NonNull final CodeLocalizer localizer, @NonNull final byte[] luma, final int width,
+            final int height) {
+        final ScannerMetrics metrics = context.getMetrics();
+        final long start = metrics != null ? System.nanoTime() : 0L;
+        final List<Rect> regions = localizer.localize(luma, width, height);
+        if (regions == null) {
             return null;
         }
-        return Utils.decodeLuminanceSource(reader,
-                new PlanarYUVLuminanceSource(image, imageWidth, imageHeight, frameRect.getLeft(),
-                        frameRect.getTop(), frameWidth, frameHeight, mReverseHorizontal));
+        if (metrics != null) {
+            metrics.record(ScannerMetrics.Stage.LOCALIZE, System.nanoTime() - start);
+        }
+        final LocalizeCallback callback = context.getLocalizeCallback();
+        if (callback != null) {
+            final List<android.graphics.Rect> rects = new ArrayList<>(regions.size());
+            for (final Rect region : regions) {
+                rects.add(new android.graphics.Rect(region.getLeft(), region.getTop(),
+                        region.getRight(), region.getBottom()));
+            }
+            callback.onLocalized(rects);
+        }
+        return regions;
+    }
+
+    /**
+     * Decode regions of frame rect luma one after another, until the code is found;
+     * in multiple codes mode results are put into the context, closest to the frame centre first
+     *
+     * @return Result in frame rect luma coordinates
+     */
+    @NonNull
+    private static Result decodeRegions(@NonNull final DecodeContext context,
+            @NonNull final byte[] luma, final int width, final int height,
+            @NonNull final List<Rect> regions) throws ReaderException {
+        final FormatReader reader = context.getReader();
+        final BinarizerChain binarizerChain = context.getBinarizerChain();
+        final DecodeStrategy strategy = context.getDecodeStrategy();
+        final DecodeDeadline deadline = context.getDeadline();
+        final int maxResults = context.getMaxResults();
+        final List<Result> results = new ArrayList<>();
+        // Frame is counted by the reader once
+        ScannerMetrics metrics = context.getMetrics();
+        for (final Rect region : regions) {
+            if (deadline.isExpired() || results.size() >= maxResults) {
+                break;
+            }
+            final int left = region.getLeft();
+            final int top = region.getTop();
+            final PlanarYUVLuminanceSource source =
+                    new PlanarYUVLuminanceSource(luma, width, height, left, top,
+                            region.getWidth(), region.getHeight(), false);
+            try {
+                final List<Result> regionResults = maxResults > 1 ?
+                        reader.decodeMultiple(source, binarizerChain, strategy, maxResults,
+                                metrics) :
+                        Collections.singletonList(
+                                reader.decode(source, binarizerChain, strategy, metrics));
+                for (final Result result : regionResults) {
+                    final Result frameResult = Utils.transformResult(result, 1, left, top);
+                    if (!FormatReader.containsCode(results, frameResult)) {
+                        results.add(frameResult);
+                    }
+                }
+            } catch (final ReaderException ignored) {
+            }
+            metrics = null;
+        }
+        if (results.isEmpty()) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        if (maxResults > 1) {
+            Collections.sort(results, new CentreDistanceComparator(width / 2f, height / 2f));
+            if (results.size() > maxResults) {
+                results.subList(maxResults, results.size()).clear();
+            }
+            context.setResults(results);
+        }
+        return results.get(0);
+    }
+
+    /**
+     * Check the frame with quality gate and difference filter, if any
+     *
+     * @param start Start time of the check, if metrics are recorded
+     * @return {@code true} if frame should be decoded, {@code false} otherwise
+     */
+    private static boolean accept(@NonNull final byte[] luma, final int width, final int height,
+            @Nullable final ScannerMetrics metrics, final long start,
+            @Nullable final FrameQualityGate qualityGate,
+            @Nullable final FrameDifferenceFilter differenceFilter,
+            @NonNull final byte[] signature) {
+        if (qualityGate == null && differenceFilter == null) {
+            return true;
+        }
+        final ScannerMetrics.Counter rejection =
+                check(luma, width, height, qualityGate, differenceFilter, signature);
+        if (metrics != null) {
+            metrics.record(ScannerMetrics.Stage.QUALITY_CHECK, System.nanoTime() - start);
+            if (rejection != null) {
+                metrics.increment(rejection);
+            }
+        }
+        return rejection == null;
+    }
+
+    /**
+     * Decode multiple codes, results are put into the context, closest to the frame centre first
+     *
+     * @return Result closest to the frame centre
+     */
+    @NonNull
+    private static Result decodeMultiple(@NonNull final DecodeContext context,
+            @NonNull final byte[] luma, final int width, final int height)
+            throws ReaderException {
+        final List<Result> results = context.getReader().decodeMultiple(
+                new PlanarYUVLuminanceSource(luma, width, height, 0, 0, width, height, false),
+                context.getBinarizerChain(), context.getDecodeStrategy(), context.getMaxResults(),
+                context.getMetrics());
+        Collections.sort(results, new CentreDistanceComparator(width / 2f, height / 2f));
+        context.setResults(results);
+        return results.get(0);
+    }
+
+    /**
+     * Decode downsampled luma first, if estimator suggests so, fall back to full resolution
+     */
+    @Nullable
+    private static Result decodeLuma(@NonNull final DecodeContext context,
+            @NonNull final byte[] luma, final int width, final int height)
+            throws ReaderException {
+        final ScannerMetrics metrics = context.getMetrics();
+        final DownsampleEstimator estimator = context.getDownsampleEstimator();
+        if (estimator != null) {
+            final int factor = estimator.getFactor(width, height);
+            if (factor > 1) {
+                final long start = metrics != null ? System.nanoTime() : 0L;
+                final int downsampledWidth = width / factor;
+                final int downsampledHeight = height / factor;
+                final byte[] downsampled =
+                        context.getDownsampleBuffer().obtain(downsampledWidth * downsampledHeight);
+                Utils.downsampleLuma(luma, width, height, factor, downsampled);
+                if (metrics != null) {
+                    metrics.record(ScannerMetrics.Stage.DOWNSAMPLE, System.nanoTime() - start);
+                }
+                try {
+                    final Result result = context.getReader().decode(
+                            new PlanarYUVLuminanceSource(downsampled, downsampledWidth,
+                                    downsampledHeight, 0, 0, downsampledWidth, downsampledHeight,
+                                    false), context.getBinarizerChain(),
+                            context.getDecodeStrategy(), metrics);
+                    if (metrics != null) {
+                        metrics.increment(ScannerMetrics.Counter.DOWNSAMPLED_SUCCESSES);
+                    }
+                    estimator.onDecoded(result, factor);
+                    return Utils.transformResult(result, factor, 0, 0);
+                } catch (final ReaderException e) {
+                    if (!context.getDeadline().isExpired()) {
+                        estimator.onDownsampledMissed(factor);
+                    }
+                }
+            }
+        }
+        Result result = null;
+        try {
+            final PlanarYUVLuminanceSource source =
+                    new PlanarYUVLuminanceSource(luma, width, height, 0, 0, width, height, false);
+            final DecodeRace decodeRace = context.getDecodeRace();
+            if (decodeRace != null) {
+                result = decodeRace.decode(context, source);
+            } else {
+                result = context.getReader().decode(source, context.getBinarizerChain(),
+                        context.getDecodeStrategy(), metrics);
+            }
+            return result;
+        } finally {
+            if (estimator != null && (result != null || !context.getDeadline().isExpired())) {
+                estimator.onDecoded(result, 1);
+            }
+        }
+    }
+
+    /**
+     * @return Counter of the reason, why frame shouldn't be decoded, or {@code null}
+     */
+    @Nullable
+    private static ScannerMetrics.Counter check(@NonNull final byte[] luma, final int width,
+            final int height, @Nullable final FrameQualityGate qualityGate,
+            @Nullable final FrameDifferenceFilter differenceFilter,
+            @NonNull final byte[] signature) {
+        if (qualityGate != null && qualityGate.check(luma, width, height) != null) {
+            return ScannerMetrics.Counter.FRAMES_REJECTED;
+        }
+        if (differenceFilter != null) {
+            FrameDifferenceFilter.computeSignature(luma, width, height, signature);
+            if (differenceFilter.shouldSkip(signature)) {
+                return ScannerMetrics.Counter.FRAMES_UNCHANGED;
+            }
+        }
+        return null;
+    }
+
+    public void recycle() {
+        mImage.release();
+    }
+
+    private static final class CentreDistanceComparator implements Comparator<Result> {
+        private final float mCentreX;
+        private final float mCentreY;
+
+        public CentreDistanceComparator(final float centreX, final float centreY) {
+            mCentreX = centreX;
+            mCentreY = centreY;
+        }
+
+        @Override
+        public int compare(@NonNull final Result a, @NonNull final Result b) {
+            return Float.compare(getDistance(a), getDistance(b));
+        }
+
+        private float getDistance(@NonNull final Result result) {
+            final ResultPoint[] points = result.getResultPoints();
+            if (points == null) {
+                return Float.MAX_VALUE;
+            }
+            float x = 0f;
+            float y = 0f;
+            int count = 0;
+            for (final ResultPoint point : points) {
+                if (point != null) {
+                    x += point.getX();
+                    y += point.getY();
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return Float.MAX_VALUE;
+            }
+            final float dx = x / count - mCentreX;
+            final float dy = y / count - mCentreY;
+            return dx * dx + dy * dy;
+        }
     }
 }
@@ -23,133 +23,597 @@
  */
 package com.budiyev.android.codescanner;
 
-import java.util.EnumMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-
-import android.os.Process;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
 import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
 
 final class Decoder {
 
-    private final MultiFormatReader mReader;
-    private final DecoderThread mDecoderThread;
+    // Maps to background nice value on Android, works on plain JVM as well
+    private static final int THREAD_PRIORITY = Thread.NORM_PRIORITY - 1;
+
+    private final DecoderThread[] mDecoderThreads;
+    private final PreparerThread mPreparerThread;
     private final StateListener mStateListener;
-    private final Map<DecodeHintType, Object> mHints;
-    private final Object mTaskLock = new Object();
+    private final Mailbox<DecodeTask> mTaskMailbox;
+    private final Mailbox<PreparedFrame> mFrameMailbox;
+    private final ConcurrentLinkedQueue<PreparedFrame> mFramePool;
+    private final AtomicInteger mIdleThreadsCount = new AtomicInteger();
+    private final AtomicLong mTaskSequence = new AtomicLong();
+    private final AtomicLong mFinishedTasksCount = new AtomicLong();
+    private final Object mResultLock = new Object();
+    private final Object mRaceLock = new Object();
+    private volatile List<BarcodeFormat> mFormats;
     private volatile DecodeCallback mCallback;
-    private volatile DecodeTask mTask;
+    private volatile ScannerMetrics mMetrics;
+    private volatile FrameQualityGate mQualityGate;
+    private volatile CodeLocalizer mCodeLocalizer;
+    private volatile LocalizeCallback mLocalizeCallback;
+    private volatile FrameDifferenceFilter mDifferenceFilter;
+    private volatile DownsampleEstimator mDownsampleEstimator;
+    private volatile DecodeStrategy mDecodeStrategy;
+    private volatile BinarizerChain mBinarizerChain = BinarizerChain.createDefault();
+    private volatile ResultDeduplicator mResultDeduplicator;
+    private volatile MultiDecodeCallback mMultiCallback;
+    private volatile RoiTracker mRoiTracker;
+    private volatile TryHarderPolicy mTryHarderPolicy;
+    private volatile DecodeRace mDecodeRace;
+    private volatile TiledSearch mTiledSearch;
+    private volatile long mTimeBudgetNanos;
+    private volatile int mMaxResults = 1;
     private volatile State mState;
+    private volatile long mResultSequence;
 
+    /**
+     * @param pipelined Whether to crop, rotate and check the next frame on a separate
+     *                  preparing thread, while the previous one is being decoded
+     */
     public Decoder(@NonNull final StateListener stateListener,
             @NonNull final Thread.UncaughtExceptionHandler exceptionHandler,
-            @NonNull final List<BarcodeFormat> formats, @Nullable final DecodeCallback callback) {
-        mReader = new MultiFormatReader();
-        mDecoderThread = new DecoderThread();
-        mDecoderThread.setUncaughtExceptionHandler(exceptionHandler);
-        mHints = new EnumMap<>(DecodeHintType.class);
-        mHints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
-        mReader.setHints(mHints);
+            @NonNull final List<BarcodeFormat> formats, @Nullable final DecodeCallback callback,
+            final int threadsCount, final boolean pipelined) {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Decoder threads count must be greater than zero");
+        }
+        mTaskMailbox = new Mailbox<>(new TaskDropListener());
+        if (pipelined) {
+            // Each decoder thread, the preparer and the mailbox hold a frame at most
+            final int framesCount = threadsCount + 2;
+            mFramePool = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < framesCount; i++) {
+                mFramePool.offer(new PreparedFrame());
+            }
+            mFrameMailbox = new Mailbox<>(new FrameDropListener());
+            mPreparerThread = new PreparerThread();
+            mPreparerThread.setPriority(THREAD_PRIORITY);
+            mPreparerThread.setUncaughtExceptionHandler(exceptionHandler);
+        } else {
+            mFramePool = null;
+            mFrameMailbox = null;
+            mPreparerThread = null;
+        }
+        mDecoderThreads = new DecoderThread[threadsCount];
+        for (int i = 0; i < threadsCount; i++) {
+            final DecoderThread decoderThread = new DecoderThread(i);
+            decoderThread.setPriority(THREAD_PRIORITY);
+            decoderThread.setUncaughtExceptionHandler(exceptionHandler);
+            mDecoderThreads[i] = decoderThread;
+        }
+        mFormats = formats;
         mCallback = callback;
         mStateListener = stateListener;
         mState = State.INITIALIZED;
     }
 
+    /**
+     * Maximum number of camera frames, which are held by the decoder threads at the same time,
+     * in addition to the pending one; pipelined decoder releases the frame after preparing it
+     */
+    public int getHeldFramesCount() {
+        return mPreparerThread != null ? 1 : mDecoderThreads.length;
+    }
+
     public void setFormats(@NonNull final List<BarcodeFormat> formats) {
-        mHints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
-        mReader.setHints(mHints);
+        mFormats = formats;
+        final DecodeRace decodeRace = mDecodeRace;
+        if (decodeRace != null) {
+            decodeRace.setFormats(formats);
+        }
+        final TiledSearch tiledSearch = mTiledSearch;
+        if (tiledSearch != null) {
+            tiledSearch.setFormats(formats);
+        }
     }
 
     public void setCallback(@Nullable final DecodeCallback callback) {
         mCallback = callback;
     }
 
+    /**
+     * Callback, which receives all codes decoded from a frame; if set, up to
+     * {@link #setMaxResults max results} codes are decoded per frame
+     */
+    public void setMultiCallback(@Nullable final MultiDecodeCallback multiCallback) {
+        mMultiCallback = multiCallback;
+    }
+
+    public void setMaxResults(final int maxResults) {
+        mMaxResults = maxResults;
+    }
+
+    public void setMetrics(@Nullable final ScannerMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    public void setQualityGate(@Nullable final FrameQualityGate qualityGate) {
+        mQualityGate = qualityGate;
+    }
+
+    public void setCodeLocalizer(@Nullable final CodeLocalizer codeLocalizer) {
+        mCodeLocalizer = codeLocalizer;
+    }
+
+    public void setLocalizeCallback(@Nullable final LocalizeCallback localizeCallback) {
+        mLocalizeCallback = localizeCallback;
+    }
+
+    public void setDifferenceFilter(@Nullable final FrameDifferenceFilter differenceFilter) {
+        mDifferenceFilter = differenceFilter;
+    }
+
+    /**
+     * Try to decode large codes from downsampled luma first
+     */
+    public void setDownsamplingEnabled(final boolean enabled) {
+        mDownsampleEstimator = enabled ? new DownsampleEstimator() : null;
+    }
+
+    public void setBinarizerChain(@NonNull final BinarizerChain binarizerChain) {
+        mBinarizerChain = binarizerChain;
+    }
+
+    public void setResultDeduplicator(@Nullable final ResultDeduplicator resultDeduplicator) {
+        mResultDeduplicator = resultDeduplicator;
+    }
+
+    /**
+     * Time budget of a frame, decoding which exceeds it is abandoned
+     *
+     * @param timeBudgetNanos Budget in nanoseconds, {@code 0} for unlimited
+     */
+    public void setTimeBudgetNanos(final long timeBudgetNanos) {
+        mTimeBudgetNanos = timeBudgetNanos;
+    }
+
+    /**
+     * Race decoding variants of a frame on idle cores; has no effect if there are no idle cores
+     */
+    public void setRacingEnabled(final boolean enabled) {
+        synchronized (mRaceLock) {
+            final DecodeRace previous = mDecodeRace;
+            if (enabled == (previous != null) || mState == State.STOPPED) {
+                return;
+            }
+            if (enabled) {
+                final int workersCount =
+                        WorkerThreadFactory.getIdleCoresCount(mDecoderThreads.length);
+                if (workersCount > 0) {
+                    mDecodeRace = new DecodeRace(mFormats, workersCount);
+                }
+            } else {
+                mDecodeRace = null;
+                previous.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Search tiles of frame rect for small codes, if nothing was found in the whole frame rect;
+     * tiles are decoded on idle cores too, if there are any
+     */
+    public void setTiledSearchEnabled(final boolean enabled) {
+        synchronized (mRaceLock) {
+            final TiledSearch previous = mTiledSearch;
+            if (enabled == (previous != null) || mState == State.STOPPED) {
+                return;
+            }
+            if (enabled) {
+                mTiledSearch = new TiledSearch(mFormats,
+                        WorkerThreadFactory.getIdleCoresCount(mDecoderThreads.length));
+            } else {
+                mTiledSearch = null;
+                previous.shutdown();
+            }
+        }
+    }
+
+    public void setTryHarderPolicy(@Nullable final TryHarderPolicy tryHarderPolicy) {
+        mTryHarderPolicy = tryHarderPolicy;
+    }
+
+    /**
+     * Decode the window around the last decoded code first
+     */
+    public void setRoiTrackingEnabled(final boolean enabled) {
+        mRoiTracker = enabled ? new RoiTracker() : null;
+    }
+
+    /**
+     * Order decoding attempts and reader families by recent successes
+     */
+    public void setAdaptiveDecodingEnabled(final boolean enabled) {
+        mDecodeStrategy = enabled ? new DecodeStrategy(FormatReader.FAMILIES_COUNT) : null;
+    }
+
+    /**
+     * Submit the task, never blocks; pending task, if any, is replaced
+     */
     public void decode(@NonNull final DecodeTask task) {
-        synchronized (mTaskLock) {
-            if (mState != State.STOPPED) {
-                mTask = task;
-                mTaskLock.notify();
+        task.setSequence(mTaskSequence.incrementAndGet());
+        if (mTaskMailbox.put(task)) {
+            final ScannerMetrics metrics = mMetrics;
+            if (metrics != null) {
+                metrics.increment(ScannerMetrics.Counter.FRAMES_DROPPED);
             }
         }
     }
 
+    /**
+     * Number of submitted tasks, which were replaced by newer ones before decoding
+     */
+    public long getOverwrittenTasksCount() {
+        return mTaskMailbox.getOverwrittenCount();
+    }
+
+    /**
+     * Number of submitted tasks, which were decoded, skipped or dropped; all submitted tasks
+     * are finished, when it's equal to the number of {@link #decode} calls
+     */
+    public long getFinishedTasksCount() {
+        return mFinishedTasksCount.get();
+    }
+
     public void start() {
         if (mState != State.INITIALIZED) {
             throw new IllegalStateException("Illegal decoder state");
         }
-        mDecoderThread.start();
+        mState = State.IDLE;
+        for (final DecoderThread decoderThread : mDecoderThreads) {
+            decoderThread.start();
+        }
+        final PreparerThread preparerThread = mPreparerThread;
+        if (preparerThread != null) {
+            preparerThread.start();
+        }
+    }
+
+    /**
+     * Drop the pending task and abandon frames, which are being decoded
+     */
+    public void cancel() {
+        mTaskMailbox.clear();
+        final DecodeRace decodeRace = mDecodeRace;
+        if (decodeRace != null) {
+            decodeRace.cancel();
+        }
+        final TiledSearch tiledSearch = mTiledSearch;
+        if (tiledSearch != null) {
+            tiledSearch.cancel();
+        }
+        final Mailbox<PreparedFrame> frameMailbox = mFrameMailbox;
+        if (frameMailbox != null) {
+            frameMailbox.clear();
+        }
+        for (final DecoderThread decoderThread : mDecoderThreads) {
+            decoderThread.cancel();
+        }
     }
 
     public void shutdown() {
-        mDecoderThread.interrupt();
-        mTask = null;
+        synchronized (mRaceLock) {
+            mState = State.STOPPED;
+            final DecodeRace decodeRace = mDecodeRace;
+            if (decodeRace != null) {
+                mDecodeRace = null;
+                decodeRace.shutdown();
+            }
+            final TiledSearch tiledSearch = mTiledSearch;
+            if (tiledSearch != null) {
+                mTiledSearch = null;
+                tiledSearch.shutdown();
+            }
+        }
+        mTaskMailbox.close();
+        final Mailbox<PreparedFrame> frameMailbox = mFrameMailbox;
+        if (frameMailbox != null) {
+            frameMailbox.close();
+        }
+        for (final DecoderThread decoderThread : mDecoderThreads) {
+            decoderThread.cancel();
+        }
     }
 
+    /**
+     * Decoder is {@link State#IDLE} while at least one of its threads is waiting for a task
+     * and there's no pending task; pipelined decoder is {@link State#IDLE} while the preparing
+     * thread is waiting for a task and there's no pending task or prepared frame, which is
+     * waiting for a decoder thread
+     */
     @NonNull
     public State getState() {
-        return mState;
+        final State state = mState;
+        if (state == State.IDLE && (mIdleThreadsCount.get() == 0 || !mTaskMailbox.isEmpty() ||
+                (mFrameMailbox != null && !mFrameMailbox.isEmpty()))) {
+            return State.DECODING;
+        }
+        return state;
     }
 
-    private boolean setState(@NonNull final State state) {
-        mState = state;
-        return mStateListener.onStateChanged(state);
+    private void onDecoded(@Nullable final ScannerMetrics metrics, final long sequence,
+            @NonNull final Result result, @Nullable final List<Result> results) {
+        if (metrics != null) {
+            metrics.increment(ScannerMetrics.Counter.DECODE_SUCCESSES);
+        }
+        mTaskMailbox.clear();
+        final Mailbox<PreparedFrame> frameMailbox = mFrameMailbox;
+        if (frameMailbox != null) {
+            frameMailbox.clear();
+        }
+        deliverResult(sequence, result, results);
+    }
+
+    /**
+     * @param results All results of the frame, if multiple codes were decoded
+     */
+    private void deliverResult(final long sequence, @NonNull final Result result,
+            @Nullable final List<Result> results) {
+        // Results of frames older than the delivered one are dropped before filtering, so that
+        // they don't count as seen; filter doesn't lock, decoder threads don't wait here
+        if (sequence <= mResultSequence || mState == State.STOPPED) {
+            return;
+        }
+        final ScannerMetrics metrics = mMetrics;
+        List<Result> deliveredResults =
+                results != null ? results : Collections.singletonList(result);
+        final ResultDeduplicator resultDeduplicator = mResultDeduplicator;
+        final long timestamp = resultDeduplicator != null ? System.nanoTime() : 0L;
+        if (resultDeduplicator != null) {
+            final List<Result> acceptedResults = new ArrayList<>(deliveredResults.size());
+            for (final Result deliveredResult : deliveredResults) {
+                if (resultDeduplicator.accept(deliveredResult, timestamp)) {
+                    acceptedResults.add(deliveredResult);
+                } else if (metrics != null) {
+                    metrics.increment(ScannerMetrics.Counter.RESULTS_SUPPRESSED);
+                }
+            }
+            if (acceptedResults.isEmpty()) {
+                return;
+            }
+            deliveredResults = acceptedResults;
+        }
+        synchronized (mResultLock) {
+            if (sequence <= mResultSequence || mState == State.STOPPED) {
+                return;
+            }
+            if (resultDeduplicator != null) {
+                // Same code might have been delivered by another thread since it was accepted
+                final List<Result> checkedResults = new ArrayList<>(deliveredResults.size());
+                for (final Result deliveredResult : deliveredResults) {
+                    if (resultDeduplicator.check(deliveredResult, timestamp)) {
+                        checkedResults.add(deliveredResult);
+                    } else {
+                        resultDeduplicator.suppress();
+                        if (metrics != null) {
+                            metrics.increment(ScannerMetrics.Counter.RESULTS_SUPPRESSED);
+                        }
+                    }
+                }
+                if (checkedResults.isEmpty()) {
+                    return;
+                }
+                deliveredResults = checkedResults;
+            }
+            mResultSequence = sequence;
+            if (mStateListener.onStateChanged(State.DECODED)) {
+                final long start = metrics != null ? System.nanoTime() : 0L;
+                final DecodeCallback callback = mCallback;
+                if (callback != null) {
+                    callback.onDecoded(deliveredResults.get(0));
+                }
+                final MultiDecodeCallback multiCallback = mMultiCallback;
+                if (multiCallback != null) {
+                    multiCallback.onDecoded(Collections.unmodifiableList(deliveredResults));
+                }
+                if (metrics != null && (callback != null || multiCallback != null)) {
+                    metrics.record(ScannerMetrics.Stage.CALLBACK, System.nanoTime() - start);
+                }
+                if (resultDeduplicator != null) {
+                    for (final Result deliveredResult : deliveredResults) {
+                        resultDeduplicator.commit(deliveredResult, timestamp);
+                    }
+                }
+            }
+        }
     }
 
     private final class DecoderThread extends Thread {
-        public DecoderThread() {
-            super("cs-decoder");
+        private final FormatReader mReader;
+        private final DecodeContext mContext;
+        private List<BarcodeFormat> mAppliedFormats;
+
+        public DecoderThread(final int index) {
+            super("cs-decoder-" + index);
+            mReader = new FormatReader();
+            mContext = new DecodeContext(mReader);
+        }
+
+        @Override
+        public void run() {
+            if (mFrameMailbox != null) {
+                while (decodeNextFrame(mFrameMailbox)) {
+                    // Decode prepared frames until shutdown
+                }
+            } else {
+                while (decodeNextTask()) {
+                    // Decode tasks until shutdown
+                }
+            }
+        }
+
+        /**
+         * @return {@code false} if decoder is shut down, {@code true} otherwise
+         */
+        private boolean decodeNextTask() {
+            mIdleThreadsCount.incrementAndGet();
+            final DecodeTask task = mTaskMailbox.take();
+            mIdleThreadsCount.decrementAndGet();
+            if (task == null) {
+                return false;
+            }
+            final DecodeContext context = updateContext();
+            Result result = null;
+            try {
+                applyFormats();
+                result = task.decode(context);
+            } catch (final ReaderException ignored) {
+            } finally {
+                task.recycle();
+                if (result != null) {
+                    onDecoded(context.getMetrics(), task.getSequence(), result,
+                            context.getResults());
+                }
+                mFinishedTasksCount.incrementAndGet();
+            }
+            return true;
+        }
+
+        /**
+         * @return {@code false} if decoder is shut down, {@code true} otherwise
+         */
+        private boolean decodeNextFrame(@NonNull final Mailbox<PreparedFrame> frameMailbox) {
+            final PreparedFrame frame = frameMailbox.take();
+            if (frame == null) {
+                return false;
+            }
+            final long sequence = frame.getSequence();
+            final DecodeContext context = updateContext();
+            Result result = null;
+            try {
+                applyFormats();
+                result = DecodeTask.decodePrepared(context, frame);
+            } catch (final ReaderException ignored) {
+            } finally {
+                mFramePool.offer(frame);
+                if (result != null) {
+                    onDecoded(context.getMetrics(), sequence, result, context.getResults());
+                }
+                mFinishedTasksCount.incrementAndGet();
+            }
+            return true;
+        }
+
+        @NonNull
+        private DecodeContext updateContext() {
+            final DecodeContext context = mContext;
+            context.setMetrics(mMetrics);
+            context.setQualityGate(mQualityGate);
+            context.setDifferenceFilter(mDifferenceFilter);
+            context.setDownsampleEstimator(mDownsampleEstimator);
+            context.setDecodeStrategy(mDecodeStrategy);
+            context.setRoiTracker(mRoiTracker);
+            context.setTryHarderPolicy(mTryHarderPolicy);
+            context.setDecodeRace(mDecodeRace);
+            context.setTiledSearch(mTiledSearch);
+            context.setCodeLocalizer(mCodeLocalizer);
+            context.setLocalizeCallback(mLocalizeCallback);
+            context.setTimeBudgetNanos(mTimeBudgetNanos);
+            context.setBinarizerChain(mBinarizerChain);
+            context.setMaxResults(mMultiCallback != null ? mMaxResults : 1);
+            return context;
+        }
+
+        public void cancel() {
+            mContext.getDeadline().cancel();
+        }
+
+        private void applyFormats() {
+            final List<BarcodeFormat> formats = mFormats;
+            if (formats != mAppliedFormats) {
+                mReader.setFormats(formats);
+                mAppliedFormats = formats;
+            }
+        }
+    }
+
+    /**
+     * Crops, rotates and checks frames, while decoder threads are decoding previous ones
+     */
+    private final class PreparerThread extends Thread {
+        public PreparerThread() {
+            super("cs-preparer");
         }
 
         @Override
         public void run() {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            mainLoop:
             for (; ; ) {
-                setState(Decoder.State.IDLE);
-                Result result = null;
+                mIdleThreadsCount.incrementAndGet();
+                final DecodeTask task = mTaskMailbox.take();
+                mIdleThreadsCount.decrementAndGet();
+                if (task == null) {
+                    break;
+                }
+                final ScannerMetrics metrics = mMetrics;
+                final PreparedFrame frame = mFramePool.poll();
+                boolean prepared = false;
                 try {
-                    final DecodeTask task;
-                    for (; ; ) {
-                        synchronized (mTaskLock) {
-                            final DecodeTask t = mTask;
-                            if (t != null) {
-                                mTask = null;
-                                task = t;
-                                break;
-                            }
-                            try {
-                                mTaskLock.wait();
-                            } catch (final InterruptedException e) {
-                                setState(Decoder.State.STOPPED);
-                                break mainLoop;
-                            }
-                        }
+                    if (frame != null) {
+                        prepared = task.prepare(frame, metrics, mQualityGate, mDifferenceFilter);
+                    } else if (metrics != null) {
+                        metrics.increment(ScannerMetrics.Counter.FRAMES_DROPPED);
                     }
-                    setState(Decoder.State.DECODING);
-                    result = task.decode(mReader);
-                } catch (final ReaderException ignored) {
                 } finally {
-                    if (result != null) {
-                        mTask = null;
-                        if (setState(Decoder.State.DECODED)) {
-                            final DecodeCallback callback = mCallback;
-                            if (callback != null) {
-                                callback.onDecoded(result);
-                            }
-                        }
+                    // Release camera buffer as soon as possible
+                    task.recycle();
+                }
+                if (prepared) {
+                    if (mFrameMailbox.put(frame) && metrics != null) {
+                        metrics.increment(ScannerMetrics.Counter.FRAMES_DROPPED);
+                    }
+                } else {
+                    if (frame != null) {
+                        mFramePool.offer(frame);
                     }
+                    mFinishedTasksCount.incrementAndGet();
                 }
             }
         }
     }
 
+    private final class FrameDropListener implements Mailbox.DropListener<PreparedFrame> {
+        @Override
+        public void onDropped(@NonNull final PreparedFrame frame) {
+            mFramePool.offer(frame);
+            mFinishedTasksCount.incrementAndGet();
+        }
+    }
+
+    private final class TaskDropListener implements Mailbox.DropListener<DecodeTask> {
+        @Override
+        public void onDropped(@NonNull final DecodeTask task) {
+            task.recycle();
+            mFinishedTasksCount.incrementAndGet();
+        }
+    }
+
     public interface StateListener {
         boolean onStateChanged(@NonNull State state);
     }
@@ -23,48 +23,26 @@
  */
 package com.budiyev.android.codescanner;
 
-import android.hardware.Camera;
-
 import androidx.annotation.NonNull;
 
 final class DecoderWrapper {
 
-    private final Camera mCamera;
-    private final Camera.CameraInfo mCameraInfo;
+    private final FrameSource mFrameSource;
     private final Decoder mDecoder;
-    private final Point mImageSize;
     private final Point mPreviewSize;
     private final Point mViewSize;
-    private final int mDisplayOrientation;
-    private final boolean mReverseHorizontal;
-    private final boolean mAutoFocusSupported;
-    private final boolean mFlashSupported;
 
-    public DecoderWrapper(@NonNull final Camera camera, @NonNull final Camera.CameraInfo cameraInfo,
-            @NonNull final Decoder decoder, @NonNull final Point imageSize,
-            @NonNull final Point previewSize, @NonNull final Point viewSize,
-            final int displayOrientation, final boolean autoFocusSupported,
-            final boolean flashSupported) {
-        mCamera = camera;
-        mCameraInfo = cameraInfo;
+    public DecoderWrapper(@NonNull final FrameSource frameSource, @NonNull final Decoder decoder,
+            @NonNull final Point previewSize, @NonNull final Point viewSize) {
+        mFrameSource = frameSource;
         mDecoder = decoder;
-        mImageSize = imageSize;
         mPreviewSize = previewSize;
         mViewSize = viewSize;
-        mDisplayOrientation = displayOrientation;
-        mReverseHorizontal = cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_FRONT;
-        mAutoFocusSupported = autoFocusSupported;
-        mFlashSupported = flashSupported;
-    }
-
-    @NonNull
-    public Camera getCamera() {
-        return mCamera;
     }
 
     @NonNull
-    public Camera.CameraInfo getCameraInfo() {
-        return mCameraInfo;
+    public FrameSource getFrameSource() {
+        return mFrameSource;
     }
 
     @NonNull
@@ -74,7 +52,7 @@ final class DecoderWrapper {
 
     @NonNull
     public Point getImageSize() {
-        return mImageSize;
+        return mFrameSource.getImageSize();
     }
 
     @NonNull
@@ -88,23 +66,36 @@ final class DecoderWrapper {
     }
 
     public int getDisplayOrientation() {
-        return mDisplayOrientation;
+        return mFrameSource.getOrientation();
     }
 
     public boolean shouldReverseHorizontal() {
-        return mReverseHorizontal;
+        return mFrameSource.shouldReverseHorizontal();
     }
 
     public boolean isAutoFocusSupported() {
-        return mAutoFocusSupported;
+        return mFrameSource.isAutoFocusSupported();
     }
 
     public boolean isFlashSupported() {
-        return mFlashSupported;
+        return mFrameSource.isFlashSupported();
+    }
+
+    /**
+     * Map rect from view coordinates into rotated image coordinates
+     */
+    @NonNull
+    @SuppressWarnings("SuspiciousNameCombination")
+    public Rect getImageRect(@NonNull final Rect viewRect) {
+        final Point imageSize = mFrameSource.getImageSize();
+        final boolean portrait = Utils.isPortrait(mFrameSource.getOrientation());
+        return Utils.getImageFrameRect(portrait ? imageSize.getY() : imageSize.getX(),
+                portrait ? imageSize.getX() : imageSize.getY(), viewRect, mPreviewSize,
+                mViewSize);
     }
 
     public void release() {
-        mCamera.release();
+        mFrameSource.release();
         mDecoder.shutdown();
     }
 }
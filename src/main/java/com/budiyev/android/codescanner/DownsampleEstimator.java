@@ -0,0 +1,177 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.qrcode.detector.FinderPattern;
+
+/**
+ * Chooses downsample factor for the first decoding pass from the spread of result points
+ * and the module size of the last successful decoding: large codes are decoded faster
+ * from downsampled luma. If downsampled pass misses the code, smaller factors are used
+ * until the code is lost, so that large but dense codes don't pay for the wasted pass
+ * on each frame. Shared between decoder threads.
+ */
+final class DownsampleEstimator {
+
+    /**
+     * Minimum spread of result points in downsampled luma, for which downsampling is used
+     */
+    private static final int MIN_DOWNSAMPLED_SPREAD = 96;
+
+    /**
+     * Minimum smaller side of downsampled luma
+     */
+    private static final int MIN_DOWNSAMPLED_SIZE = 240;
+
+    /**
+     * Minimum module size in downsampled luma, if module size is known
+     */
+    private static final float MIN_DOWNSAMPLED_MODULE_SIZE = 3f;
+
+    /**
+     * Number of frames in a row, which weren't decoded at all, after which
+     * the last known spread is forgotten
+     */
+    private static final int MAX_MISSES = 8;
+
+    private static final int[] FACTORS = {4, 2};
+    private int mSpread;
+    private float mModuleSize;
+    private int mMaxFactor = FACTORS[0];
+    private int mMisses;
+
+    /**
+     * Downsample factor for luma of the specified size, {@code 1} if downsampling
+     * shouldn't be used
+     */
+    public synchronized int getFactor(final int width, final int height) {
+        final int spread = mSpread;
+        if (spread == 0) {
+            return 1;
+        }
+        final int size = Math.min(width, height);
+        final float moduleSize = mModuleSize;
+        for (final int factor : FACTORS) {
+            if (factor <= mMaxFactor && spread / factor >= MIN_DOWNSAMPLED_SPREAD &&
+                    size / factor >= MIN_DOWNSAMPLED_SIZE &&
+                    (moduleSize == 0f || moduleSize / factor >= MIN_DOWNSAMPLED_MODULE_SIZE)) {
+                return factor;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Downsampled pass with the specified factor didn't decode the frame, only smaller
+     * factors are used until the code is lost
+     */
+    public synchronized void onDownsampledMissed(final int factor) {
+        mMaxFactor = Math.min(mMaxFactor, factor / 2);
+    }
+
+    /**
+     * Update estimation with the frame decoding result
+     *
+     * @param result Result in coordinates of the decoded luma,
+     *               or {@code null} if frame wasn't decoded
+     * @param factor Downsample factor of the decoded luma, {@code 1} for full resolution
+     */
+    public synchronized void onDecoded(@Nullable final Result result, final int factor) {
+        if (result == null) {
+            if (++mMisses >= MAX_MISSES) {
+                mSpread = 0;
+                mModuleSize = 0f;
+                mMaxFactor = FACTORS[0];
+                mMisses = 0;
+            }
+            return;
+        }
+        mMisses = 0;
+        final int spread = getSpread(result);
+        mSpread = spread * factor;
+        mModuleSize = getModuleSize(result, spread) * factor;
+    }
+
+    /**
+     * Module size of the result, {@code 0} if it's unknown
+     */
+    private static float getModuleSize(@NonNull final Result result, final int spread) {
+        final ResultPoint[] points = result.getResultPoints();
+        if (points != null) {
+            float sum = 0f;
+            int count = 0;
+            for (final ResultPoint point : points) {
+                if (point instanceof FinderPattern) {
+                    sum += ((FinderPattern) point).getEstimatedModuleSize();
+                    count++;
+                }
+            }
+            if (count > 0) {
+                return sum / count;
+            }
+        }
+        // Result points of fixed width linear codes are the ends of the code
+        switch (result.getBarcodeFormat()) {
+            case EAN_13:
+            case UPC_A:
+                return spread / 95f;
+            case EAN_8:
+                return spread / 67f;
+            case UPC_E:
+                return spread / 51f;
+            default:
+                return 0f;
+        }
+    }
+
+    private static int getSpread(@NonNull final Result result) {
+        final ResultPoint[] points = result.getResultPoints();
+        if (points == null || points.length < 2) {
+            return 0;
+        }
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        for (final ResultPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            final float x = point.getX();
+            final float y = point.getY();
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x);
+            bottom = Math.max(bottom, y);
+        }
+        if (right < left) {
+            return 0;
+        }
+        return (int) Math.max(right - left, bottom - top);
+    }
+}
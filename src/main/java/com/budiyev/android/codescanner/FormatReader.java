@@ -0,0 +1,544 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.aztec.AztecReader;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.maxicode.MaxiCodeReader;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import com.google.zxing.oned.CodaBarReader;
+import com.google.zxing.oned.Code128Reader;
+import com.google.zxing.oned.Code39Reader;
+import com.google.zxing.oned.Code93Reader;
+import com.google.zxing.oned.EAN13Reader;
+import com.google.zxing.oned.EAN8Reader;
+import com.google.zxing.oned.ITFReader;
+import com.google.zxing.oned.MultiFormatOneDReader;
+import com.google.zxing.oned.UPCAReader;
+import com.google.zxing.oned.UPCEReader;
+import com.google.zxing.oned.rss.RSS14Reader;
+import com.google.zxing.oned.rss.expanded.RSSExpandedReader;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.qrcode.QRCodeReader;
+
+/**
+ * Replacement of {@link com.google.zxing.MultiFormatReader}, which tries decoding attempts
+ * (binarizer of the {@link BinarizerChain} and polarity) and reader families in the order
+ * given by {@link DecodeStrategy}, or in the chain order and the fixed order
+ * of {@link com.google.zxing.MultiFormatReader}, if there's no strategy. Only readers
+ * of the requested formats are created; single one-dimensional format is decoded
+ * by its reader directly, single reader family is decoded without families dispatch.
+ * Not thread safe.
+ */
+final class FormatReader {
+
+    public static final int FAMILIES_COUNT = 6;
+    public static final int POLARITY_ANY = 0;
+    public static final int POLARITY_NORMAL = 1;
+    public static final int POLARITY_INVERTED = 2;
+    private static final int FAMILY_ONE_D = 0;
+    private static final int FAMILY_QR_CODE = 1;
+    private static final int FAMILY_DATA_MATRIX = 2;
+    private static final int FAMILY_AZTEC = 3;
+    private static final int FAMILY_PDF_417 = 4;
+    private static final int FAMILY_MAXICODE = 5;
+    private final Map<DecodeHintType, Object> mHints;
+    private final Map<DecodeHintType, Object> mTryHarderHints;
+    private final Reader[] mReaders;
+    private final int[] mFamilies;
+    private final List<Result> mResults;
+    private final FamiliesReader mFamiliesReader;
+    private final GenericMultipleBarcodeReader mMultipleReader;
+    private final QRCodeMultiReader mQrCodeMultipleReader;
+    private int[] mAttempts;
+    private int mSingleFamily;
+    private int mPolarity;
+    private DecodeDeadline mDeadline;
+    private Map<DecodeHintType, Object> mActiveHints;
+
+    public FormatReader() {
+        mHints = new EnumMap<>(DecodeHintType.class);
+        mTryHarderHints = new EnumMap<>(DecodeHintType.class);
+        mTryHarderHints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        mActiveHints = mHints;
+        mReaders = new Reader[FAMILIES_COUNT];
+        mFamilies = new int[FAMILIES_COUNT];
+        mResults = new ArrayList<>();
+        mFamiliesReader = new FamiliesReader();
+        mMultipleReader = new GenericMultipleBarcodeReader(mFamiliesReader);
+        mQrCodeMultipleReader = new QRCodeMultiReader();
+        mAttempts = new int[0];
+    }
+
+    /**
+     * Set formats to decode, all formats if empty
+     */
+    public void setFormats(@NonNull final Collection<BarcodeFormat> formats) {
+        mHints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        mTryHarderHints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        createReaders(formats);
+    }
+
+    /**
+     * Deadline to stop decoding at, checked between attempts, reader families
+     * and binarized rows, none by default
+     */
+    public void setDeadline(@Nullable final DecodeDeadline deadline) {
+        mDeadline = deadline;
+    }
+
+    /**
+     * Decode with {@link DecodeHintType#TRY_HARDER} hint, both hint sets are kept,
+     * so switching doesn't allocate
+     */
+    public void setTryHarder(final boolean tryHarder) {
+        mActiveHints = tryHarder ? mTryHarderHints : mHints;
+    }
+
+    public boolean isTryHarder() {
+        return mActiveHints == mTryHarderHints;
+    }
+
+    /**
+     * Decode attempts of the specified polarity only, {@link #POLARITY_ANY} by default
+     */
+    public void setPolarity(final int polarity) {
+        mPolarity = polarity;
+    }
+
+    /**
+     * Set decoder hints, all formats are decoded if hints don't contain
+     * {@link DecodeHintType#POSSIBLE_FORMATS}
+     */
+    @SuppressWarnings("unchecked")
+    public void setHints(@NonNull final Map<DecodeHintType, ?> hints) {
+        mHints.clear();
+        mHints.putAll(hints);
+        mTryHarderHints.clear();
+        mTryHarderHints.putAll(hints);
+        mTryHarderHints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        final Collection<BarcodeFormat> formats =
+                (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        createReaders(formats != null ? formats : Collections.<BarcodeFormat>emptyList());
+    }
+
+    private void createReaders(@NonNull final Collection<BarcodeFormat> formats) {
+        final Reader[] readers = mReaders;
+        final boolean all = formats.isEmpty();
+        int oneDCount = 0;
+        BarcodeFormat oneDFormat = null;
+        for (final BarcodeFormat format : formats) {
+            if (getFamily(format) == FAMILY_ONE_D) {
+                oneDCount++;
+                oneDFormat = format;
+            }
+        }
+        Reader oneDReader = null;
+        if (oneDCount == 1) {
+            oneDReader = createFormatReader(oneDFormat, mHints);
+        }
+        if (oneDReader == null && (all || oneDCount > 0)) {
+            oneDReader = new MultiFormatOneDReader(mHints);
+        }
+        readers[FAMILY_ONE_D] = oneDReader;
+        readers[FAMILY_QR_CODE] =
+                all || formats.contains(BarcodeFormat.QR_CODE) ? new QRCodeReader() : null;
+        readers[FAMILY_DATA_MATRIX] =
+                all || formats.contains(BarcodeFormat.DATA_MATRIX) ? new DataMatrixReader() : null;
+        readers[FAMILY_AZTEC] =
+                all || formats.contains(BarcodeFormat.AZTEC) ? new AztecReader() : null;
+        readers[FAMILY_PDF_417] =
+                all || formats.contains(BarcodeFormat.PDF_417) ? new PDF417Reader() : null;
+        readers[FAMILY_MAXICODE] =
+                all || formats.contains(BarcodeFormat.MAXICODE) ? new MaxiCodeReader() : null;
+        int singleFamily = -1;
+        for (int i = 0; i < FAMILIES_COUNT; i++) {
+            if (readers[i] != null) {
+                if (singleFamily >= 0) {
+                    singleFamily = -1;
+                    break;
+                }
+                singleFamily = i;
+            }
+        }
+        mSingleFamily = singleFamily;
+    }
+
+    /**
+     * Dedicated reader of the format, which doesn't need to be dispatched
+     * by {@link com.google.zxing.MultiFormatReader} or {@link MultiFormatOneDReader}
+     *
+     * @return Reader or {@code null} if format has no dedicated reader
+     */
+    @Nullable
+    static Reader createFormatReader(@NonNull final BarcodeFormat format,
+            @NonNull final Map<DecodeHintType, ?> hints) {
+        switch (format) {
+            case QR_CODE:
+                return new QRCodeReader();
+            case DATA_MATRIX:
+                return new DataMatrixReader();
+            case AZTEC:
+                return new AztecReader();
+            case PDF_417:
+                return new PDF417Reader();
+            case MAXICODE:
+                return new MaxiCodeReader();
+            case CODABAR:
+                return new CodaBarReader();
+            case CODE_39:
+                return new Code39Reader(
+                        hints.get(DecodeHintType.ASSUME_CODE_39_CHECK_DIGIT) != null);
+            case CODE_93:
+                return new Code93Reader();
+            case CODE_128:
+                return new Code128Reader();
+            case EAN_8:
+                return new EAN8Reader();
+            case EAN_13:
+                return new EAN13Reader();
+            case ITF:
+                return new ITFReader();
+            case UPC_A:
+                return new UPCAReader();
+            case UPC_E:
+                return new UPCEReader();
+            case RSS_14:
+                return new RSS14Reader();
+            case RSS_EXPANDED:
+                return new RSSExpandedReader();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Decode luminance source with each binarizer of the chain in normal and inverted polarity
+     *
+     * @param strategy Order of attempts and families, fixed order if {@code null}
+     * @param metrics  Metrics to record binarization and decoding time to
+     */
+    @NonNull
+    public Result decode(@NonNull final LuminanceSource source,
+            @NonNull final BinarizerChain binarizerChain, @Nullable final DecodeStrategy strategy,
+            @Nullable final ScannerMetrics metrics) throws ReaderException {
+        decode(source, binarizerChain, strategy, 1, metrics);
+        final Result result = mResults.get(0);
+        mResults.clear();
+        return result;
+    }
+
+    /**
+     * Decode multiple distinct codes from luminance source, with the first attempt,
+     * which finds any
+     *
+     * @param maxResults Maximum number of codes to decode
+     * @return Results in the order they were found
+     * @see #decode(LuminanceSource, BinarizerChain, DecodeStrategy, ScannerMetrics)
+     */
+    @NonNull
+    public List<Result> decodeMultiple(@NonNull final LuminanceSource source,
+            @NonNull final BinarizerChain binarizerChain, @Nullable final DecodeStrategy strategy,
+            final int maxResults, @Nullable final ScannerMetrics metrics)
+            throws ReaderException {
+        decode(source, binarizerChain, strategy, maxResults, metrics);
+        final List<Result> results = new ArrayList<>(mResults);
+        mResults.clear();
+        return results;
+    }
+
+    private void decode(@NonNull final LuminanceSource source,
+            @NonNull final BinarizerChain binarizerChain, @Nullable final DecodeStrategy strategy,
+            final int maxResults, @Nullable final ScannerMetrics metrics)
+            throws ReaderException {
+        final int attemptsCount = binarizerChain.size() * 2;
+        int[] attempts = mAttempts;
+        if (attempts.length != attemptsCount) {
+            attempts = new int[attemptsCount];
+            mAttempts = attempts;
+        }
+        final int[] families = mFamilies;
+        if (strategy != null) {
+            strategy.order(attempts, families);
+        } else {
+            for (int i = 0; i < attemptsCount; i++) {
+                attempts[i] = i;
+            }
+            // Same order as MultiFormatReader: one-dimensional codes last with TRY_HARDER hint
+            final int shift = mActiveHints.containsKey(DecodeHintType.TRY_HARDER) ? 1 : 0;
+            for (int i = 0; i < FAMILIES_COUNT; i++) {
+                families[i] = (i + shift) % FAMILIES_COUNT;
+            }
+        }
+        if (metrics != null) {
+            metrics.increment(ScannerMetrics.Counter.FRAMES_DECODED);
+        }
+        LuminanceSource invertedSource = null;
+        final DecodeDeadline deadline = mDeadline;
+        final int polarity = mPolarity;
+        for (final int attempt : attempts) {
+            if (deadline != null && deadline.isExpired()) {
+                break;
+            }
+            final boolean inverted = isInverted(attempt);
+            if (polarity == POLARITY_NORMAL && inverted ||
+                    polarity == POLARITY_INVERTED && !inverted) {
+                continue;
+            }
+            final LuminanceSource attemptSource;
+            if (inverted) {
+                if (invertedSource == null) {
+                    invertedSource = source.invert();
+                }
+                attemptSource = invertedSource;
+                if (metrics != null) {
+                    metrics.increment(ScannerMetrics.Counter.INVERTED_RETRIES);
+                }
+            } else {
+                attemptSource = source;
+            }
+            final int binarizerIndex = attempt / 2;
+            Binarizer binarizer = binarizerChain.get(binarizerIndex).create(attemptSource);
+            if (deadline != null) {
+                binarizer = new DeadlineBinarizer(binarizer, deadline);
+            }
+            final long attemptStart = System.nanoTime();
+            boolean success = false;
+            try {
+                if (metrics != null) {
+                    final TimingBinarizer timingBinarizer = new TimingBinarizer(binarizer);
+                    try {
+                        success = decode(new BinaryBitmap(timingBinarizer), attempt, strategy,
+                                maxResults);
+                    } finally {
+                        final long binarizeNanos = timingBinarizer.getElapsedNanos();
+                        metrics.record(ScannerMetrics.Stage.BINARIZE, binarizeNanos);
+                        metrics.record(ScannerMetrics.Stage.DECODE,
+                                System.nanoTime() - attemptStart - binarizeNanos);
+                    }
+                } else {
+                    success = decode(new BinaryBitmap(binarizer), attempt, strategy, maxResults);
+                }
+            } finally {
+                binarizerChain.record(binarizerIndex, System.nanoTime() - attemptStart,
+                        success);
+            }
+            if (success) {
+                return;
+            }
+        }
+        throw NotFoundException.getNotFoundInstance();
+    }
+
+    /**
+     * Decode bitmap into {@link #mResults}
+     */
+    private boolean decode(@NonNull final BinaryBitmap bitmap, final int attempt,
+            @Nullable final DecodeStrategy strategy, final int maxResults) {
+        final List<Result> results = mResults;
+        if (maxResults == 1) {
+            final Result result = decodeFamilies(bitmap, attempt, strategy, -1);
+            if (result != null) {
+                results.add(result);
+                return true;
+            } else {
+                return false;
+            }
+        }
+        // Finder patterns of different QR codes confuse the generic search,
+        // QR codes are searched by the dedicated reader
+        if (mReaders[FAMILY_QR_CODE] != null) {
+            try {
+                addDistinct(results, mQrCodeMultipleReader.decodeMultiple(bitmap, mActiveHints),
+                        maxResults);
+                if (strategy != null) {
+                    strategy.onDecoded(attempt, FAMILY_QR_CODE);
+                }
+            } catch (final ReaderException ignored) {
+            }
+        }
+        final int remaining = maxResults - results.size();
+        if (remaining > 0) {
+            final FamiliesReader familiesReader = mFamiliesReader;
+            familiesReader.prepare(attempt, strategy, remaining);
+            try {
+                addDistinct(results, mMultipleReader.decodeMultiple(bitmap, mActiveHints),
+                        maxResults);
+            } catch (final ReaderException ignored) {
+            } finally {
+                familiesReader.prepare(0, null, 0);
+            }
+        }
+        return !results.isEmpty();
+    }
+
+    /**
+     * @param excludedFamily Family to skip, {@code -1} to try all families
+     */
+    @Nullable
+    private Result decodeFamilies(@NonNull final BinaryBitmap bitmap, final int attempt,
+            @Nullable final DecodeStrategy strategy, final int excludedFamily) {
+        final int singleFamily = mSingleFamily;
+        if (singleFamily >= 0) {
+            return singleFamily != excludedFamily ?
+                    decodeFamily(bitmap, attempt, strategy, singleFamily) : null;
+        }
+        final Reader[] readers = mReaders;
+        final DecodeDeadline deadline = mDeadline;
+        for (final int family : mFamilies) {
+            if (deadline != null && deadline.isExpired()) {
+                break;
+            }
+            if (readers[family] == null || family == excludedFamily) {
+                continue;
+            }
+            final Result result = decodeFamily(bitmap, attempt, strategy, family);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private Result decodeFamily(@NonNull final BinaryBitmap bitmap, final int attempt,
+            @Nullable final DecodeStrategy strategy, final int family) {
+        final Reader reader = mReaders[family];
+        try {
+            final Result result = reader.decode(bitmap, mActiveHints);
+            if (strategy != null) {
+                strategy.onDecoded(attempt, family);
+            }
+            return result;
+        } catch (final ReaderException ignored) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private static void addDistinct(@NonNull final List<Result> results,
+            @NonNull final Result[] newResults, final int maxResults) {
+        for (final Result result : newResults) {
+            if (results.size() >= maxResults) {
+                break;
+            }
+            if (!containsCode(results, result)) {
+                results.add(result);
+            }
+        }
+    }
+
+    static boolean containsCode(@NonNull final List<Result> results,
+            @NonNull final Result result) {
+        for (final Result other : results) {
+            if (other.getBarcodeFormat() == result.getBarcodeFormat() &&
+                    other.getText().equals(result.getText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInverted(final int attempt) {
+        return attempt % 2 == 1;
+    }
+
+    private static int getFamily(@NonNull final BarcodeFormat format) {
+        switch (format) {
+            case QR_CODE:
+                return FAMILY_QR_CODE;
+            case DATA_MATRIX:
+                return FAMILY_DATA_MATRIX;
+            case AZTEC:
+                return FAMILY_AZTEC;
+            case PDF_417:
+                return FAMILY_PDF_417;
+            case MAXICODE:
+                return FAMILY_MAXICODE;
+            default:
+                return FAMILY_ONE_D;
+        }
+    }
+
+    /**
+     * Reader of all families but QR code for {@link GenericMultipleBarcodeReader}, which stops
+     * finding new codes after the limit has been reached
+     */
+    private final class FamiliesReader implements Reader {
+        private int mAttempt;
+        private DecodeStrategy mStrategy;
+        private int mRemaining;
+
+        public void prepare(final int attempt, @Nullable final DecodeStrategy strategy,
+                final int maxResults) {
+            mAttempt = attempt;
+            mStrategy = strategy;
+            mRemaining = maxResults;
+        }
+
+        @Override
+        public Result decode(final BinaryBitmap image) throws NotFoundException {
+            return decode(image, null);
+        }
+
+        @Override
+        public Result decode(final BinaryBitmap image, final Map<DecodeHintType, ?> hints)
+                throws NotFoundException {
+            if (mRemaining <= 0) {
+                throw NotFoundException.getNotFoundInstance();
+            }
+            final Result result = decodeFamilies(image, mAttempt, mStrategy, FAMILY_QR_CODE);
+            if (result == null) {
+                throw NotFoundException.getNotFoundInstance();
+            }
+            mRemaining--;
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            // Readers are reset after each decoding
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Skips frames, which are nearly identical to the last frame that failed to decode,
+ * so that decoder doesn't waste CPU while camera is looking at the same scene without a code.
+ * <br>
+ * Frames are compared by signatures, tiny luma thumbnails of the viewfinder frame.
+ * A frame is decoded anyway after the specified number of skipped frames in a row,
+ * or after {@link #invalidate()}, which code scanner calls when auto focus completes.
+ *
+ * @see CodeScanner#setFrameDifferenceFilter(FrameDifferenceFilter)
+ */
+public final class FrameDifferenceFilter {
+
+    /**
+     * Default threshold of mean absolute difference between signatures, {@code 0-255}
+     */
+    public static final int DEFAULT_THRESHOLD = 4;
+
+    /**
+     * Default number of frames, which can be skipped in a row
+     */
+    public static final int DEFAULT_FORCED_DECODE_INTERVAL = 15;
+
+    static final int SIGNATURE_SIZE = 16;
+    static final int SIGNATURE_LENGTH = SIGNATURE_SIZE * SIGNATURE_SIZE;
+    private static final int CELL_SAMPLES = 4;
+    private final AtomicLong mSkippedCount = new AtomicLong();
+    private final byte[] mLastSignature = new byte[SIGNATURE_LENGTH];
+    private volatile int mThreshold = DEFAULT_THRESHOLD;
+    private volatile int mForcedDecodeInterval = DEFAULT_FORCED_DECODE_INTERVAL;
+    private boolean mLastSignatureValid;
+    private int mSkippedInRow;
+
+    /**
+     * Filter with default threshold and forced decode interval
+     */
+    public FrameDifferenceFilter() {
+    }
+
+    public int getThreshold() {
+        return mThreshold;
+    }
+
+    /**
+     * Frames, which mean absolute difference from the last failed one is lower
+     * than threshold, are skipped
+     *
+     * @param threshold Threshold, {@code 0-255}, {@code 0} disables skipping
+     */
+    public void setThreshold(final int threshold) {
+        if (threshold < 0 || threshold > 255) {
+            throw new IllegalArgumentException("Threshold must be between 0 and 255");
+        }
+        mThreshold = threshold;
+    }
+
+    public int getForcedDecodeInterval() {
+        return mForcedDecodeInterval;
+    }
+
+    /**
+     * Maximum number of frames, which can be skipped in a row
+     */
+    public void setForcedDecodeInterval(final int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Forced decode interval must be greater than zero");
+        }
+        mForcedDecodeInterval = interval;
+    }
+
+    /**
+     * Number of skipped frames
+     */
+    public long getSkippedFramesCount() {
+        return mSkippedCount.get();
+    }
+
+    public void resetCounts() {
+        mSkippedCount.set(0L);
+    }
+
+    /**
+     * Decode the next frame regardless of its difference from the last failed one
+     */
+    public synchronized void invalidate() {
+        mLastSignatureValid = false;
+        mSkippedInRow = 0;
+    }
+
+    /**
+     * Compute signature of the frame luma, each signature cell is an average
+     * of a few samples of the corresponding frame area
+     */
+    static void computeSignature(@NonNull final byte[] luma, final int width, final int height,
+            @NonNull final byte[] signature) {
+        for (int cellY = 0; cellY < SIGNATURE_SIZE; cellY++) {
+            final int top = cellY * height / SIGNATURE_SIZE;
+            final int cellHeight = (cellY + 1) * height / SIGNATURE_SIZE - top;
+            for (int cellX = 0; cellX < SIGNATURE_SIZE; cellX++) {
+                final int left = cellX * width / SIGNATURE_SIZE;
+                final int cellWidth = (cellX + 1) * width / SIGNATURE_SIZE - left;
+                int sum = 0;
+                for (int i = 0; i < CELL_SAMPLES; i++) {
+                    final int row =
+                            Math.min(top + (2 * i + 1) * cellHeight / (2 * CELL_SAMPLES),
+                                    height - 1) * width;
+                    for (int j = 0; j < CELL_SAMPLES; j++) {
+                        final int x = Math.min(left + (2 * j + 1) * cellWidth / (2 * CELL_SAMPLES),
+                                width - 1);
+                        sum += luma[row + x] & 0xff;
+                    }
+                }
+                signature[cellY * SIGNATURE_SIZE + cellX] =
+                        (byte) (sum / (CELL_SAMPLES * CELL_SAMPLES));
+            }
+        }
+    }
+
+    /**
+     * Sum of absolute differences between signatures
+     */
+    static int getDifference(@NonNull final byte[] signature, @NonNull final byte[] other) {
+        int difference = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            difference += Math.abs((signature[i] & 0xff) - (other[i] & 0xff));
+        }
+        return difference;
+    }
+
+    /**
+     * Whether frame with the specified signature should be skipped
+     */
+    synchronized boolean shouldSkip(@NonNull final byte[] signature) {
+        final int threshold = mThreshold;
+        if (!mLastSignatureValid || threshold == 0 ||
+                mSkippedInRow >= mForcedDecodeInterval) {
+            mSkippedInRow = 0;
+            return false;
+        }
+        if (getDifference(signature, mLastSignature) < threshold * SIGNATURE_LENGTH) {
+            mSkippedInRow++;
+            mSkippedCount.incrementAndGet();
+            return true;
+        } else {
+            mSkippedInRow = 0;
+            return false;
+        }
+    }
+
+    /**
+     * Remember signature of the frame, if it failed to decode
+     */
+    synchronized void onDecoded(@NonNull final byte[] signature, final boolean success) {
+        if (success) {
+            mLastSignatureValid = false;
+        } else {
+            System.arraycopy(signature, 0, mLastSignature, 0, SIGNATURE_LENGTH);
+            mLastSignatureValid = true;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Preview frame, which luminance is read by decoder
+ */
+interface FrameImage {
+
+    /**
+     * Copy luma of the frame rect into output buffer, rotating and mirroring it on the fly
+     *
+     * @see Utils#cropRotateLuma(byte[], int, int, int, Rect, boolean, byte[])
+     */
+    void cropRotateLuma(int width, int height, int rotation, @NonNull Rect frameRect,
+            boolean reverseHorizontal, @NonNull byte[] output);
+
+    /**
+     * Frame in NV21 format, may be a copy if frame is stored differently
+     */
+    @NonNull
+    byte[] getNv21();
+
+    /**
+     * Return frame to its source, frame can't be used after that
+     */
+    void release();
+}
@@ -0,0 +1,269 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Cheap pre-decode check, which rejects frames that can't be decoded: too dark or too bright,
+ * without contrast (blank surface) or blurry (camera is focusing). Statistics are computed
+ * on a subsampled grid of the viewfinder frame luma, so the check takes microseconds.
+ * <br>
+ * Thresholds can be changed at any time, threshold of {@code 0} disables the corresponding
+ * check. Rejected frames are counted per reason.
+ *
+ * @see CodeScanner#setFrameQualityGate(FrameQualityGate)
+ */
+public final class FrameQualityGate {
+
+    /**
+     * Default minimum mean brightness, {@code 0-255}
+     */
+    public static final int DEFAULT_MIN_BRIGHTNESS = 20;
+
+    /**
+     * Default maximum mean brightness, {@code 0-255}
+     */
+    public static final int DEFAULT_MAX_BRIGHTNESS = 250;
+
+    /**
+     * Default minimum contrast, standard deviation of brightness
+     */
+    public static final int DEFAULT_MIN_CONTRAST = 8;
+
+    /**
+     * Default minimum sharpness, mean squared brightness difference between adjacent pixels
+     */
+    public static final int DEFAULT_MIN_SHARPNESS = 20;
+
+    /**
+     * Default number of samples along the smaller side of the frame
+     */
+    public static final int DEFAULT_GRID_SIZE = 48;
+
+    private static final Rejection[] REJECTIONS = Rejection.values();
+    private final AtomicLong mCheckedCount = new AtomicLong();
+    private final AtomicLongArray mRejectedCounts = new AtomicLongArray(REJECTIONS.length);
+    private volatile int mMinBrightness = DEFAULT_MIN_BRIGHTNESS;
+    private volatile int mMaxBrightness = DEFAULT_MAX_BRIGHTNESS;
+    private volatile int mMinContrast = DEFAULT_MIN_CONTRAST;
+    private volatile int mMinSharpness = DEFAULT_MIN_SHARPNESS;
+    private volatile int mGridSize = DEFAULT_GRID_SIZE;
+
+    /**
+     * Quality gate with default thresholds
+     */
+    public FrameQualityGate() {
+    }
+
+    public int getMinBrightness() {
+        return mMinBrightness;
+    }
+
+    /**
+     * Frames with lower mean brightness are rejected as {@link Rejection#DARK}
+     *
+     * @param minBrightness Brightness, {@code 0-255}
+     */
+    public void setMinBrightness(final int minBrightness) {
+        mMinBrightness = checkBrightness(minBrightness);
+    }
+
+    public int getMaxBrightness() {
+        return mMaxBrightness;
+    }
+
+    /**
+     * Frames with higher mean brightness are rejected as {@link Rejection#BRIGHT},
+     * {@code 255} disables the check
+     *
+     * @param maxBrightness Brightness, {@code 0-255}
+     */
+    public void setMaxBrightness(final int maxBrightness) {
+        mMaxBrightness = checkBrightness(maxBrightness);
+    }
+
+    public int getMinContrast() {
+        return mMinContrast;
+    }
+
+    /**
+     * Frames with lower standard deviation of brightness are rejected as
+     * {@link Rejection#LOW_CONTRAST}
+     */
+    public void setMinContrast(final int minContrast) {
+        mMinContrast = checkNonNegative(minContrast);
+    }
+
+    public int getMinSharpness() {
+        return mMinSharpness;
+    }
+
+    /**
+     * Frames with lower mean squared brightness difference between adjacent pixels
+     * are rejected as {@link Rejection#BLURRY}
+     */
+    public void setMinSharpness(final int minSharpness) {
+        mMinSharpness = checkNonNegative(minSharpness);
+    }
+
+    public int getGridSize() {
+        return mGridSize;
+    }
+
+    /**
+     * Number of samples along the smaller side of the frame, more samples make
+     * the check more accurate and slower
+     */
+    public void setGridSize(final int gridSize) {
+        if (gridSize < 1) {
+            throw new IllegalArgumentException("Grid size must be greater than zero");
+        }
+        mGridSize = gridSize;
+    }
+
+    /**
+     * Number of checked frames
+     */
+    public long getCheckedFramesCount() {
+        return mCheckedCount.get();
+    }
+
+    /**
+     * Number of frames, rejected for the specified reason
+     */
+    public long getRejectedFramesCount(@NonNull final Rejection rejection) {
+        return mRejectedCounts.get(rejection.ordinal());
+    }
+
+    /**
+     * Reset checked and rejected frame counts to zero
+     */
+    public void resetCounts() {
+        mCheckedCount.set(0L);
+        for (int i = 0; i < REJECTIONS.length; i++) {
+            mRejectedCounts.set(i, 0L);
+        }
+    }
+
+    /**
+     * Check luma of the frame
+     *
+     * @return Rejection reason or {@code null} if frame should be decoded
+     */
+    @Nullable
+    Rejection check(@NonNull final byte[] luma, final int width, final int height) {
+        mCheckedCount.incrementAndGet();
+        final Rejection rejection = evaluate(luma, width, height);
+        if (rejection != null) {
+            mRejectedCounts.incrementAndGet(rejection.ordinal());
+        }
+        return rejection;
+    }
+
+    @Nullable
+    private Rejection evaluate(@NonNull final byte[] luma, final int width, final int height) {
+        if (width < 2 || height < 2) {
+            return null;
+        }
+        final int step = Math.max(1, Math.min(width, height) / mGridSize);
+        long count = 0L;
+        long sum = 0L;
+        long squaresSum = 0L;
+        long gradientSum = 0L;
+        for (int y = 0; y < height - 1; y += step) {
+            final int row = y * width;
+            for (int x = 0; x < width - 1; x += step) {
+                final int index = row + x;
+                final int value = luma[index] & 0xff;
+                final int dx = (luma[index + 1] & 0xff) - value;
+                final int dy = (luma[index + width] & 0xff) - value;
+                sum += value;
+                squaresSum += value * value;
+                gradientSum += dx * dx + dy * dy;
+                count++;
+            }
+        }
+        final long mean = sum / count;
+        if (mean < mMinBrightness) {
+            return Rejection.DARK;
+        }
+        if (mean > mMaxBrightness) {
+            return Rejection.BRIGHT;
+        }
+        final int minContrast = mMinContrast;
+        final long variance = squaresSum / count - mean * mean;
+        if (variance < (long) minContrast * minContrast) {
+            return Rejection.LOW_CONTRAST;
+        }
+        if (gradientSum / count < mMinSharpness) {
+            return Rejection.BLURRY;
+        }
+        return null;
+    }
+
+    private static int checkBrightness(final int brightness) {
+        if (brightness < 0 || brightness > 255) {
+            throw new IllegalArgumentException("Brightness must be between 0 and 255");
+        }
+        return brightness;
+    }
+
+    private static int checkNonNegative(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Threshold must be greater than or equal to zero");
+        }
+        return value;
+    }
+
+    /**
+     * Frame rejection reason
+     */
+    public enum Rejection {
+
+        /**
+         * Mean brightness is lower than minimum
+         */
+        DARK,
+
+        /**
+         * Mean brightness is higher than maximum
+         */
+        BRIGHT,
+
+        /**
+         * Standard deviation of brightness is lower than minimum
+         */
+        LOW_CONTRAST,
+
+        /**
+         * Mean squared brightness difference between adjacent pixels is lower than minimum
+         */
+        BLURRY
+    }
+}
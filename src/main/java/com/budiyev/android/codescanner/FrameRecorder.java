@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Writes raw preview frames with their geometry and timestamps into a memory-mapped file
+ *
+ * @see FrameRecording
+ */
+final class FrameRecorder implements Closeable {
+
+    static final int MAGIC = 0x43534652;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int FRAME_HEADER_SIZE = 40;
+    static final int OFFSET_FRAMES_COUNT = 8;
+    static final int OFFSET_DATA_END = 12;
+    static final int FLAG_REVERSE_HORIZONTAL = 1;
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private int mFramesCount;
+    private boolean mClosed;
+
+    public FrameRecorder(@NonNull final File file, final long maxSize) throws IOException {
+        if (maxSize <= HEADER_SIZE || maxSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid recording size");
+        }
+        mFile = new RandomAccessFile(file, "rw");
+        try {
+            mFile.setLength(0L);
+            mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, maxSize);
+        } catch (final IOException e) {
+            mFile.close();
+            throw e;
+        }
+        mBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        mBuffer.putInt(MAGIC);
+        mBuffer.putInt(VERSION);
+        mBuffer.putInt(0);
+        mBuffer.putLong(HEADER_SIZE);
+        mBuffer.position(HEADER_SIZE);
+    }
+
+    /**
+     * Record the frame
+     *
+     * @param image             NV21 image data
+     * @param imageSize         Image size
+     * @param orientation       Image rotation in degrees
+     * @param reverseHorizontal Image should be mirrored horizontally
+     * @param frameRect         Frame rect in rotated image coordinates
+     * @param timestamp         Frame timestamp in nanoseconds
+     * @return {@code true} if frame was recorded, {@code false} if recording is full or closed
+     */
+    public synchronized boolean record(@NonNull final byte[] image, @NonNull final Point imageSize,
+            final int orientation, final boolean reverseHorizontal, @NonNull final Rect frameRect,
+            final long timestamp) {
+        final MappedByteBuffer buffer = mBuffer;
+        if (mClosed || buffer.remaining() < FRAME_HEADER_SIZE + image.length) {
+            return false;
+        }
+        buffer.putLong(timestamp);
+        buffer.putInt(imageSize.getX());
+        buffer.putInt(imageSize.getY());
+        buffer.putShort((short) orientation);
+        buffer.put((byte) (reverseHorizontal ? FLAG_REVERSE_HORIZONTAL : 0));
+        buffer.put((byte) 0);
+        buffer.putInt(frameRect.getLeft());
+        buffer.putInt(frameRect.getTop());
+        buffer.putInt(frameRect.getRight());
+        buffer.putInt(frameRect.getBottom());
+        buffer.putInt(image.length);
+        buffer.put(image);
+        buffer.putInt(OFFSET_FRAMES_COUNT, ++mFramesCount);
+        buffer.putLong(OFFSET_DATA_END, buffer.position());
+        return true;
+    }
+
+    public synchronized int getFramesCount() {
+        return mFramesCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        final MappedByteBuffer buffer = mBuffer;
+        buffer.force();
+        try {
+            mFile.setLength(buffer.position());
+        } catch (final IOException ignored) {
+            // Recording remains valid, data end is stored in the header
+        } finally {
+            mFile.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Read-only view of the frames, recorded by {@link FrameRecorder}
+ */
+final class FrameRecording {
+
+    private final MappedByteBuffer mBuffer;
+    private final int mFramesCount;
+    private final int mDataEnd;
+
+    private FrameRecording(@NonNull final MappedByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < FrameRecorder.HEADER_SIZE ||
+                buffer.getInt(0) != FrameRecorder.MAGIC) {
+            throw new IOException("Not a frame recording");
+        }
+        if (buffer.getInt(4) != FrameRecorder.VERSION) {
+            throw new IOException("Unsupported frame recording version");
+        }
+        mFramesCount = buffer.getInt(FrameRecorder.OFFSET_FRAMES_COUNT);
+        mDataEnd = (int) Math.min(buffer.getLong(FrameRecorder.OFFSET_DATA_END), buffer.limit());
+        mBuffer = buffer;
+    }
+
+    @NonNull
+    public static FrameRecording open(@NonNull final File file) throws IOException {
+        try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            final FileChannel channel = randomAccessFile.getChannel();
+            return new FrameRecording(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+        }
+    }
+
+    public int getFramesCount() {
+        return mFramesCount;
+    }
+
+    @NonNull
+    public Reader reader() {
+        return new Reader(mBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN), mDataEnd);
+    }
+
+    /**
+     * Sequential frame reader, not thread safe
+     */
+    public static final class Reader {
+        private final ByteBuffer mBuffer;
+        private final int mDataEnd;
+
+        private Reader(@NonNull final ByteBuffer buffer, final int dataEnd) {
+            buffer.position(FrameRecorder.HEADER_SIZE);
+            mBuffer = buffer;
+            mDataEnd = dataEnd;
+        }
+
+        /**
+         * Read next frame
+         *
+         * @return Frame or {@code null} if there are no more frames
+         */
+        @Nullable
+        public Frame next() {
+            final ByteBuffer buffer = mBuffer;
+            if (mDataEnd - buffer.position() < FrameRecorder.FRAME_HEADER_SIZE) {
+                return null;
+            }
+            final long timestamp = buffer.getLong();
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            final int orientation = buffer.getShort();
+            final int flags = buffer.get();
+            buffer.get();
+            final Rect frameRect =
+                    new Rect(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+            final int length = buffer.getInt();
+            if (length < 0 || mDataEnd - buffer.position() < length) {
+                return null;
+            }
+            final byte[] image = new byte[length];
+            buffer.get(image);
+            return new Frame(image, new Point(width, height), orientation,
+                    (flags & FrameRecorder.FLAG_REVERSE_HORIZONTAL) != 0, frameRect, timestamp);
+        }
+    }
+
+    public static final class Frame {
+        private final byte[] mImage;
+        private final Point mImageSize;
+        private final int mOrientation;
+        private final boolean mReverseHorizontal;
+        private final Rect mFrameRect;
+        private final long mTimestamp;
+
+        private Frame(@NonNull final byte[] image, @NonNull final Point imageSize,
+                final int orientation, final boolean reverseHorizontal,
+                @NonNull final Rect frameRect, final long timestamp) {
+            mImage = image;
+            mImageSize = imageSize;
+            mOrientation = orientation;
+            mReverseHorizontal = reverseHorizontal;
+            mFrameRect = frameRect;
+            mTimestamp = timestamp;
+        }
+
+        @NonNull
+        public byte[] getImage() {
+            return mImage;
+        }
+
+        @NonNull
+        public Point getImageSize() {
+            return mImageSize;
+        }
+
+        public int getOrientation() {
+            return mOrientation;
+        }
+
+        public boolean shouldReverseHorizontal() {
+            return mReverseHorizontal;
+        }
+
+        /**
+         * Frame rect in rotated image coordinates
+         */
+        @NonNull
+        public Rect getFrameRect() {
+            return mFrameRect;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        /**
+         * Create decode task for this frame; as the frame rect is already in image coordinates,
+         * preview and view sizes are equal to the rotated image size
+         */
+        @NonNull
+        public DecodeTask createDecodeTask() {
+            final int width = mImageSize.getX();
+            final int height = mImageSize.getY();
+            final Point rotatedSize =
+                    Utils.isPortrait(mOrientation) ? new Point(height, width) : mImageSize;
+            return new DecodeTask(new Nv21FrameImage(mImage, null), mImageSize, rotatedSize,
+                    rotatedSize, mFrameRect, mOrientation, mReverseHorizontal);
+        }
+    }
+}
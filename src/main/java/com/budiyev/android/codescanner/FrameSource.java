@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import android.view.SurfaceHolder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Source of preview frames, which decouples code scanner from the camera implementation.
+ * <br>
+ * All rects are in rotated image coordinates, i.e. in the coordinate space of the image
+ * after {@link #getOrientation()} rotation is applied, like the one, decoder works with.
+ */
+interface FrameSource {
+
+    /**
+     * Open and configure the source for the view of the specified size
+     *
+     * @throws CodeScannerException if source can't be opened
+     */
+    void open(int viewWidth, int viewHeight);
+
+    /**
+     * Identifier of the opened camera
+     */
+    int getCameraId();
+
+    /**
+     * Size of the frames in sensor orientation
+     */
+    @NonNull
+    Point getImageSize();
+
+    /**
+     * Clockwise rotation in degrees, which should be applied to frames to match the display
+     */
+    int getOrientation();
+
+    boolean shouldReverseHorizontal();
+
+    boolean isAutoFocusSupported();
+
+    boolean isFlashSupported();
+
+    /**
+     * Start delivering frames to the listener and displaying preview
+     *
+     * @param surfaceHolder   Holder of the surface to display preview on, may be
+     *                        {@code null} for sources, which don't display preview
+     * @param listener        Frame listener
+     * @param buffersCount    Number of reusable frame buffers, {@code 0} to allocate new buffer
+     *                        for each frame
+     * @param heldFramesCount Maximum number of frames, which listener may hold unreleased
+     *                        at the same time while decoding them
+     */
+    void startPreview(@Nullable SurfaceHolder surfaceHolder, @NonNull FrameListener listener,
+            int buffersCount, int heldFramesCount) throws Exception;
+
+    void stopPreview();
+
+    /**
+     * Enable or disable automatic focusing
+     *
+     * @param area Focus and metering area, if supported
+     */
+    void setAutoFocusEnabled(boolean enabled, @NonNull AutoFocusMode mode, @Nullable Rect area);
+
+    /**
+     * Focus once, into the specified area if it's not {@code null}
+     */
+    void autoFocus(@Nullable Rect area, @NonNull FocusCallback callback);
+
+    void cancelAutoFocus();
+
+    void setFlashEnabled(boolean enabled);
+
+    void setZoom(int zoom);
+
+    void release();
+
+    interface Factory {
+        @NonNull
+        FrameSource create(int cameraId);
+    }
+
+    interface FrameListener {
+
+        /**
+         * Called for each frame, frame should be released when it's no longer needed
+         *
+         * @param image     Frame
+         * @param timestamp Frame timestamp in nanoseconds
+         * @see FrameImage#release()
+         */
+        void onFrame(@NonNull FrameImage image, long timestamp);
+    }
+
+    interface BufferRecycler {
+        void recycle(@NonNull byte[] buffer);
+    }
+
+    interface FocusCallback {
+        void onFocused(boolean success);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.List;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Callback of the localization stage, which receives regions of a frame, that look like codes,
+ * before they are decoded; can be used to show a hint while code isn't decoded yet
+ *
+ * @see CodeScanner#setLocalizeCallback(LocalizeCallback)
+ * @see CodeLocalizer
+ */
+public interface LocalizeCallback {
+
+    /**
+     * Called when code localizer has processed a frame
+     * <br>
+     * Note that this method always called on a worker thread
+     *
+     * @param regions Regions in the same coordinates as result points of decoded codes,
+     *                largest first, empty if there are no regions in the frame
+     * @see Handler
+     * @see Looper#getMainLooper()
+     * @see Activity#runOnUiThread(Runnable)
+     */
+    @WorkerThread
+    void onLocalized(@NonNull List<android.graphics.Rect> regions);
+}
@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Lock-free single-slot hand-off, which always keeps the latest item only;
+ * {@link #put} never blocks, overwritten, cleared and rejected items are passed to the
+ * {@link DropListener}
+ */
+final class Mailbox<T> {
+
+    private final AtomicReference<T> mSlot = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<Thread> mWaiters = new ConcurrentLinkedQueue<>();
+    private final AtomicLong mOverwrittenCount = new AtomicLong();
+    private final DropListener<T> mDropListener;
+    private volatile boolean mClosed;
+
+    public Mailbox(@NonNull final DropListener<T> dropListener) {
+        mDropListener = dropListener;
+    }
+
+    /**
+     * Put the item into the mailbox
+     *
+     * @return {@code true} if pending item was overwritten, {@code false} otherwise
+     */
+    public boolean put(@NonNull final T item) {
+        if (mClosed) {
+            mDropListener.onDropped(item);
+            return false;
+        }
+        final T previous = mSlot.getAndSet(item);
+        if (previous != null) {
+            mOverwrittenCount.incrementAndGet();
+            mDropListener.onDropped(previous);
+        }
+        if (mClosed) {
+            clear();
+        } else {
+            final Thread waiter = mWaiters.poll();
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+        return previous != null;
+    }
+
+    /**
+     * Wait for the next item
+     *
+     * @return Item or {@code null} if mailbox is closed or calling thread is interrupted
+     */
+    @Nullable
+    public T take() {
+        final Thread thread = Thread.currentThread();
+        for (; ; ) {
+            T item = mSlot.getAndSet(null);
+            if (item != null) {
+                return item;
+            }
+            if (mClosed || thread.isInterrupted()) {
+                return null;
+            }
+            mWaiters.offer(thread);
+            item = mSlot.getAndSet(null);
+            if (item != null || mClosed) {
+                if (!mWaiters.remove(thread)) {
+                    // Wake-up, addressed to this thread, has already been consumed,
+                    // pass it to the next waiter
+                    final Thread waiter = mWaiters.poll();
+                    if (waiter != null) {
+                        LockSupport.unpark(waiter);
+                    }
+                }
+                return item;
+            }
+            LockSupport.park(this);
+            mWaiters.remove(thread);
+        }
+    }
+
+    /**
+     * Drop pending item, if any
+     */
+    public void clear() {
+        final T item = mSlot.getAndSet(null);
+        if (item != null) {
+            mDropListener.onDropped(item);
+        }
+    }
+
+    /**
+     * Reject all further items, drop the pending one and wake up all waiting threads
+     */
+    public void close() {
+        mClosed = true;
+        clear();
+        for (Thread waiter = mWaiters.poll(); waiter != null; waiter = mWaiters.poll()) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Whether there's no pending item
+     */
+    public boolean isEmpty() {
+        return mSlot.get() == null;
+    }
+
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * Number of items, which were replaced by newer ones before being taken
+     */
+    public long getOverwrittenCount() {
+        return mOverwrittenCount.get();
+    }
+
+    public interface DropListener<T> {
+        void onDropped(@NonNull T item);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+final class Nv21FrameImage implements FrameImage {
+
+    private final byte[] mData;
+    private final FrameSource.BufferRecycler mBufferRecycler;
+
+    public Nv21FrameImage(@NonNull final byte[] data,
+            @Nullable final FrameSource.BufferRecycler bufferRecycler) {
+        mData = data;
+        mBufferRecycler = bufferRecycler;
+    }
+
+    @Override
+    public void cropRotateLuma(final int width, final int height, final int rotation,
+            @NonNull final Rect frameRect, final boolean reverseHorizontal,
+            @NonNull final byte[] output) {
+        Utils.cropRotateLuma(mData, width, height, rotation, frameRect, reverseHorizontal,
+                output);
+    }
+
+    @NonNull
+    @Override
+    public byte[] getNv21() {
+        return mData;
+    }
+
+    @Override
+    public void release() {
+        final FrameSource.BufferRecycler bufferRecycler = mBufferRecycler;
+        if (bufferRecycler != null) {
+            bufferRecycler.recycle(mData);
+        }
+    }
+}
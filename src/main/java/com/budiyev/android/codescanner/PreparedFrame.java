@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Cropped and rotated frame rect luma, which preparing stage of the pipelined decoder
+ * hands off to decoding stage; frames are pooled and reused
+ */
+final class PreparedFrame {
+
+    private final LumaBuffer mLumaBuffer = new LumaBuffer();
+    private final byte[] mSignature = new byte[FrameDifferenceFilter.SIGNATURE_LENGTH];
+    private byte[] mLuma;
+    private Rect mFrameRect;
+    private boolean mReverseHorizontal;
+    private long mSequence;
+
+    /**
+     * Obtain luma buffer for the specified frame rect
+     *
+     * @param reverseHorizontal Whether luma is mirrored horizontally within the frame rect
+     */
+    @NonNull
+    public byte[] obtainLuma(@NonNull final Rect frameRect, final boolean reverseHorizontal) {
+        final byte[] luma = mLumaBuffer.obtain(frameRect.getWidth() * frameRect.getHeight());
+        mLuma = luma;
+        mFrameRect = frameRect;
+        mReverseHorizontal = reverseHorizontal;
+        return luma;
+    }
+
+    @NonNull
+    public byte[] getLuma() {
+        return mLuma;
+    }
+
+    /**
+     * Frame rect in image coordinates
+     */
+    @NonNull
+    public Rect getFrameRect() {
+        return mFrameRect;
+    }
+
+    /**
+     * Buffer for the frame signature
+     *
+     * @see FrameDifferenceFilter
+     */
+    @NonNull
+    public byte[] getSignature() {
+        return mSignature;
+    }
+
+    public boolean shouldReverseHorizontal() {
+        return mReverseHorizontal;
+    }
+
+    public long getSequence() {
+        return mSequence;
+    }
+
+    public void setSequence(final long sequence) {
+        mSequence = sequence;
+    }
+}
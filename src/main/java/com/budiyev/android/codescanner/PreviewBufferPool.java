@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Buffers are recycled by decoder threads, and are returned to the camera
+ * on the thread, which controls it
+ */
+final class PreviewBufferPool implements FrameSource.BufferRecycler {
+
+    private final Camera mCamera;
+    private final Handler mCameraHandler;
+    private final int mBufferSize;
+    private final int mBuffersCount;
+    private volatile boolean mReleased;
+
+    /**
+     * @param cameraHandler Handler of the thread, which controls the camera
+     */
+    public PreviewBufferPool(@NonNull final Camera camera, @NonNull final Handler cameraHandler,
+            @NonNull final Point imageSize, final int buffersCount) {
+        mCamera = camera;
+        mCameraHandler = cameraHandler;
+        mBufferSize = getBufferSize(imageSize.getX(), imageSize.getY());
+        mBuffersCount = buffersCount;
+    }
+
+    public void fill() {
+        for (int i = 0; i < mBuffersCount; i++) {
+            mCamera.addCallbackBuffer(new byte[mBufferSize]);
+        }
+    }
+
+    @Override
+    public void recycle(@NonNull final byte[] buffer) {
+        if (mReleased || buffer.length != mBufferSize) {
+            return;
+        }
+        if (mCameraHandler.getLooper() == Looper.myLooper()) {
+            addBuffer(buffer);
+        } else {
+            mCameraHandler.post(new RecycleTask(buffer));
+        }
+    }
+
+    public void release() {
+        mReleased = true;
+    }
+
+    public boolean isReleased() {
+        return mReleased;
+    }
+
+    private void addBuffer(@NonNull final byte[] buffer) {
+        // Pool might have been released while the buffer was being posted
+        if (mReleased) {
+            return;
+        }
+        try {
+            mCamera.addCallbackBuffer(buffer);
+        } catch (final Exception ignored) {
+        }
+    }
+
+    private static int getBufferSize(final int width, final int height) {
+        return width * height * ImageFormat.getBitsPerPixel(ImageFormat.NV21) / 8;
+    }
+
+    private final class RecycleTask implements Runnable {
+        private final byte[] mBuffer;
+
+        public RecycleTask(@NonNull final byte[] buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public void run() {
+            addBuffer(mBuffer);
+        }
+    }
+}
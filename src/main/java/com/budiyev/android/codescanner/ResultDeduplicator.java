@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+/**
+ * Suppresses repeated results in {@link ScanMode#CONTINUOUS} scan mode: result with the same
+ * format and text is delivered again only after the cooldown has passed since it was
+ * delivered, or, in re-entry mode, since it was last seen (code left the view and returned).
+ * Recently seen codes are kept in a bounded map, least recently seen codes are forgotten first.
+ * <br>
+ * Thread safe without locking: results are filtered by decoder threads concurrently,
+ * before they are delivered one at a time; delivery is recorded only after the result
+ * was actually delivered, so that dropped result doesn't suppress the code. Settings
+ * can be changed and state cleared at any time.
+ *
+ * @see CodeScanner#setResultDeduplicator(ResultDeduplicator)
+ */
+public final class ResultDeduplicator {
+
+    /**
+     * Default cooldown, milliseconds
+     */
+    public static final long DEFAULT_COOLDOWN_MILLIS = 2000L;
+
+    /**
+     * Default number of recently seen codes to remember
+     */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private final AtomicLong mSuppressedCount = new AtomicLong();
+    private final ConcurrentHashMap<Key, SeenCode> mSeenCodes = new ConcurrentHashMap<>();
+    private volatile long mCooldownNanos = DEFAULT_COOLDOWN_MILLIS * 1000000L;
+    private volatile int mCapacity = DEFAULT_CAPACITY;
+    private volatile boolean mEmitOnReentry;
+
+    /**
+     * Result deduplicator with default settings
+     */
+    public ResultDeduplicator() {
+    }
+
+    public long getCooldownMillis() {
+        return mCooldownNanos / 1000000L;
+    }
+
+    /**
+     * Time in which the same code isn't delivered again
+     *
+     * @param cooldownMillis Cooldown, milliseconds
+     */
+    public void setCooldownMillis(final long cooldownMillis) {
+        if (cooldownMillis < 0L) {
+            throw new IllegalArgumentException("Cooldown can't be negative");
+        }
+        mCooldownNanos = cooldownMillis * 1000000L;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Number of recently seen codes to remember, least recently seen codes are forgotten first
+     */
+    public void setCapacity(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        mCapacity = capacity;
+    }
+
+    public boolean isEmitOnReentry() {
+        return mEmitOnReentry;
+    }
+
+    /**
+     * Deliver the same code again only after it wasn't seen for the cooldown, that is,
+     * when it has left the view and re-entered it, {@code false} by default
+     */
+    public void setEmitOnReentry(final boolean emitOnReentry) {
+        mEmitOnReentry = emitOnReentry;
+    }
+
+    /**
+     * Number of results, which were suppressed
+     */
+    public long getSuppressedCount() {
+        return mSuppressedCount.get();
+    }
+
+    /**
+     * Forget all seen codes, next result of any code will be delivered
+     */
+    public void clear() {
+        mSeenCodes.clear();
+    }
+
+    public void resetCounts() {
+        mSuppressedCount.set(0L);
+    }
+
+    /**
+     * Record that the code of the result was seen and check whether the result should be
+     * delivered; can be called by several threads concurrently. Delivery isn't recorded,
+     * so that accepted results have to be checked again before delivering them one at a time.
+     *
+     * @see #check
+     * @see #commit
+     */
+    boolean accept(@NonNull final Result result, final long timestampNanos) {
+        final Key key = new Key(result.getBarcodeFormat(), result.getText());
+        final ConcurrentHashMap<Key, SeenCode> seenCodes = mSeenCodes;
+        SeenCode seenCode = seenCodes.get(key);
+        if (seenCode == null) {
+            final SeenCode newCode = new SeenCode(timestampNanos);
+            seenCode = seenCodes.putIfAbsent(key, newCode);
+            if (seenCode == null) {
+                trim(seenCodes, mCapacity);
+                return true;
+            }
+        }
+        final long seenNanos = seenCode.mSeenNanos.getAndSet(timestampNanos);
+        if (timestampNanos - seenNanos >= mCooldownNanos) {
+            // Code has left the view and returned
+            seenCode.mEnteredNanos = timestampNanos;
+        }
+        if (isDeliverable(seenCode, timestampNanos)) {
+            return true;
+        }
+        mSuppressedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Whether the accepted result should still be delivered, without any side effects;
+     * results are checked and committed one at a time
+     */
+    boolean check(@NonNull final Result result, final long timestampNanos) {
+        final SeenCode seenCode =
+                mSeenCodes.get(new Key(result.getBarcodeFormat(), result.getText()));
+        return seenCode == null || isDeliverable(seenCode, timestampNanos);
+    }
+
+    /**
+     * Record that the result was delivered
+     */
+    void commit(@NonNull final Result result, final long timestampNanos) {
+        final Key key = new Key(result.getBarcodeFormat(), result.getText());
+        final ConcurrentHashMap<Key, SeenCode> seenCodes = mSeenCodes;
+        SeenCode seenCode = seenCodes.get(key);
+        if (seenCode == null) {
+            // Code was forgotten after it had been accepted
+            final SeenCode newCode = new SeenCode(timestampNanos);
+            seenCode = seenCodes.putIfAbsent(key, newCode);
+            if (seenCode == null) {
+                seenCode = newCode;
+                trim(seenCodes, mCapacity);
+            }
+        }
+        seenCode.mDeliveredNanos = timestampNanos;
+        seenCode.mDelivered = true;
+    }
+
+    /**
+     * Record the result, which was accepted, but not delivered after the check
+     */
+    void suppress() {
+        mSuppressedCount.incrementAndGet();
+    }
+
+    private boolean isDeliverable(@NonNull final SeenCode seenCode, final long timestampNanos) {
+        if (!seenCode.mDelivered) {
+            return true;
+        }
+        final long deliveredNanos = seenCode.mDeliveredNanos;
+        if (mEmitOnReentry) {
+            return deliveredNanos - seenCode.mEnteredNanos < 0L;
+        } else {
+            return timestampNanos - deliveredNanos >= mCooldownNanos;
+        }
+    }
+
+    /**
+     * Forget least recently seen codes over capacity; capacity is small, so linear search
+     * is cheaper than keeping the order
+     */
+    private static void trim(@NonNull final ConcurrentHashMap<Key, SeenCode> seenCodes,
+            final int capacity) {
+        while (seenCodes.size() > capacity) {
+            Map.Entry<Key, SeenCode> eldest = null;
+            long eldestSeenNanos = 0L;
+            for (final Map.Entry<Key, SeenCode> entry : seenCodes.entrySet()) {
+                final long seenNanos = entry.getValue().mSeenNanos.get();
+                if (eldest == null || seenNanos - eldestSeenNanos < 0L) {
+                    eldest = entry;
+                    eldestSeenNanos = seenNanos;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            seenCodes.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private static final class SeenCode {
+        private final AtomicLong mSeenNanos;
+        private volatile long mEnteredNanos;
+        private volatile long mDeliveredNanos;
+        private volatile boolean mDelivered;
+
+        public SeenCode(final long timestampNanos) {
+            mSeenNanos = new AtomicLong(timestampNanos);
+            mEnteredNanos = timestampNanos;
+        }
+    }
+
+    private static final class Key {
+        private final BarcodeFormat mFormat;
+        private final String mText;
+
+        public Key(@NonNull final BarcodeFormat format, @NonNull final String text) {
+            mFormat = format;
+            mText = text;
+        }
+
+        @Override
+        public int hashCode() {
+            return mFormat.hashCode() * 31 + mText.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (obj instanceof Key) {
+                final Key other = (Key) obj;
+                return mFormat == other.mFormat && mText.equals(other.mText);
+            } else {
+                return false;
+            }
+        }
+    }
+}
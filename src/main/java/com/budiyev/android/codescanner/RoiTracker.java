@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+/**
+ * Tracks the window around the last decoded code, so that the next frame can be decoded
+ * from the window first instead of the whole frame rect; window is dropped after a miss.
+ * Shared between decoder threads.
+ */
+final class RoiTracker {
+
+    /**
+     * Padding of the window around result points, relative to their spread
+     */
+    private static final float PADDING = 0.5f;
+
+    /**
+     * Minimum padding of the window around result points, pixels
+     */
+    private static final int MIN_PADDING = 32;
+
+    /**
+     * Maximum ratio of the window area to the frame rect area, at which window is still used
+     */
+    private static final float MAX_AREA_RATIO = 0.6f;
+
+    private Rect mWindow;
+
+    /**
+     * Window to decode first, in image coordinates, same as the frame rect,
+     * {@code null} if there's none or it isn't much smaller than the frame rect
+     */
+    @Nullable
+    public synchronized Rect getWindow(@NonNull final Rect frameRect) {
+        final Rect window = mWindow;
+        if (window == null) {
+            return null;
+        }
+        final Rect boundWindow =
+                window.bound(frameRect.getLeft(), frameRect.getTop(), frameRect.getRight(),
+                        frameRect.getBottom());
+        final int width = boundWindow.getWidth();
+        final int height = boundWindow.getHeight();
+        if (width < 1 || height < 1 || (float) width * height >
+                MAX_AREA_RATIO * frameRect.getWidth() * frameRect.getHeight()) {
+            return null;
+        }
+        return boundWindow;
+    }
+
+    /**
+     * Track the code of the result
+     *
+     * @param result            Result in frame rect luma coordinates
+     * @param frameRect         Frame rect, which result was decoded from
+     * @param reverseHorizontal Whether frame rect luma was mirrored horizontally
+     */
+    public synchronized void onDecoded(@NonNull final Result result,
+            @NonNull final Rect frameRect, final boolean reverseHorizontal) {
+        final ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            mWindow = null;
+            return;
+        }
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        for (final ResultPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            final float x = point.getX();
+            final float y = point.getY();
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x);
+            bottom = Math.max(bottom, y);
+        }
+        if (right < left) {
+            mWindow = null;
+            return;
+        }
+        final int padding =
+                Math.max(MIN_PADDING, (int) (Math.max(right - left, bottom - top) * PADDING));
+        final int windowLeft = (int) left - padding;
+        final int windowRight = (int) right + padding;
+        final int windowTop = (int) top - padding + frameRect.getTop();
+        final int windowBottom = (int) bottom + padding + frameRect.getTop();
+        if (reverseHorizontal) {
+            // Luma column x is the image column frameRect.getRight() - 1 - x
+            final int frameRight = frameRect.getRight();
+            mWindow = new Rect(frameRight - windowRight, windowTop, frameRight - windowLeft,
+                    windowBottom);
+        } else {
+            final int frameLeft = frameRect.getLeft();
+            mWindow = new Rect(frameLeft + windowLeft, windowTop, frameLeft + windowRight,
+                    windowBottom);
+        }
+    }
+
+    /**
+     * Drop the window, frame rect will be decoded until the next success
+     */
+    public synchronized void onMissed() {
+        mWindow = null;
+    }
+}
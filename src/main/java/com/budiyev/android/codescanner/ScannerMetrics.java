@@ -0,0 +1,412 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Decoding pipeline metrics: per-stage latency histograms and frame counters.
+ * Recording is lock-free, snapshots can be taken from any thread at any time.
+ *
+ * @see CodeScanner#setMetricsEnabled(boolean)
+ * @see CodeScanner#getMetrics()
+ */
+public final class ScannerMetrics {
+
+    /**
+     * Number of histogram buckets, bucket {@code i} counts samples between
+     * {@code 2^(i-1)} (inclusive) and {@code 2^i} (exclusive) microseconds,
+     * the last bucket counts all longer samples
+     */
+    public static final int HISTOGRAM_BUCKETS_COUNT = 24;
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final Counter[] COUNTERS = Counter.values();
+    private final StageRecorder[] mStages;
+    private final AtomicLongArray mCounters;
+
+    ScannerMetrics() {
+        final int stagesCount = STAGES.length;
+        mStages = new StageRecorder[stagesCount];
+        for (int i = 0; i < stagesCount; i++) {
+            mStages[i] = new StageRecorder();
+        }
+        mCounters = new AtomicLongArray(COUNTERS.length);
+    }
+
+    /**
+     * Take a snapshot of current values
+     */
+    @NonNull
+    public Snapshot snapshot() {
+        final int stagesCount = STAGES.length;
+        final StageSnapshot[] stages = new StageSnapshot[stagesCount];
+        for (int i = 0; i < stagesCount; i++) {
+            stages[i] = mStages[i].snapshot();
+        }
+        final int countersCount = COUNTERS.length;
+        final long[] counters = new long[countersCount];
+        for (int i = 0; i < countersCount; i++) {
+            counters[i] = mCounters.get(i);
+        }
+        return new Snapshot(stages, counters);
+    }
+
+    /**
+     * Reset all values to zero
+     */
+    public void reset() {
+        for (final StageRecorder stage : mStages) {
+            stage.reset();
+        }
+        final int countersCount = COUNTERS.length;
+        for (int i = 0; i < countersCount; i++) {
+            mCounters.set(i, 0L);
+        }
+    }
+
+    void record(@NonNull final Stage stage, final long nanos) {
+        mStages[stage.ordinal()].record(nanos);
+    }
+
+    void increment(@NonNull final Counter counter) {
+        mCounters.incrementAndGet(counter.ordinal());
+    }
+
+    static int getBucket(final long nanos) {
+        final long micros = nanos / 1000L;
+        final int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, HISTOGRAM_BUCKETS_COUNT - 1);
+    }
+
+    /**
+     * Decoding pipeline stage
+     */
+    public enum Stage {
+
+        /**
+         * Copying frame rect luma of the image into decoding buffer, cropping, rotation
+         * and mirroring are done in the same pass
+         */
+        ROTATE,
+
+        /**
+         * Copying a window of the already rotated luma, such as the tracked region
+         * of interest of a prepared frame
+         */
+        CROP,
+
+        /**
+         * Image binarization
+         */
+        BINARIZE,
+
+        /**
+         * Barcode detection and decoding, excluding binarization
+         */
+        DECODE,
+
+        /**
+         * Decode callback invocation
+         */
+        CALLBACK,
+
+        /**
+         * Frame quality and difference checks
+         *
+         * @see FrameQualityGate
+         * @see FrameDifferenceFilter
+         */
+        QUALITY_CHECK,
+
+        /**
+         * Downsampling luma for the first decoding pass of large codes
+         */
+        DOWNSAMPLE,
+
+        /**
+         * Finding regions, that look like codes, before decoding
+         *
+         * @see CodeLocalizer
+         */
+        LOCALIZE
+    }
+
+    /**
+     * Frame counter
+     */
+    public enum Counter {
+
+        /**
+         * Frames received from the camera
+         */
+        FRAMES_RECEIVED,
+
+        /**
+         * Frames dropped because decoder was busy
+         */
+        FRAMES_DROPPED,
+
+        /**
+         * Frames passed to the barcode reader
+         */
+        FRAMES_DECODED,
+
+        /**
+         * Frames decoded successfully
+         */
+        DECODE_SUCCESSES,
+
+        /**
+         * Decoding attempts on inverted image
+         */
+        INVERTED_RETRIES,
+
+        /**
+         * Frames rejected by quality gate before decoding
+         *
+         * @see FrameQualityGate
+         */
+        FRAMES_REJECTED,
+
+        /**
+         * Frames skipped because they didn't change since the last failed decoding
+         *
+         * @see FrameDifferenceFilter
+         */
+        FRAMES_UNCHANGED,
+
+        /**
+         * Frames decoded successfully from downsampled luma
+         */
+        DOWNSAMPLED_SUCCESSES,
+
+        /**
+         * Results, which weren't delivered because the same code was delivered recently
+         *
+         * @see ResultDeduplicator
+         */
+        RESULTS_SUPPRESSED,
+
+        /**
+         * Frames decoded from the window around the last decoded code
+         *
+         * @see CodeScanner#setRoiTrackingEnabled(boolean)
+         */
+        TRACKED_SUCCESSES,
+
+        /**
+         * Frames abandoned because their decoding exceeded the time budget
+         *
+         * @see CodeScanner#setFrameTimeBudgetMillis(long)
+         */
+        FRAMES_TIMED_OUT,
+
+        /**
+         * Frames decoded with {@link com.google.zxing.DecodeHintType#TRY_HARDER} hint
+         *
+         * @see TryHarderPolicy
+         */
+        FRAMES_ESCALATED,
+
+        /**
+         * Frames, which variants were decoded in parallel by idle workers
+         *
+         * @see CodeScanner#setDecodeRacingEnabled(boolean)
+         */
+        FRAMES_RACED,
+
+        /**
+         * Raced frames, which were decoded by a worker variant first
+         *
+         * @see CodeScanner#setDecodeRacingEnabled(boolean)
+         */
+        RACE_WINS,
+
+        /**
+         * Frames, which were decoded only by the tiled search
+         *
+         * @see CodeScanner#setTiledSearchEnabled(boolean)
+         */
+        TILED_SUCCESSES,
+
+        /**
+         * Frames, which weren't decoded in full, because code localizer gated them
+         *
+         * @see CodeLocalizer#setGatingEnabled(boolean)
+         */
+        FRAMES_UNLOCALIZED
+    }
+
+    /**
+     * Immutable snapshot of metrics
+     */
+    public static final class Snapshot {
+        private final StageSnapshot[] mStages;
+        private final long[] mCounters;
+
+        private Snapshot(@NonNull final StageSnapshot[] stages, @NonNull final long[] counters) {
+            mStages = stages;
+            mCounters = counters;
+        }
+
+        /**
+         * Get snapshot of the specified stage
+         */
+        @NonNull
+        public StageSnapshot getStage(@NonNull final Stage stage) {
+            return mStages[stage.ordinal()];
+        }
+
+        /**
+         * Get value of the specified counter
+         */
+        public long getCount(@NonNull final Counter counter) {
+            return mCounters[counter.ordinal()];
+        }
+    }
+
+    /**
+     * Immutable snapshot of the stage latency
+     */
+    public static final class StageSnapshot {
+        private final long[] mHistogram;
+        private final long mCount;
+        private final long mTotalNanos;
+        private final long mMaxNanos;
+
+        private StageSnapshot(@NonNull final long[] histogram, final long count,
+                final long totalNanos, final long maxNanos) {
+            mHistogram = histogram;
+            mCount = count;
+            mTotalNanos = totalNanos;
+            mMaxNanos = maxNanos;
+        }
+
+        /**
+         * Number of samples
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * Sum of all samples in nanoseconds
+         */
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        /**
+         * Longest sample in nanoseconds
+         */
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        /**
+         * Average sample in nanoseconds, {@code 0} if there are no samples
+         */
+        public long getAverageNanos() {
+            final long count = mCount;
+            return count > 0 ? mTotalNanos / count : 0L;
+        }
+
+        /**
+         * Get number of samples in the histogram bucket
+         *
+         * @see #HISTOGRAM_BUCKETS_COUNT
+         */
+        public long getHistogramBucket(final int bucket) {
+            return mHistogram[bucket];
+        }
+
+        /**
+         * Approximate percentile, upper bound of the histogram bucket which contains it,
+         * limited by the longest sample
+         *
+         * @param percentile Percentile, between {@code 0} and {@code 1}
+         * @return Percentile value in nanoseconds, {@code 0} if there are no samples
+         */
+        public long getPercentileNanos(final double percentile) {
+            long total = 0L;
+            for (final long value : mHistogram) {
+                total += value;
+            }
+            if (total == 0L) {
+                return 0L;
+            }
+            final long threshold = (long) Math.ceil(total * percentile);
+            long accumulated = 0L;
+            for (int i = 0; i < HISTOGRAM_BUCKETS_COUNT - 1; i++) {
+                accumulated += mHistogram[i];
+                if (accumulated >= threshold) {
+                    return Math.min((1L << i) * 1000L, mMaxNanos);
+                }
+            }
+            return mMaxNanos;
+        }
+    }
+
+    private static final class StageRecorder {
+        private final AtomicLongArray mHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS_COUNT);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+        private final AtomicLong mMaxNanos = new AtomicLong();
+
+        public void record(final long nanos) {
+            mHistogram.incrementAndGet(getBucket(nanos));
+            mCount.incrementAndGet();
+            mTotalNanos.addAndGet(nanos);
+            for (; ; ) {
+                final long max = mMaxNanos.get();
+                if (nanos <= max || mMaxNanos.compareAndSet(max, nanos)) {
+                    break;
+                }
+            }
+        }
+
+        @NonNull
+        public StageSnapshot snapshot() {
+            final long[] histogram = new long[HISTOGRAM_BUCKETS_COUNT];
+            for (int i = 0; i < HISTOGRAM_BUCKETS_COUNT; i++) {
+                histogram[i] = mHistogram.get(i);
+            }
+            return new StageSnapshot(histogram, mCount.get(), mTotalNanos.get(),
+                    mMaxNanos.get());
+        }
+
+        public void reset() {
+            for (int i = 0; i < HISTOGRAM_BUCKETS_COUNT; i++) {
+                mHistogram.set(i, 0L);
+            }
+            mCount.set(0L);
+            mTotalNanos.set(0L);
+            mMaxNanos.set(0L);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import android.view.SurfaceHolder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * In-memory {@link FrameSource}, which plays back generated NV21 frames in a loop
+ * with the specified frame rate on its own thread; doesn't depend on camera hardware,
+ * so it can be used on a plain JVM
+ */
+final class SyntheticFrameSource implements FrameSource {
+
+    private static final byte BLACK = 16;
+    private static final byte WHITE = (byte) 235;
+    private static final byte CHROMA = (byte) 128;
+    private final List<byte[]> mFrames;
+    private final Point mImageSize;
+    private final int mOrientation;
+    private final boolean mReverseHorizontal;
+    private final long mFrameInterval;
+    private volatile Thread mPlaybackThread;
+    private volatile boolean mAutoFocusEnabled;
+    private volatile boolean mFlashEnabled;
+    private volatile int mZoom;
+
+    /**
+     * @param frames      NV21 frames of the specified size
+     * @param imageSize   Frame size in sensor orientation
+     * @param orientation Clockwise rotation in degrees to apply to frames
+     * @param fps         Frame rate
+     */
+    public SyntheticFrameSource(@NonNull final List<byte[]> frames,
+            @NonNull final Point imageSize, final int orientation,
+            final boolean reverseHorizontal, final int fps) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("At least one frame is required");
+        }
+        if (fps < 1) {
+            throw new IllegalArgumentException("Frame rate must be greater than zero");
+        }
+        final int frameSize = getFrameSize(imageSize.getX(), imageSize.getY());
+        for (final byte[] frame : frames) {
+            if (frame.length != frameSize) {
+                throw new IllegalArgumentException("Frame size doesn't match the image size");
+            }
+        }
+        mFrames = new ArrayList<>(frames);
+        mImageSize = imageSize;
+        mOrientation = orientation;
+        mReverseHorizontal = reverseHorizontal;
+        mFrameInterval = TimeUnit.SECONDS.toNanos(1) / fps;
+    }
+
+    /**
+     * Create NV21 frame with the code in the center, code side is a half of the smaller frame side
+     */
+    @NonNull
+    public static byte[] createFrame(@NonNull final String content,
+            @NonNull final BarcodeFormat format, final int width, final int height) {
+        final int codeSize = Math.min(width, height) / 2;
+        final int lumaSize = width * height;
+        final byte[] frame = new byte[getFrameSize(width, height)];
+        Arrays.fill(frame, 0, lumaSize, WHITE);
+        Arrays.fill(frame, lumaSize, frame.length, CHROMA);
+        drawCode(frame, width, height, content, format, (width - codeSize) / 2,
+                (height - codeSize) / 2, codeSize);
+        return frame;
+    }
+
+    /**
+     * Draw black modules of the code of the specified side with the specified top left corner
+     * into luma, code is clipped by luma bounds
+     */
+    public static void drawCode(@NonNull final byte[] luma, final int width, final int height,
+            @NonNull final String content, @NonNull final BarcodeFormat format, final int left,
+            final int top, final int size) {
+        final BitMatrix matrix = BarcodeUtils.encodeBitMatrix(content, format, size, size);
+        if (matrix == null) {
+            throw new IllegalArgumentException("Unable to encode frame content");
+        }
+        final int matrixWidth = Math.min(matrix.getWidth(), width - left);
+        final int matrixHeight = Math.min(matrix.getHeight(), height - top);
+        for (int y = 0; y < matrixHeight; y++) {
+            final int row = (top + y) * width + left;
+            for (int x = 0; x < matrixWidth; x++) {
+                if (matrix.get(x, y)) {
+                    luma[row + x] = BLACK;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void open(final int viewWidth, final int viewHeight) {
+    }
+
+    @Override
+    public int getCameraId() {
+        return CodeScanner.CAMERA_BACK;
+    }
+
+    @NonNull
+    @Override
+    public Point getImageSize() {
+        return mImageSize;
+    }
+
+    @Override
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    @Override
+    public boolean shouldReverseHorizontal() {
+        return mReverseHorizontal;
+    }
+
+    @Override
+    public boolean isAutoFocusSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isFlashSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void startPreview(@Nullable final SurfaceHolder surfaceHolder,
+            @NonNull final FrameListener listener, final int buffersCount,
+            final int heldFramesCount) {
+        stopPreview();
+        final Thread playbackThread = new PlaybackThread(listener, buffersCount);
+        mPlaybackThread = playbackThread;
+        playbackThread.start();
+    }
+
+    @Override
+    public synchronized void stopPreview() {
+        final Thread playbackThread = mPlaybackThread;
+        if (playbackThread != null) {
+            mPlaybackThread = null;
+            playbackThread.interrupt();
+            try {
+                playbackThread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void setAutoFocusEnabled(final boolean enabled, @NonNull final AutoFocusMode mode,
+            @Nullable final Rect area) {
+        mAutoFocusEnabled = enabled;
+    }
+
+    @Override
+    public void autoFocus(@Nullable final Rect area, @NonNull final FocusCallback callback) {
+        callback.onFocused(true);
+    }
+
+    @Override
+    public void cancelAutoFocus() {
+    }
+
+    @Override
+    public void setFlashEnabled(final boolean enabled) {
+        mFlashEnabled = enabled;
+    }
+
+    @Override
+    public void setZoom(final int zoom) {
+        mZoom = zoom;
+    }
+
+    @Override
+    public void release() {
+        stopPreview();
+    }
+
+    public boolean isAutoFocusEnabled() {
+        return mAutoFocusEnabled;
+    }
+
+    public boolean isFlashEnabled() {
+        return mFlashEnabled;
+    }
+
+    public int getZoom() {
+        return mZoom;
+    }
+
+    private static int getFrameSize(final int width, final int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    private final class PlaybackThread extends Thread implements BufferRecycler {
+        private final FrameListener mListener;
+        private final BlockingQueue<byte[]> mBuffers;
+
+        public PlaybackThread(@NonNull final FrameListener listener, final int buffersCount) {
+            super("cs-synthetic-source");
+            mListener = listener;
+            if (buffersCount > 0) {
+                final int frameSize = mFrames.get(0).length;
+                mBuffers = new ArrayBlockingQueue<>(buffersCount);
+                for (int i = 0; i < buffersCount; i++) {
+                    mBuffers.offer(new byte[frameSize]);
+                }
+            } else {
+                mBuffers = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            final List<byte[]> frames = mFrames;
+            final int framesCount = frames.size();
+            long nextFrameTime = System.nanoTime();
+            for (int i = 0; !isInterrupted(); i = (i + 1) % framesCount) {
+                final long delay = nextFrameTime - System.nanoTime();
+                if (delay > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                }
+                nextFrameTime += mFrameInterval;
+                final byte[] frame = frames.get(i);
+                final BlockingQueue<byte[]> buffers = mBuffers;
+                if (buffers == null) {
+                    mListener.onFrame(new Nv21FrameImage(frame.clone(), null),
+                            System.nanoTime());
+                } else {
+                    // Like camera, drop the frame if all buffers are in use
+                    final byte[] buffer = buffers.poll();
+                    if (buffer != null) {
+                        System.arraycopy(frame, 0, buffer, 0, frame.length);
+                        mListener.onFrame(new Nv21FrameImage(buffer, this), System.nanoTime());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void recycle(@NonNull final byte[] buffer) {
+            mBuffers.offer(buffer);
+        }
+    }
+}
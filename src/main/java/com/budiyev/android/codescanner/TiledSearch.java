@@ -0,0 +1,318 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+
+/**
+ * Searches overlapping tiles of the frame rect luma for codes, which are too small
+ * to be found in the whole frame rect: binarizer and detectors work on each tile separately.
+ * <br>
+ * Frame rect is split into {@code 3x3} tiles, each a half of the frame rect in both
+ * dimensions, so that neighbour tiles overlap by a half. Tiles are taken centre-outwards
+ * by the calling thread together with idle workers, if any. The first hit finishes the search
+ * and cancels the rest; in multiple codes mode results of all tiles are collected,
+ * codes found in several overlapping tiles are reported once. Thread safe.
+ */
+final class TiledSearch {
+
+    private static final int GRID_SIZE = 3;
+    private static final int TILES_COUNT = GRID_SIZE * GRID_SIZE;
+    private static final int MIN_TILE_SIZE = 200;
+    private static final int[] TILE_ORDER = {4, 1, 3, 5, 7, 0, 2, 6, 8};
+    private final ExecutorService mExecutor;
+    private final ConcurrentLinkedQueue<Helper> mIdleHelpers;
+    private final Helper[] mHelpers;
+    private volatile List<BarcodeFormat> mFormats;
+
+    /**
+     * @param workersCount Number of workers, should not exceed number of idle cores,
+     *                     tiles are decoded by the calling thread only if {@code 0}
+     */
+    public TiledSearch(@NonNull final List<BarcodeFormat> formats, final int workersCount) {
+        mFormats = formats;
+        mExecutor = workersCount > 0 ?
+                new ThreadPoolExecutor(workersCount, workersCount, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory("cs-tile-")) :
+                null;
+        mIdleHelpers = new ConcurrentLinkedQueue<>();
+        mHelpers = new Helper[workersCount];
+        for (int i = 0; i < workersCount; i++) {
+            final Helper helper = new Helper();
+            mHelpers[i] = helper;
+            mIdleHelpers.offer(helper);
+        }
+    }
+
+    /**
+     * Whether frame rect of the specified size is large enough to be split into tiles
+     */
+    public static boolean isApplicable(final int width, final int height) {
+        return Math.min(width, height) >= MIN_TILE_SIZE * 2;
+    }
+
+    public void setFormats(@NonNull final List<BarcodeFormat> formats) {
+        mFormats = formats;
+    }
+
+    /**
+     * Search tiles with the reader, binarizer chain, strategy and deadline of the context
+     *
+     * @return Results in frame rect luma coordinates, the first one is found in the tile
+     * closest to the centre, {@code null} if nothing was found
+     */
+    @Nullable
+    public List<Result> decode(@NonNull final DecodeContext context, @NonNull final byte[] luma,
+            final int width, final int height) {
+        final FormatReader reader = context.getReader();
+        final Search search = new Search(luma, width, height, context.getBinarizerChain(),
+                context.getDecodeStrategy(), context.getMaxResults(), context.getDeadline());
+        final List<Helper> helpers = new ArrayList<>(mHelpers.length);
+        for (Helper helper = mIdleHelpers.poll(); helper != null; helper = mIdleHelpers.poll()) {
+            helper.prepare(search, reader.isTryHarder());
+            helpers.add(helper);
+        }
+        // All helpers are added before any of them starts, so that the hit cancels all of them
+        search.setHelpers(helpers);
+        for (final Helper helper : helpers) {
+            try {
+                mExecutor.execute(helper);
+            } catch (final RejectedExecutionException e) {
+                helper.finish();
+            }
+        }
+        search.decodeTiles(reader);
+        return search.await();
+    }
+
+    /**
+     * Cancel tiles, which are being decoded by workers
+     */
+    public void cancel() {
+        for (final Helper helper : mHelpers) {
+            helper.mDeadline.cancel();
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        if (mExecutor != null) {
+            // Submitted helpers still run, so that callers are released
+            mExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Tiles of a single frame
+     */
+    private static final class Search {
+        private final AtomicInteger mNextTile = new AtomicInteger();
+        private final AtomicInteger mRemainingTilesCount = new AtomicInteger(TILES_COUNT);
+        private final AtomicBoolean mFinished = new AtomicBoolean();
+        private final CountDownLatch mFinishedLatch = new CountDownLatch(1);
+        private final List<Result> mResults = new ArrayList<>();
+        private final byte[] mLuma;
+        private final int mWidth;
+        private final int mHeight;
+        private final BinarizerChain mBinarizerChain;
+        private final DecodeStrategy mStrategy;
+        private final int mMaxResults;
+        private final DecodeDeadline mDeadline;
+        private List<Helper> mHelpers = Collections.emptyList();
+
+        public Search(@NonNull final byte[] luma, final int width, final int height,
+                @NonNull final BinarizerChain binarizerChain,
+                @Nullable final DecodeStrategy strategy, final int maxResults,
+                @NonNull final DecodeDeadline deadline) {
+            mLuma = luma;
+            mWidth = width;
+            mHeight = height;
+            mBinarizerChain = binarizerChain;
+            mStrategy = strategy;
+            mMaxResults = maxResults;
+            mDeadline = deadline;
+        }
+
+        @NonNull
+        public DecodeDeadline getDeadline() {
+            return mDeadline;
+        }
+
+        public void setHelpers(@NonNull final List<Helper> helpers) {
+            mHelpers = helpers;
+        }
+
+        /**
+         * Decode tiles, until there are no more tiles or search is finished
+         */
+        public void decodeTiles(@NonNull final FormatReader reader) {
+            final int width = mWidth;
+            final int height = mHeight;
+            final int tileWidth = width / 2;
+            final int tileHeight = height / 2;
+            for (; ; ) {
+                final int index = mNextTile.getAndIncrement();
+                if (index >= TILES_COUNT || mFinished.get()) {
+                    return;
+                }
+                final int tile = TILE_ORDER[index];
+                final int left = tile % GRID_SIZE * (width - tileWidth) / (GRID_SIZE - 1);
+                final int top = tile / GRID_SIZE * (height - tileHeight) / (GRID_SIZE - 1);
+                final PlanarYUVLuminanceSource source =
+                        new PlanarYUVLuminanceSource(mLuma, width, height, left, top, tileWidth,
+                                tileHeight, false);
+                List<Result> results = null;
+                try {
+                    if (mMaxResults > 1) {
+                        results = reader.decodeMultiple(source, mBinarizerChain, mStrategy,
+                                mMaxResults, null);
+                    } else {
+                        results = Collections.singletonList(
+                                reader.decode(source, mBinarizerChain, mStrategy, null));
+                    }
+                } catch (final ReaderException ignored) {
+                }
+                onTileDecoded(results, left, top);
+            }
+        }
+
+        private void onTileDecoded(@Nullable final List<Result> results, final int left,
+                final int top) {
+            boolean hit = false;
+            if (results != null) {
+                synchronized (mResults) {
+                    if (!mFinished.get()) {
+                        for (final Result result : results) {
+                            final Result frameResult = Utils.transformResult(result, 1, left, top);
+                            if (!FormatReader.containsCode(mResults, frameResult)) {
+                                mResults.add(frameResult);
+                            }
+                        }
+                        hit = mMaxResults <= 1 || mResults.size() >= mMaxResults;
+                    }
+                }
+            }
+            if (hit) {
+                finish(true);
+            } else if (mRemainingTilesCount.decrementAndGet() == 0) {
+                finish(false);
+            }
+        }
+
+        private void finish(final boolean cancel) {
+            if (mFinished.compareAndSet(false, true)) {
+                if (cancel) {
+                    mDeadline.cancel();
+                    for (final Helper helper : mHelpers) {
+                        helper.mDeadline.cancel();
+                    }
+                }
+                mFinishedLatch.countDown();
+            }
+        }
+
+        /**
+         * Wait for the hit or for all tiles to be decoded
+         */
+        @Nullable
+        public List<Result> await() {
+            boolean interrupted = false;
+            for (; ; ) {
+                try {
+                    mFinishedLatch.await();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (mResults) {
+                return mResults.isEmpty() ? null : new ArrayList<>(mResults);
+            }
+        }
+    }
+
+    /**
+     * Reader and deadline of a worker, used by a single search at a time
+     */
+    private final class Helper implements Runnable {
+        private final FormatReader mReader;
+        private final DecodeDeadline mDeadline;
+        private List<BarcodeFormat> mAppliedFormats;
+        private Search mSearch;
+        private boolean mTryHarder;
+
+        public Helper() {
+            mReader = new FormatReader();
+            mDeadline = new DecodeDeadline();
+            mReader.setDeadline(mDeadline);
+        }
+
+        public void prepare(@NonNull final Search search, final boolean tryHarder) {
+            mSearch = search;
+            mTryHarder = tryHarder;
+            mDeadline.start(search.getDeadline());
+        }
+
+        @Override
+        public void run() {
+            try {
+                final List<BarcodeFormat> formats = mFormats;
+                if (formats != mAppliedFormats) {
+                    mReader.setFormats(formats);
+                    mAppliedFormats = formats;
+                }
+                mReader.setTryHarder(mTryHarder);
+                mSearch.decodeTiles(mReader);
+            } finally {
+                finish();
+            }
+        }
+
+        public void finish() {
+            mSearch = null;
+            mIdleHelpers.offer(this);
+        }
+    }
+}
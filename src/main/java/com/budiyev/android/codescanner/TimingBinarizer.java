@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import androidx.annotation.NonNull;
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Binarizer wrapper, which accumulates time spent in the wrapped binarizer
+ */
+final class TimingBinarizer extends Binarizer {
+
+    private final Binarizer mBinarizer;
+    private final Elapsed mElapsed;
+
+    public TimingBinarizer(@NonNull final Binarizer binarizer) {
+        this(binarizer, new Elapsed());
+    }
+
+    private TimingBinarizer(@NonNull final Binarizer binarizer, @NonNull final Elapsed elapsed) {
+        super(binarizer.getLuminanceSource());
+        mBinarizer = binarizer;
+        mElapsed = elapsed;
+    }
+
+    public long getElapsedNanos() {
+        return mElapsed.nanos;
+    }
+
+    @Override
+    public BitArray getBlackRow(final int y, final BitArray row) throws NotFoundException {
+        final long start = System.nanoTime();
+        try {
+            return mBinarizer.getBlackRow(y, row);
+        } finally {
+            mElapsed.nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public BitMatrix getBlackMatrix() throws NotFoundException {
+        final long start = System.nanoTime();
+        try {
+            return mBinarizer.getBlackMatrix();
+        } finally {
+            mElapsed.nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public Binarizer createBinarizer(final LuminanceSource source) {
+        return new TimingBinarizer(mBinarizer.createBinarizer(source), mElapsed);
+    }
+
+    private static final class Elapsed {
+        private long nanos;
+    }
+}
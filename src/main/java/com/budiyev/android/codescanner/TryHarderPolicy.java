@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Decides, which frames are decoded with {@link com.google.zxing.DecodeHintType#TRY_HARDER}
+ * hint; other frames are decoded with the fast configuration.
+ * <br>
+ * A frame is escalated each specified number of frames, after the specified number
+ * of failed frames in a row, or when the scene is stable (frame is nearly identical
+ * to the previous one) but the previous frame failed to decode with the fast configuration.
+ * Any condition can be disabled by setting its parameter to {@code 0}.
+ *
+ * @see CodeScanner#setTryHarderPolicy(TryHarderPolicy)
+ */
+public final class TryHarderPolicy {
+
+    /**
+     * Default interval of escalated frames
+     */
+    public static final int DEFAULT_INTERVAL = 10;
+
+    /**
+     * Default number of failed frames in a row, after which a frame is escalated
+     */
+    public static final int DEFAULT_FAILURES_THRESHOLD = 5;
+
+    /**
+     * Default threshold of mean absolute difference between signatures of subsequent frames,
+     * below which the scene is considered stable, {@code 0-255}
+     */
+    public static final int DEFAULT_STABILITY_THRESHOLD = 3;
+
+    private final AtomicLong mEscalatedCount = new AtomicLong();
+    private final byte[] mLastSignature = new byte[FrameDifferenceFilter.SIGNATURE_LENGTH];
+    private volatile int mInterval = DEFAULT_INTERVAL;
+    private volatile int mFailuresThreshold = DEFAULT_FAILURES_THRESHOLD;
+    private volatile int mStabilityThreshold = DEFAULT_STABILITY_THRESHOLD;
+    private boolean mLastSignatureValid;
+    private boolean mLastFastFailed;
+    private boolean mEscalationPending;
+    private int mFramesCount;
+    private int mFailuresInRow;
+
+    /**
+     * Policy with default interval, failures threshold and stability threshold
+     */
+    public TryHarderPolicy() {
+    }
+
+    public int getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * Each {@code interval}-th frame is escalated
+     *
+     * @param interval Interval, {@code 0} disables periodic escalation
+     */
+    public void setInterval(final int interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Interval must be greater than or equal to zero");
+        }
+        mInterval = interval;
+    }
+
+    public int getFailuresThreshold() {
+        return mFailuresThreshold;
+    }
+
+    /**
+     * Frame is escalated after the specified number of failed frames in a row
+     *
+     * @param threshold Number of failed frames, {@code 0} disables escalation on failures
+     */
+    public void setFailuresThreshold(final int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException(
+                    "Failures threshold must be greater than or equal to zero");
+        }
+        mFailuresThreshold = threshold;
+    }
+
+    public int getStabilityThreshold() {
+        return mStabilityThreshold;
+    }
+
+    /**
+     * Scene is stable, if mean absolute difference between signatures of the frame
+     * and the previous one is lower than threshold
+     *
+     * @param threshold Threshold, {@code 0-255}, {@code 0} disables escalation on stable scene
+     * @see FrameDifferenceFilter
+     */
+    public void setStabilityThreshold(final int threshold) {
+        if (threshold < 0 || threshold > 255) {
+            throw new IllegalArgumentException("Threshold must be between 0 and 255");
+        }
+        mStabilityThreshold = threshold;
+    }
+
+    /**
+     * Number of escalated frames
+     */
+    public long getEscalatedFramesCount() {
+        return mEscalatedCount.get();
+    }
+
+    public void resetCounts() {
+        mEscalatedCount.set(0L);
+    }
+
+    /**
+     * Whether signature of each frame is needed
+     */
+    boolean isStabilityCheckEnabled() {
+        return mStabilityThreshold > 0;
+    }
+
+    /**
+     * Whether frame with the specified signature should be decoded with
+     * {@link com.google.zxing.DecodeHintType#TRY_HARDER} hint
+     *
+     * @param signature Frame signature, {@code null} if scene stability isn't checked
+     */
+    synchronized boolean shouldTryHarder(@Nullable final byte[] signature) {
+        final int interval = mInterval;
+        final int failuresThreshold = mFailuresThreshold;
+        final int stabilityThreshold = mStabilityThreshold;
+        mFramesCount++;
+        boolean escalate = mEscalationPending || interval > 0 && mFramesCount >= interval;
+        escalate |= failuresThreshold > 0 && mFailuresInRow >= failuresThreshold;
+        if (signature != null && stabilityThreshold > 0) {
+            final byte[] lastSignature = mLastSignature;
+            escalate |= mLastFastFailed && mLastSignatureValid &&
+                    FrameDifferenceFilter.getDifference(signature, lastSignature) <
+                            stabilityThreshold * FrameDifferenceFilter.SIGNATURE_LENGTH;
+            System.arraycopy(signature, 0, lastSignature, 0, lastSignature.length);
+            mLastSignatureValid = true;
+        } else {
+            mLastSignatureValid = false;
+        }
+        if (escalate) {
+            mEscalationPending = false;
+            mFramesCount = 0;
+            mFailuresInRow = 0;
+            mEscalatedCount.incrementAndGet();
+        }
+        return escalate;
+    }
+
+    /**
+     * Register decoding result of the frame
+     *
+     * @param tryHarder Whether frame was escalated
+     */
+    synchronized void onDecoded(final boolean success, final boolean tryHarder) {
+        mLastFastFailed = !success && !tryHarder;
+        if (success || tryHarder) {
+            mFailuresInRow = 0;
+        } else {
+            mFailuresInRow++;
+        }
+    }
+
+    /**
+     * Register the frame, which was abandoned on the deadline or cancelled before it was
+     * decoded; abandoned escalation is repeated on the next frame
+     *
+     * @param tryHarder Whether frame was escalated
+     */
+    synchronized void onAbandoned(final boolean tryHarder) {
+        if (tryHarder) {
+            mEscalationPending = true;
+        }
+    }
+}
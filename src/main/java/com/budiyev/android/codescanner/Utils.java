@@ -23,10 +23,12 @@
  */
 package com.budiyev.android.codescanner;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 import android.content.Context;
 import android.graphics.drawable.Drawable;
@@ -41,20 +43,16 @@ import android.view.WindowManager;
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import com.google.zxing.BinaryBitmap;
-import com.google.zxing.LuminanceSource;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.NotFoundException;
-import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
 
 final class Utils {
 
+    public static final int MIN_PREVIEW_PIXELS = 589824;
     private static final float MIN_DISTORTION = 0.3f;
     private static final float MAX_DISTORTION = 3f;
     private static final float DISTORTION_STEP = 0.1f;
-    private static final int MIN_PREVIEW_PIXELS = 589824;
     private static final int MIN_FPS = 10000;
     private static final int MAX_FPS = 30000;
 
@@ -66,18 +64,14 @@ final class Utils {
             final int frameWidth, final int frameHeight) {
         final List<Size> sizes = parameters.getSupportedPreviewSizes();
         if (sizes != null && !sizes.isEmpty()) {
-            Collections.sort(sizes, new CameraSizeComparator());
-            final float frameRatio = (float) frameWidth / (float) frameHeight;
-            for (float distortion = MIN_DISTORTION; distortion <= MAX_DISTORTION;
-                    distortion += DISTORTION_STEP) {
-                for (final Size size : sizes) {
-                    final int width = size.width;
-                    final int height = size.height;
-                    if (width * height >= MIN_PREVIEW_PIXELS &&
-                            Math.abs(frameRatio - (float) width / (float) height) <= distortion) {
-                        return new Point(width, height);
-                    }
-                }
+            final List<Point> points = new ArrayList<>(sizes.size());
+            for (final Size size : sizes) {
+                points.add(new Point(size.width, size.height));
+            }
+            final Point suitableSize =
+                    findSuitableImageSize(points, frameWidth, frameHeight, MIN_PREVIEW_PIXELS);
+            if (suitableSize != null) {
+                return suitableSize;
             }
         }
         final Size defaultSize = parameters.getPreviewSize();
@@ -87,6 +81,30 @@ final class Utils {
         return new Point(defaultSize.width, defaultSize.height);
     }
 
+    /**
+     * Find the largest size with at least the specified number of pixels,
+     * which aspect ratio is the closest to the frame's one
+     */
+    @Nullable
+    public static Point findSuitableImageSize(@NonNull final List<Point> sizes,
+            final int frameWidth, final int frameHeight, final int minPixels) {
+        final List<Point> sortedSizes = new ArrayList<>(sizes);
+        Collections.sort(sortedSizes, new SizeComparator());
+        final float frameRatio = (float) frameWidth / (float) frameHeight;
+        for (float distortion = MIN_DISTORTION; distortion <= MAX_DISTORTION;
+                distortion += DISTORTION_STEP) {
+            for (final Point size : sortedSizes) {
+                final int width = size.getX();
+                final int height = size.getY();
+                if (width * height >= minPixels &&
+                        Math.abs(frameRatio - (float) width / (float) height) <= distortion) {
+                    return size;
+                }
+            }
+        }
+        return null;
+    }
+
     public static void configureFpsRange(@NonNull final Parameters parameters) {
         final List<int[]> supportedFpsRanges = parameters.getSupportedPreviewFpsRange();
         if (supportedFpsRanges == null || supportedFpsRanges.isEmpty()) {
@@ -136,26 +154,6 @@ final class Utils {
         }
     }
 
-    public static void configureDefaultFocusArea(@NonNull final Parameters parameters,
-            @NonNull final Rect frameRect, @NonNull final Point previewSize,
-            @NonNull final Point viewSize, final int width, final int height,
-            final int orientation) {
-        final boolean portrait = isPortrait(orientation);
-        final int rotatedWidth = portrait ? height : width;
-        final int rotatedHeight = portrait ? width : height;
-        configureFocusArea(parameters,
-                getImageFrameRect(rotatedWidth, rotatedHeight, frameRect, previewSize, viewSize),
-                rotatedWidth, rotatedHeight, orientation);
-    }
-
-    public static void configureDefaultFocusArea(@NonNull final Parameters parameters,
-            @NonNull final DecoderWrapper decoderWrapper, @NonNull final Rect frameRect) {
-        final Point imageSize = decoderWrapper.getImageSize();
-        Utils.configureDefaultFocusArea(parameters, frameRect, decoderWrapper.getPreviewSize(),
-                decoderWrapper.getViewSize(), imageSize.getX(), imageSize.getY(),
-                decoderWrapper.getDisplayOrientation());
-    }
-
     public static void configureFocusModeForTouch(@NonNull final Parameters parameters) {
         if (Parameters.FOCUS_MODE_AUTO.equals(parameters.getFocusMode())) {
             return;
@@ -232,6 +230,12 @@ final class Utils {
 
     public static int getDisplayOrientation(@NonNull final Context context,
             @NonNull final CameraInfo cameraInfo) {
+        return getDisplayOrientation(context, cameraInfo.orientation,
+                cameraInfo.facing == CameraInfo.CAMERA_FACING_FRONT);
+    }
+
+    public static int getDisplayOrientation(@NonNull final Context context,
+            final int sensorOrientation, final boolean front) {
         final WindowManager windowManager =
                 (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         if (windowManager == null) {
@@ -259,8 +263,7 @@ final class Utils {
                     throw new CodeScannerException("Invalid display rotation");
                 }
         }
-        return ((cameraInfo.facing == CameraInfo.CAMERA_FACING_FRONT ? 180 : 360) +
-                cameraInfo.orientation - degrees) % 360;
+        return ((front ? 180 : 360) + sensorOrientation - degrees) % 360;
     }
 
     public static boolean isPortrait(final int orientation) {
@@ -335,17 +338,189 @@ final class Utils {
         return output;
     }
 
-    @Nullable
-    public static Result decodeLuminanceSource(@NonNull final MultiFormatReader reader,
-            @NonNull final LuminanceSource luminanceSource) throws ReaderException {
-        try {
-            return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(luminanceSource)));
-        } catch (final NotFoundException e) {
-            return reader.decodeWithState(
-                    new BinaryBitmap(new HybridBinarizer(luminanceSource.invert())));
-        } finally {
-            reader.reset();
+    /**
+     * Copies luma of the specified frame rect into output buffer, rotating and mirroring it
+     * on the fly, frame rect is in rotated image coordinates, chroma planes are ignored
+     */
+    public static void cropRotateLuma(@NonNull final byte[] source, final int width,
+            final int height, final int rotation, @NonNull final Rect frameRect,
+            final boolean reverseHorizontal, @NonNull final byte[] output) {
+        final int base;
+        final int dx;
+        final int dy;
+        switch (rotation) {
+            case 0:
+            case 360:
+                base = 0;
+                dx = 1;
+                dy = width;
+                break;
+            case 90:
+                base = (height - 1) * width;
+                dx = -width;
+                dy = 1;
+                break;
+            case 180:
+                base = height * width - 1;
+                dx = -1;
+                dy = -width;
+                break;
+            case 270:
+                base = width - 1;
+                dx = width;
+                dy = -1;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid rotation (valid: 0, 90, 180, 270)");
+        }
+        final int left = frameRect.getLeft();
+        final int top = frameRect.getTop();
+        final int frameWidth = frameRect.getWidth();
+        final int frameHeight = frameRect.getHeight();
+        final int step = reverseHorizontal ? -dx : dx;
+        final int startX = reverseHorizontal ? left + frameWidth - 1 : left;
+        int outputIndex = 0;
+        for (int y = 0; y < frameHeight; y++) {
+            int index = base + (top + y) * dy + startX * dx;
+            if (step == 1) {
+                System.arraycopy(source, index, output, outputIndex, frameWidth);
+                outputIndex += frameWidth;
+            } else {
+                for (int x = 0; x < frameWidth; x++) {
+                    output[outputIndex++] = source[index];
+                    index += step;
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #cropRotateLuma(byte[], int, int, int, Rect, boolean, byte[])},
+     * but reads luma plane with the specified row and pixel strides directly from the buffer
+     */
+    public static void cropRotateLuma(@NonNull final ByteBuffer source, final int rowStride,
+            final int pixelStride, final int width, final int height, final int rotation,
+            @NonNull final Rect frameRect, final boolean reverseHorizontal,
+            @NonNull final byte[] output) {
+        final int base;
+        final int dx;
+        final int dy;
+        switch (rotation) {
+            case 0:
+            case 360:
+                base = 0;
+                dx = pixelStride;
+                dy = rowStride;
+                break;
+            case 90:
+                base = (height - 1) * rowStride;
+                dx = -rowStride;
+                dy = pixelStride;
+                break;
+            case 180:
+                base = (height - 1) * rowStride + (width - 1) * pixelStride;
+                dx = -pixelStride;
+                dy = -rowStride;
+                break;
+            case 270:
+                base = (width - 1) * pixelStride;
+                dx = rowStride;
+                dy = -pixelStride;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid rotation (valid: 0, 90, 180, 270)");
+        }
+        final int left = frameRect.getLeft();
+        final int top = frameRect.getTop();
+        final int frameWidth = frameRect.getWidth();
+        final int frameHeight = frameRect.getHeight();
+        final int step = reverseHorizontal ? -dx : dx;
+        final int startX = reverseHorizontal ? left + frameWidth - 1 : left;
+        int outputIndex = 0;
+        for (int y = 0; y < frameHeight; y++) {
+            int index = base + (top + y) * dy + startX * dx;
+            if (step == 1) {
+                source.position(index);
+                source.get(output, outputIndex, frameWidth);
+                outputIndex += frameWidth;
+            } else {
+                for (int x = 0; x < frameWidth; x++) {
+                    output[outputIndex++] = source.get(index);
+                    index += step;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies {@code width x height} rect with the specified top left corner from luma
+     * of the specified source width
+     */
+    public static void cropLuma(@NonNull final byte[] source, final int sourceWidth,
+            final int left, final int top, final int width, final int height,
+            @NonNull final byte[] output) {
+        int sourceIndex = top * sourceWidth + left;
+        int outputIndex = 0;
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(source, sourceIndex, output, outputIndex, width);
+            sourceIndex += sourceWidth;
+            outputIndex += width;
+        }
+    }
+
+    /**
+     * Downsamples luma by the specified factor, averaging each {@code factor x factor} block,
+     * output size is {@code (width / factor) x (height / factor)}
+     */
+    public static void downsampleLuma(@NonNull final byte[] source, final int width,
+            final int height, final int factor, @NonNull final byte[] output) {
+        final int outputWidth = width / factor;
+        final int outputHeight = height / factor;
+        final int blockSize = factor * factor;
+        int outputIndex = 0;
+        for (int y = 0; y < outputHeight; y++) {
+            final int blockTop = y * factor * width;
+            for (int x = 0; x < outputWidth; x++) {
+                int sum = 0;
+                int row = blockTop + x * factor;
+                for (int i = 0; i < factor; i++) {
+                    for (int j = 0; j < factor; j++) {
+                        sum += source[row + j] & 0xff;
+                    }
+                    row += width;
+                }
+                output[outputIndex++] = (byte) (sum / blockSize);
+            }
+        }
+    }
+
+    /**
+     * Map result points of the result, decoded from downsampled or cropped luma,
+     * to the enclosing luma coordinates: {@code x * factor + offsetX}
+     */
+    @NonNull
+    public static Result transformResult(@NonNull final Result result, final int factor,
+            final int offsetX, final int offsetY) {
+        final ResultPoint[] points = result.getResultPoints();
+        ResultPoint[] transformedPoints = null;
+        if (points != null) {
+            transformedPoints = new ResultPoint[points.length];
+            for (int i = 0; i < points.length; i++) {
+                final ResultPoint point = points[i];
+                if (point != null) {
+                    transformedPoints[i] = new ResultPoint(point.getX() * factor + offsetX,
+                            point.getY() * factor + offsetY);
+                }
+            }
+        }
+        final Result transformedResult =
+                new Result(result.getText(), result.getRawBytes(), result.getNumBits(),
+                        transformedPoints, result.getBarcodeFormat(), result.getTimestamp());
+        final Map<ResultMetadataType, Object> metadata = result.getResultMetadata();
+        if (metadata != null) {
+            transformedResult.putAllMetadata(metadata);
         }
+        return transformedResult;
     }
 
     public static final class SuppressErrorCallback implements ErrorCallback {
@@ -370,10 +545,10 @@ final class Utils {
         return 2000 * value / size - 1000;
     }
 
-    private static final class CameraSizeComparator implements Comparator<Size> {
+    private static final class SizeComparator implements Comparator<Point> {
         @Override
-        public int compare(@NonNull final Size a, @NonNull final Size b) {
-            return Integer.compare(b.height * b.width, a.height * a.width);
+        public int compare(@NonNull final Point a, @NonNull final Point b) {
+            return Integer.compare(b.getX() * b.getY(), a.getX() * a.getY());
         }
     }
 
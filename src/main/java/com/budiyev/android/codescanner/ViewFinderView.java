@@ -40,7 +40,7 @@ final class ViewFinderView extends View {
     private final Paint mMaskPaint;
     private final Paint mFramePaint;
     private final Path mPath;
-    private Rect mFrameRect;
+    private volatile Rect mFrameRect;
     private int mFrameCornersSize = 0;
     private int mFrameCornersRadius = 0;
     private float mFrameRatioWidth = 1f;
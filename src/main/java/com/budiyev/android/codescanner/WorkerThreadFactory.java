@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Yuriy Budiyev [yuriy.budiyev@yandex.ru]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.budiyev.android.codescanner;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Factory of daemon worker threads with background priority
+ */
+final class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger mCount = new AtomicInteger();
+    private final String mNamePrefix;
+
+    public WorkerThreadFactory(@NonNull final String namePrefix) {
+        mNamePrefix = namePrefix;
+    }
+
+    /**
+     * Number of workers, which can run without taking cores from decoder threads
+     * and the main thread; {@code 0} if there are no idle cores
+     */
+    public static int getIdleCoresCount(final int decoderThreadsCount) {
+        return Math.max(0, Math.min(2 * decoderThreadsCount,
+                Runtime.getRuntime().availableProcessors() - decoderThreadsCount - 1));
+    }
+
+    @Override
+    public Thread newThread(@NonNull final Runnable runnable) {
+        final Thread thread = new Thread(runnable, mNamePrefix + mCount.getAndIncrement());
+        thread.setDaemon(true);
+        // Maps to background nice value on Android, works on plain JVM as well
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    }
+}